@@ -36,6 +36,16 @@ public class AppCtx {
 
     private static QueueOps queueOps;
 
+    private static LoadOps loadOps;
+
+    private static QueryCacheOps queryCacheOps;
+
+    private static ExecutorOps executorOps;
+
+    private static WriteBehindOps writeBehindOps;
+
+    private static ScheduleOps scheduleOps;
+
     private static DbaseRepo dbaseRepo;
 
     private static KeyInfoRepo keyInfoRepo;
@@ -46,6 +56,10 @@ public class AppCtx {
 
     private static MonitorRepo monitorRepo;
 
+    private static TraceRepo traceRepo;
+
+    private static MonitorOps monitorOps;
+
     private static RedisRepo redisRepo;
 
     private static JdbcTemplate jdbcTemplate;
@@ -163,6 +177,96 @@ public class AppCtx {
         AppCtx.queueOps = queueOps;
     }
 
+    public static ScheduleOps getScheduleOps() {
+        if (ctx != null && scheduleOps == null) {
+            try {
+                scheduleOps = ctx.getBean(ScheduleOps.class);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return scheduleOps;
+    }
+
+    public static void setScheduleOps(ScheduleOps scheduleOps) {
+        AppCtx.scheduleOps = scheduleOps;
+    }
+
+    public static LoadOps getLoadOps() {
+        if (ctx != null && loadOps == null) {
+            try {
+                loadOps = ctx.getBean(LoadOps.class);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return loadOps;
+    }
+
+    public static void setLoadOps(LoadOps loadOps) {
+        AppCtx.loadOps = loadOps;
+    }
+
+    public static QueryCacheOps getQueryCacheOps() {
+        if (ctx != null && queryCacheOps == null) {
+            try {
+                queryCacheOps = ctx.getBean(QueryCacheOps.class);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return queryCacheOps;
+    }
+
+    public static void setQueryCacheOps(QueryCacheOps queryCacheOps) {
+        AppCtx.queryCacheOps = queryCacheOps;
+    }
+
+    public static ExecutorOps getExecutorOps() {
+        if (ctx != null && executorOps == null) {
+            try {
+                executorOps = ctx.getBean(ExecutorOps.class);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return executorOps;
+    }
+
+    public static void setExecutorOps(ExecutorOps executorOps) {
+        AppCtx.executorOps = executorOps;
+    }
+
+    public static WriteBehindOps getWriteBehindOps() {
+        if (ctx != null && writeBehindOps == null) {
+            try {
+                writeBehindOps = ctx.getBean(WriteBehindOps.class);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return writeBehindOps;
+    }
+
+    public static void setWriteBehindOps(WriteBehindOps writeBehindOps) {
+        AppCtx.writeBehindOps = writeBehindOps;
+    }
+
+    public static MonitorOps getMonitorOps() {
+        if (ctx != null && monitorOps == null) {
+            try {
+                monitorOps = ctx.getBean(MonitorOps.class);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return monitorOps;
+    }
+
+    public static void setMonitorOps(MonitorOps monitorOps) {
+        AppCtx.monitorOps = monitorOps;
+    }
+
     public static DbaseRepo getDbaseRepo() {
         if (ctx != null && dbaseRepo == null) {
             try {
@@ -238,6 +342,21 @@ public class AppCtx {
         AppCtx.monitorRepo = monitorRepo;
     }
 
+    public static TraceRepo getTraceRepo() {
+        if (ctx != null && traceRepo == null) {
+            try {
+                traceRepo = ctx.getBean(TraceRepo.class);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return traceRepo;
+    }
+
+    public static void setTraceRepo(TraceRepo traceRepo) {
+        AppCtx.traceRepo = traceRepo;
+    }
+
     public static RedisRepo getRedisRepo() {
         if (ctx != null && redisRepo == null) {
             try {
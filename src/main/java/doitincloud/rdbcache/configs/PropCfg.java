@@ -31,13 +31,71 @@ public class PropCfg {
 
     private static Long eventLockTimeout = 60L;
 
+    private static String expireScheduler = "keyspace";
+
+    private static Long expireBatchSize = 100L;
+
+    private static Long expireConcurrency = 4L;
+
+    private static Long expireQueueDepth = 10000L;
+
+    private static Long redisExecutorThreads = 8L;
+
+    private static Long redisExecutorQueue = 10000L;
+
+    private static Long dbaseExecutorThreads = 16L;
+
+    private static Long dbaseExecutorQueue = 10000L;
+
+    private static Long expireExecutorThreads = 4L;
+
+    private static Long expireExecutorQueue = 10000L;
+
+    private static Long refreshExecutorThreads = 2L;
+
+    private static Long refreshExecutorQueue = 100L;
+
+    private static Long asyncStripes = 16L;
+
+    private static Long asyncStripeQueue = 1000L;
+
+    private static String executorRejectionPolicy = "caller_runs";
+
+    private static Long writeBehindMillis = 0L;  // disabled
+
+    private static Long insertBatchSize = 100L;
+
+    private static String saveMode = "compare";
+
+    private static Long selectInSize = 100L;
+
+    private static Long traceBufferSize = 10000L;
+
+    private static Long monitorBufferSize = 10000L;
+
+    private static Long monitorSampleRate = 1L;
+
+    private static Long monitorMinDuration = 0L;
+
+    private static Long streamFetchSize = 1000L;
+
+    private static Long selectCacheTTL = 0L;
+
+    private static Long loadWaitTimeout = 10000L;  // 10 seconds
+
     private static Long keyMinCacheTTL = 180L;
 
     private static Long tableInfoCacheTTL = 3600L;
 
     private static Long maxCacheSize = 1024L;
 
-    private static Long cacheRecycleSecs = 300L;  // 5 minutes
+    private static Long maxCacheBytes = 0L;  // no limit
+
+    private static String dataStorage = "heap";
+
+    private static Long offHeapBytes = 268435456L;  // 256MB
+
+    private static Long staleGraceSecs = 300L;  // 5 minutes
 
     private static Boolean enableDbFallback = false;
 
@@ -137,6 +195,242 @@ public class PropCfg {
 
     public static Long getEventLockTimeout() { return eventLockTimeout; }
 
+    @Value("${rdbcache.expire_scheduler}")
+    public void setExpireScheduler(String scheduler) {
+        if (scheduler != null && scheduler.length() > 0) {
+            expireScheduler = scheduler.trim().toLowerCase();
+        }
+    }
+
+    public static String getExpireScheduler() {
+        return expireScheduler;
+    }
+
+    @Value("${rdbcache.expire_batch_size}")
+    public void setExpireBatchSize(Long size) {
+        expireBatchSize = size;
+    }
+
+    public static Long getExpireBatchSize() {
+        return expireBatchSize;
+    }
+
+    @Value("${rdbcache.expire_concurrency}")
+    public void setExpireConcurrency(Long concurrency) {
+        expireConcurrency = concurrency;
+    }
+
+    public static Long getExpireConcurrency() {
+        return expireConcurrency;
+    }
+
+    @Value("${rdbcache.expire_queue_depth}")
+    public void setExpireQueueDepth(Long depth) {
+        expireQueueDepth = depth;
+    }
+
+    public static Long getExpireQueueDepth() {
+        return expireQueueDepth;
+    }
+
+    @Value("${rdbcache.redis_executor_threads}")
+    public void setRedisExecutorThreads(Long threads) {
+        redisExecutorThreads = threads;
+    }
+
+    public static Long getRedisExecutorThreads() {
+        return redisExecutorThreads;
+    }
+
+    @Value("${rdbcache.redis_executor_queue}")
+    public void setRedisExecutorQueue(Long queue) {
+        redisExecutorQueue = queue;
+    }
+
+    public static Long getRedisExecutorQueue() {
+        return redisExecutorQueue;
+    }
+
+    @Value("${rdbcache.dbase_executor_threads}")
+    public void setDbaseExecutorThreads(Long threads) {
+        dbaseExecutorThreads = threads;
+    }
+
+    public static Long getDbaseExecutorThreads() {
+        return dbaseExecutorThreads;
+    }
+
+    @Value("${rdbcache.dbase_executor_queue}")
+    public void setDbaseExecutorQueue(Long queue) {
+        dbaseExecutorQueue = queue;
+    }
+
+    public static Long getDbaseExecutorQueue() {
+        return dbaseExecutorQueue;
+    }
+
+    @Value("${rdbcache.expire_executor_threads}")
+    public void setExpireExecutorThreads(Long threads) {
+        expireExecutorThreads = threads;
+    }
+
+    public static Long getExpireExecutorThreads() {
+        return expireExecutorThreads;
+    }
+
+    @Value("${rdbcache.expire_executor_queue}")
+    public void setExpireExecutorQueue(Long queue) {
+        expireExecutorQueue = queue;
+    }
+
+    public static Long getExpireExecutorQueue() {
+        return expireExecutorQueue;
+    }
+
+    @Value("${rdbcache.refresh_executor_threads}")
+    public void setRefreshExecutorThreads(Long threads) {
+        refreshExecutorThreads = threads;
+    }
+
+    public static Long getRefreshExecutorThreads() {
+        return refreshExecutorThreads;
+    }
+
+    @Value("${rdbcache.refresh_executor_queue}")
+    public void setRefreshExecutorQueue(Long queue) {
+        refreshExecutorQueue = queue;
+    }
+
+    public static Long getRefreshExecutorQueue() {
+        return refreshExecutorQueue;
+    }
+
+    @Value("${rdbcache.async_stripes}")
+    public void setAsyncStripes(Long stripes) {
+        asyncStripes = stripes;
+    }
+
+    public static Long getAsyncStripes() {
+        return asyncStripes;
+    }
+
+    @Value("${rdbcache.async_stripe_queue}")
+    public void setAsyncStripeQueue(Long queue) {
+        asyncStripeQueue = queue;
+    }
+
+    public static Long getAsyncStripeQueue() {
+        return asyncStripeQueue;
+    }
+
+    @Value("${rdbcache.executor_rejection_policy}")
+    public void setExecutorRejectionPolicy(String policy) {
+        executorRejectionPolicy = policy;
+    }
+
+    public static String getExecutorRejectionPolicy() {
+        return executorRejectionPolicy;
+    }
+
+    @Value("${rdbcache.write_behind_millis}")
+    public void setWriteBehindMillis(Long millis) {
+        writeBehindMillis = millis;
+    }
+
+    public static Long getWriteBehindMillis() {
+        return writeBehindMillis;
+    }
+
+    @Value("${rdbcache.insert_batch_size}")
+    public void setInsertBatchSize(Long size) {
+        insertBatchSize = size;
+    }
+
+    public static Long getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
+    @Value("${rdbcache.save_mode}")
+    public void setSaveMode(String mode) {
+        saveMode = mode;
+    }
+
+    public static String getSaveMode() {
+        return saveMode;
+    }
+
+    @Value("${rdbcache.select_in_size}")
+    public void setSelectInSize(Long size) {
+        selectInSize = size;
+    }
+
+    public static Long getSelectInSize() {
+        return selectInSize;
+    }
+
+    @Value("${rdbcache.trace_buffer_size}")
+    public void setTraceBufferSize(Long size) {
+        traceBufferSize = size;
+    }
+
+    public static Long getTraceBufferSize() {
+        return traceBufferSize;
+    }
+
+    @Value("${rdbcache.monitor_buffer_size}")
+    public void setMonitorBufferSize(Long size) {
+        monitorBufferSize = size;
+    }
+
+    public static Long getMonitorBufferSize() {
+        return monitorBufferSize;
+    }
+
+    @Value("${rdbcache.monitor_sample_rate}")
+    public void setMonitorSampleRate(Long rate) {
+        monitorSampleRate = rate;
+    }
+
+    public static Long getMonitorSampleRate() {
+        return monitorSampleRate;
+    }
+
+    @Value("${rdbcache.monitor_min_duration}")
+    public void setMonitorMinDuration(Long duration) {
+        monitorMinDuration = duration;
+    }
+
+    public static Long getMonitorMinDuration() {
+        return monitorMinDuration;
+    }
+
+    @Value("${rdbcache.stream_fetch_size}")
+    public void setStreamFetchSize(Long size) {
+        streamFetchSize = size;
+    }
+
+    public static Long getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    @Value("${rdbcache.select_cache_ttl}")
+    public void setSelectCacheTTL(Long ttl) {
+        selectCacheTTL = ttl;
+    }
+
+    public static Long getSelectCacheTTL() {
+        return selectCacheTTL;
+    }
+
+    @Value("${rdbcache.load_wait_timeout_millis}")
+    public void setLoadWaitTimeout(Long millis) {
+        loadWaitTimeout = millis;
+    }
+
+    public static Long getLoadWaitTimeout() {
+        return loadWaitTimeout;
+    }
+
     @Value("${rdbcache.key_min_cache_ttl}")
     public void setKeyInfoCacheTTL(Long ttl) {
         keyMinCacheTTL = ttl;
@@ -167,13 +461,42 @@ public class PropCfg {
         return maxCacheSize;
     }
 
-    @Value("${rdbcache.cache_recycle_secs}")
-    public void setCacheRecycleSecs(Long secs) {
-        cacheRecycleSecs = secs;
+    @Value("${rdbcache.local_cache_max_bytes}")
+    public void setMaxCacheBytes(Long maxBytes) {
+        maxCacheBytes = maxBytes;
+    }
+
+    public static Long getMaxCacheBytes() {
+        return maxCacheBytes;
+    }
+
+    @Value("${rdbcache.local_cache_data_storage}")
+    public void setDataStorage(String storage) {
+        if (storage != null && storage.length() > 0) {
+            dataStorage = storage.trim().toLowerCase();
+        }
+    }
+
+    public static String getDataStorage() {
+        return dataStorage;
+    }
+
+    @Value("${rdbcache.local_cache_offheap_bytes}")
+    public void setOffHeapBytes(Long bytes) {
+        offHeapBytes = bytes;
+    }
+
+    public static Long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    @Value("${rdbcache.local_cache_stale_grace_secs}")
+    public void setStaleGraceSecs(Long secs) {
+        staleGraceSecs = secs;
     }
 
-    public static Long getCacheRecycleSecs() {
-        return cacheRecycleSecs;
+    public static Long getStaleGraceSecs() {
+        return staleGraceSecs;
     }
 
     @Value("${rdbcache.enable_db_fallback}")
@@ -214,10 +537,39 @@ public class PropCfg {
           "\"defaultExpire\": \"" + defaultExpire + "\", " +
           "\"enableMonitor\": \"" + enableMonitor.toString() + "\", " +
           "\"eventLockTimeout\": \"" + eventLockTimeout.toString() + "\", " +
+          "\"expireScheduler\": \"" + expireScheduler + "\", " +
+          "\"expireBatchSize\": \"" + expireBatchSize.toString() + "\", " +
+          "\"expireConcurrency\": \"" + expireConcurrency.toString() + "\", " +
+          "\"expireQueueDepth\": \"" + expireQueueDepth.toString() + "\", " +
+          "\"redisExecutorThreads\": \"" + redisExecutorThreads.toString() + "\", " +
+          "\"redisExecutorQueue\": \"" + redisExecutorQueue.toString() + "\", " +
+          "\"dbaseExecutorThreads\": \"" + dbaseExecutorThreads.toString() + "\", " +
+          "\"dbaseExecutorQueue\": \"" + dbaseExecutorQueue.toString() + "\", " +
+          "\"expireExecutorThreads\": \"" + expireExecutorThreads.toString() + "\", " +
+          "\"expireExecutorQueue\": \"" + expireExecutorQueue.toString() + "\", " +
+          "\"refreshExecutorThreads\": \"" + refreshExecutorThreads.toString() + "\", " +
+          "\"refreshExecutorQueue\": \"" + refreshExecutorQueue.toString() + "\", " +
+          "\"asyncStripes\": \"" + asyncStripes.toString() + "\", " +
+          "\"asyncStripeQueue\": \"" + asyncStripeQueue.toString() + "\", " +
+          "\"executorRejectionPolicy\": \"" + executorRejectionPolicy + "\", " +
+          "\"writeBehindMillis\": \"" + writeBehindMillis.toString() + "\", " +
+          "\"insertBatchSize\": \"" + insertBatchSize.toString() + "\", " +
+          "\"saveMode\": \"" + saveMode + "\", " +
+          "\"selectInSize\": \"" + selectInSize.toString() + "\", " +
+          "\"traceBufferSize\": \"" + traceBufferSize.toString() + "\", " +
+          "\"monitorBufferSize\": \"" + monitorBufferSize.toString() + "\", " +
+          "\"monitorSampleRate\": \"" + monitorSampleRate.toString() + "\", " +
+          "\"monitorMinDuration\": \"" + monitorMinDuration.toString() + "\", " +
+          "\"streamFetchSize\": \"" + streamFetchSize.toString() + "\", " +
+          "\"selectCacheTTL\": \"" + selectCacheTTL.toString() + "\", " +
+          "\"loadWaitTimeout\": \"" + loadWaitTimeout.toString() + "\", " +
           "\"keyMinCacheTTL\": \"" + keyMinCacheTTL.toString() + "\", " +
           "\"tableInfoCacheTTL\": \"" + tableInfoCacheTTL.toString() + "\", " +
           "\"maxCacheSize\": \"" + maxCacheSize.toString() + "\", " +
-          "\"cacheRecycleSecs\": \"" + cacheRecycleSecs.toString() + "\", " +
+          "\"maxCacheBytes\": \"" + maxCacheBytes.toString() + "\", " +
+          "\"dataStorage\": \"" + dataStorage + "\", " +
+          "\"offHeapBytes\": \"" + offHeapBytes.toString() + "\", " +
+          "\"staleGraceSecs\": \"" + staleGraceSecs.toString() + "\", " +
           "\"enableDbFallback\": \"" + enableDbFallback.toString() + "\", " +
           "\"dataMaxCacheTLL\": \"" + dataMaxCacheTLL.toString() + "\", "+
           "\"datasourceUrl\": \"" + datasourceUrl + "\""+
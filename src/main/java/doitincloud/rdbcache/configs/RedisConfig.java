@@ -9,6 +9,7 @@ package doitincloud.rdbcache.configs;
 import doitincloud.rdbcache.models.KeyInfo;
 import doitincloud.rdbcache.services.ExpireOps;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -73,7 +74,10 @@ public class RedisConfig {
         return new MessageListenerAdapter(expireOps(), "onExpireEvent");
     }
 
+    // not needed when expire events are polled from the schedule sorted set
+    //
     @Bean
+    @ConditionalOnProperty(name = "rdbcache.expire_scheduler", havingValue = "keyspace", matchIfMissing = true)
     RedisMessageListenerContainer container() {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(redisConnectionFactory());
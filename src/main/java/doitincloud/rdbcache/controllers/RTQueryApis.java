@@ -151,6 +151,16 @@ public class RTQueryApis {
                 data.put("keyMinCacheTTL", PropCfg.getKeyMinCacheTTL());
                 data.put("dataMaxCacheTLL", PropCfg.getDataMaxCacheTLL());
                 data.put("tableInfoCacheTTL", PropCfg.getTableInfoCacheTTL());
+                data.put("maxCacheSize", AppCtx.getCacheOps().getMaxCacheSize());
+                data.put("cacheSize", AppCtx.getCacheOps().getCacheSize());
+                data.put("maxCacheBytes", AppCtx.getCacheOps().getMaxCacheBytes());
+                data.put("cacheWeight", AppCtx.getCacheOps().getCacheWeight());
+                data.put("dataStorage", AppCtx.getCacheOps().getDataStorage());
+                data.put("offHeapCapacity", AppCtx.getCacheOps().getOffHeapCapacity());
+                data.put("offHeapUsedBytes", AppCtx.getCacheOps().getOffHeapUsedBytes());
+                data.put("evictionCount", AppCtx.getCacheOps().getEvictionCount());
+                data.put("staleGraceSecs", AppCtx.getCacheOps().getStaleGraceSecs());
+                data.put("staleHitCount", AppCtx.getCacheOps().getStaleHitCount());
             } else if (action.equals("table")) {
                 data = AppCtx.getCacheOps().listAllTables();
             } else if (action.equals("key")) {
@@ -166,6 +176,38 @@ public class RTQueryApis {
         return Response.send(context, data);
     }
 
+    /**
+     * query executors
+     *
+     * threads, queue depth, active and rejected counts of the bounded executors
+     *
+     * @param request HttpServletRequest
+     * @param nameOpt, optional executor name: async, redis, dbase, expire, event, monitor, trace, refresh or write_behind
+     * @return ResponseEntity
+     */
+    @RequestMapping(value = {
+            "/rtquery/v1/executors",
+            "/rtquery/v1/executors/{nameOpt}",
+    }, method = RequestMethod.GET)
+    public ResponseEntity<?> queryExecutors(
+            HttpServletRequest request,
+            @PathVariable Optional<String> nameOpt) {
+
+        Context context = new Context();
+        Request.process(context, request);
+
+        Map<String, Object> data = AppCtx.getExecutorOps().getMetrics();
+
+        if (nameOpt.isPresent()) {
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            String key = nameOpt.get();
+            map.put(key, data.get(key));
+            data = map;
+        }
+
+        return Response.send(context, data);
+    }
+
     private static List<String> ignoreMethodList = Arrays.asList(
             "isFrozen", "getCallbacks", "getTargetSource", "getTargetClass",
             "getProxiedInterfaces", "getAdvisors", "isProxyTargetClass",
@@ -11,19 +11,23 @@ import doitincloud.rdbcache.configs.AppCtx;
 import doitincloud.rdbcache.controllers.supports.Request;
 import doitincloud.rdbcache.controllers.supports.Response;
 import doitincloud.rdbcache.models.KeyInfo;
-import doitincloud.rdbcache.models.KvIdType;
 import doitincloud.rdbcache.models.KvPair;
 
 import doitincloud.commons.exceptions.BadRequestException;
 import doitincloud.commons.exceptions.NotFoundException;
+import doitincloud.commons.helpers.Utils;
 
+import doitincloud.rdbcache.queries.Query;
 import doitincloud.rdbcache.queries.QueryInfo;
 import doitincloud.rdbcache.supports.AnyKey;
 import doitincloud.rdbcache.supports.Context;
 import doitincloud.rdbcache.supports.KvPairs;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
@@ -34,6 +38,8 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 @RestController
@@ -97,11 +103,7 @@ public class RdbcacheApis {
         } else {
             if (!AppCtx.getRedisRepo().find(context, pairs, anyKey)) {
 
-                if (AppCtx.getDbaseRepo().find(context, pairs, anyKey)) {
-
-                    AppCtx.getAsyncOps().doSaveToRedis(context, pairs, anyKey);
-
-                } else {
+                if (!AppCtx.getLoadOps().findAndSave(context, pairs.getPair(), anyKey.getKeyInfo())) {
 
                     throw new NotFoundException(context, "data not found");
                 }
@@ -423,26 +425,7 @@ public class RdbcacheApis {
 
         if (!AppCtx.getRedisRepo().find(context, pairs, anyKey)) {
 
-            KvPairs dbPairs = new KvPairs();
-
-            for (int i = 0; i < pairs.size(); i++) {
-
-                KvPair pair = pairs.get(i);
-                if (!pair.hasContent()) {
-
-                    KeyInfo keyInfo = anyKey.get(i);
-                    KvPairs pairsNew = new KvPairs(pair);
-                    AnyKey anyKeyNew = new AnyKey(keyInfo);
-
-                    if (AppCtx.getDbaseRepo().find(context, pairsNew, anyKeyNew)) {
-                        dbPairs.add(pair);
-                    }
-                }
-            }
-
-            if (dbPairs.size() > 0) {
-                AppCtx.getAsyncOps().doSaveToRedis(context, dbPairs, anyKey);
-            }
+            AppCtx.getLoadOps().findAndSave(context, pairs, anyKey);
         }
 
         return Response.send(context, pairs);
@@ -709,6 +692,7 @@ public class RdbcacheApis {
      *
      * To select one or more entries based on query string.
      * It queries database and return immediately, and asynchronously saves the data to redis
+     * With select_cache_ttl set, a repeated select is served from redis until its table is written
      *
      * @param request HttpServletRequest
      * @param opt1 String, can be expire or table or "sync" or "async"
@@ -748,14 +732,9 @@ public class RdbcacheApis {
             context.logTraceMessage(msg);
         }
 
-        if (!AppCtx.getDbaseRepo().find(context, pairs, anyKey)) {
+        if (!AppCtx.getQueryCacheOps().select(context, pairs, anyKey)) {
 
             LOGGER.debug("no record(s) found from database");
-
-        } else {
-
-            AppCtx.getAsyncOps().doSaveToRedis(context, pairs, anyKey);
-
         }
 
         return Response.send(context, pairs);
@@ -766,6 +745,7 @@ public class RdbcacheApis {
      *
      * To select one or more entries based on query string.
      * It queries database and return immediately, and asynchronously saves the data to redis
+     * With select_cache_ttl set, a repeated select is served from redis until its table is written
      *
      * @param request HttpServletRequest
      * @param opt1 String, can be expire or table or "sync" or "async"
@@ -807,16 +787,77 @@ public class RdbcacheApis {
             context.logTraceMessage(msg);
         }
 
-        if (!AppCtx.getDbaseRepo().find(context, pairs, anyKey)) {
+        if (!AppCtx.getQueryCacheOps().select(context, pairs, anyKey)) {
 
             LOGGER.debug("no record(s) found from database");
+        }
 
-        } else {
+        return Response.send(context, pairs);
+    }
+
+    /**
+     * stream_get get multiple items
+     *
+     * To stream entries selected by query string, one json object per line (ndjson).
+     * Rows are written to response as they are read from database, they are not saved to redis
+     *
+     * @param request HttpServletRequest
+     * @param opt1 String, can be table or "sync" or "async"
+     * @param opt2 String, can be table or "sync" or "async", but not otp1
+     * @return ResponseEntity
+     */
+    @RequestMapping(value = {
+            "/rdbcache/v1/stream",
+            "/rdbcache/v1/stream/{opt1}",
+            "/rdbcache/v1/stream/{opt1}/{opt2}"
+        }, method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> stream_get(
+            HttpServletRequest request,
+            @PathVariable Optional<String> opt1,
+            @PathVariable Optional<String> opt2) {
 
-            AppCtx.getAsyncOps().doSaveToRedis(context, pairs, anyKey);
+        if (request.getParameterMap().size() == 0) {
+            throw  new BadRequestException("query string is needed, try add ?limit=256 to url");
         }
 
-        return Response.send(context, pairs);
+        Context context = new Context(true, true);
+        KvPairs pairs = new KvPairs();
+        AnyKey anyKey = Request.process(context, request, pairs, opt1, opt2);
+
+        LOGGER.trace(anyKey.print() + " pairs(" + pairs.size() +"): " + pairs.printKey());
+
+        KeyInfo keyInfo = anyKey.getKeyInfo();
+        if (keyInfo.getTable() == null || keyInfo.getQuery() == null) {
+            throw new BadRequestException("table and query string are needed");
+        }
+
+        JdbcTemplate jdbcTemplate = AppCtx.getDbaseOps().getJdbcTemplate(context, keyInfo.getTable());
+        Query query = new Query(context, jdbcTemplate, pairs, anyKey);
+        if (!query.ifSelectOk()) {
+            throw new BadRequestException("failed to prepare query for " + keyInfo.getTable());
+        }
+
+        // the monitor is closed once the rows are written, or the write fails
+        StreamingResponseBody body = out -> {
+            try {
+                long count = query.executeSelectStream(row -> {
+                    try {
+                        out.write(Utils.getObjectMapper().writeValueAsBytes(row));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                LOGGER.info("200 Ok - " + context.getAction() + " streamed " + count + " row(s)");
+            } finally {
+                context.closeMonitor();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .header("X-Trace-Id", context.getTraceId())
+                .body(body);
     }
 
     /**
@@ -896,7 +937,7 @@ public class RdbcacheApis {
 
         LOGGER.trace("pairs(" + pairs.size() +"): " + pairs.printKey());
 
-        KvPair pair = AppCtx.getKvPairRepo().findById(new KvIdType(traceId, "trace"));
+        KvPair pair = AppCtx.getDbaseOps().getTrace(traceId);
         if (pair != null) {
             pairs.add(pair);
         }
@@ -940,7 +981,7 @@ public class RdbcacheApis {
         LOGGER.trace("pairs(" + pairs.size() +"): " + pairs.printKey());
 
         for (String referenced_id: traceIds) {
-            KvPair pair = AppCtx.getKvPairRepo().findById(new KvIdType(referenced_id, "trace"));
+            KvPair pair = AppCtx.getDbaseOps().getTrace(referenced_id);
             if (pair != null) {
                 pairs.add(pair);
             } else {
@@ -15,6 +15,7 @@ import doitincloud.commons.exceptions.BadRequestException;
 import doitincloud.commons.exceptions.ServerErrorException;
 import doitincloud.rdbcache.models.KeyInfo;
 import doitincloud.rdbcache.models.KvPair;
+import doitincloud.rdbcache.queries.Parser;
 import doitincloud.rdbcache.queries.QueryInfo;
 
 import org.slf4j.Logger;
@@ -120,6 +121,10 @@ public class Request {
 
         Map<String, String[]> params = request.getParameterMap();
 
+        if (params != null && params.size() > 0) {
+            context.setCursor(Parser.getCursor(params));
+        }
+
         if (keyInfo.getIsNew()) {
             if (options[1] != null) {
                 keyInfo.setTable(options[1]);
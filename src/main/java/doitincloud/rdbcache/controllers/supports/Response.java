@@ -72,6 +72,10 @@ public class Response  {
         } else if (data != null) {
             map.put("data", data);
         }
+        String nextCursor = context.getNextCursor();
+        if (nextCursor != null) {
+            map.put("cursor", nextCursor);
+        }
         String traceId = context.getTraceId();
         if ( traceId != null) {
             map.put("trace_id", traceId);
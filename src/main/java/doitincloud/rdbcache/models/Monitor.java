@@ -199,7 +199,9 @@ public class Monitor {
         this.watches = watches;
     }
 
-    public StopWatch startStopWatch(String type, String action) {
+    // parts of a batch may run on different threads
+    //
+    public synchronized StopWatch startStopWatch(String type, String action) {
         StopWatch stopWatch = new StopWatch(type, action);
         getStopWatches().add(stopWatch);
         return stopWatch;
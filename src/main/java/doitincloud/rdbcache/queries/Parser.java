@@ -64,6 +64,32 @@ public class Parser {
 
     private static String opsSingleList[] = { "IS NOT NULL", "IS NULL", "IS NOT FALSE", "IS NOT TRUE", "IS TRUE", "IS FALSE"};
 
+    // sets of the lists above, looked up for every condition value
+    //
+    private static Set<String> keyLastCharSet = new HashSet<>(Arrays.asList(keyLastCharList));
+
+    private static List<String> opsTranAsList = Arrays.asList(opsTranList);
+
+    private static Set<String> opsOrSet = new HashSet<>(Arrays.asList(opsOrList));
+
+    private static Set<String> opsSingleSet = new HashSet<>(Arrays.asList(opsSingleList));
+
+    // cursor token of HTTP query string, empty for the first page, null if not paged
+    //
+    public static String getCursor(Map<String, String[]> params) {
+
+        for (Map.Entry<String, String[]> entry: params.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase("cursor")) {
+                String[] values = entry.getValue();
+                if (values != null && values.length > 0 && values[0] != null) {
+                    return values[0];
+                }
+                return "";
+            }
+        }
+        return null;
+    }
+
     // translate HTTP query string into structured conditions
     //
     public static void prepareConditions(QueryInfo queryInfo, Map<String, String[]> params) {
@@ -85,11 +111,16 @@ public class Parser {
                 continue;
             }
 
+            // the cursor is a page of the query, not a condition of it
+            if (key.equalsIgnoreCase("cursor")) {
+                continue;
+            }
+
             String keyLastChar = key.substring(key.length() - 1);
             String ops = null;
 
             // "!=", ">=", "<="; but "<=>" is not supported
-            if (Arrays.asList(keyLastCharList).contains(keyLastChar)) {
+            if (keyLastCharSet.contains(keyLastChar)) {
 
                 ops = keyLastChar + "=";
                 key = key.substring(0, key.length() - 1);
@@ -103,7 +134,7 @@ public class Parser {
                         String lastOpsChar = ops.substring(ops.length() - 1);
                         ops = ops.replace("_", " ");
                         ops = ops.trim();
-                        int pos = Arrays.asList(opsTranList).indexOf(ops);
+                        int pos = opsTranAsList.indexOf(ops);
                         if (pos >= 0) ops = opsTranToList[pos];
                         values[0] = key.substring(index + length);
                         key = key.substring(0, index);
@@ -140,7 +171,7 @@ public class Parser {
         }
         Integer limit = queryInfo.getLimit();
         Map<String, Condition> conditions = queryInfo.getConditions();
-        if (limit == null && (conditions == null || conditions.size() == 0)) {
+        if (limit == null && context.getCursor() == null && (conditions == null || conditions.size() == 0)) {
             keyInfo.setQueryKey(null);
             keyInfo.setQuery(null);
             return false;
@@ -179,13 +210,13 @@ public class Parser {
                         return false;
                     }
                     if (i > 0) {
-                        if (Arrays.asList(opsOrList).contains(ops)) {
+                        if (opsOrSet.contains(ops)) {
                             subExp += " OR ";
                         } else {
                             subExp += " AND ";
                         }
                     }
-                    if (Arrays.asList(opsSingleList).contains(ops)) {
+                    if (opsSingleSet.contains(ops)) {
                         subExp += ckey + " " + ops;
                     } else {
                         subExp += ckey + " " + ops + " ?";
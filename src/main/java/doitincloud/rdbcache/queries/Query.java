@@ -7,11 +7,14 @@
 package doitincloud.rdbcache.queries;
 
 import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.configs.PropCfg;
+import doitincloud.commons.exceptions.BadRequestException;
 import doitincloud.commons.exceptions.ServerErrorException;
+import doitincloud.commons.helpers.Utils;
 import doitincloud.rdbcache.supports.AnyKey;
 import doitincloud.rdbcache.supports.Context;
 import doitincloud.rdbcache.supports.KvPairs;
-import doitincloud.commons.helpers.Utils;
+import doitincloud.rdbcache.supports.RowCodec;
 import doitincloud.rdbcache.models.KeyInfo;
 import doitincloud.rdbcache.models.KvIdType;
 import doitincloud.rdbcache.models.KvPair;
@@ -19,22 +22,33 @@ import doitincloud.rdbcache.models.StopWatch;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.util.Assert;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class Query {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Query.class);
 
+    private static final Pattern singleColumnClause = Pattern.compile("^\\(?\\s*(\\w+)\\s*=\\s*\\?\\s*\\)?$");
+
     private Context context;
 
     private JdbcTemplate jdbcTemplate;
@@ -47,6 +61,12 @@ public class Query {
 
     private List<Object> params;
 
+    private String selectInColumn;
+
+    private List<String> seekColumns;
+
+    private int seekLimit;
+
     public Query(Context context, JdbcTemplate jdbcTemplate, KvPairs pairs, AnyKey anyKey) {
         this.context = context;
         this.jdbcTemplate = jdbcTemplate;
@@ -118,19 +138,46 @@ public class Query {
 
         int limit = getLimit();
 
-        sql = "select * from " + table;
+        QueryInfo queryInfo = keyInfo.getQuery();
+        String cursor = context.getCursor();
 
-        if (clause != null && clause.length() > 0) {
-            sql += " where " + clause;
-        }
-        if (limit != 0) {
-            sql += " limit " + limit;
+        if (cursor != null) {
+
+            // keyset pagination: seek after the last key of previous page, in primary index order
+            //
+            seekColumns = keyInfo.getPrimaryIndexes();
+            if (seekColumns == null || seekColumns.size() == 0) {
+                throw new BadRequestException(context, "cursor needs a primary index on " + table);
+            }
+            if (limit == 0) {
+                limit = 1024;
+            }
+            seekLimit = limit;
+
+            List<Object> seekParams = new ArrayList<>();
+            if (params != null) {
+                seekParams.addAll(params);
+            }
+            if (cursor.length() > 0) {
+                // in the order of the placeholders of SqlTemplates.seek
+                List<Object> lastKeys = decodeCursor(cursor, seekColumns.size());
+                for (int i = 0; i < seekColumns.size(); i++) {
+                    seekParams.addAll(lastKeys.subList(0, i + 1));
+                }
+                sql = SqlTemplates.seek(table, clause, seekColumns, limit);
+            } else {
+                sql = SqlTemplates.seekFirst(table, clause, seekColumns, limit);
+            }
+            params = seekParams;
+
+        } else {
+
+            sql = SqlTemplates.select(table, clause, limit);
         }
 
-        QueryInfo queryInfo = keyInfo.getQuery();
         if (queryInfo != null) {
             keyInfo.setQuery(null);
-            Utils.getExcutorService().submit(() -> {
+            AppCtx.getExecutorOps().getDbaseExecutor().submit(() -> {
                 Thread.yield();
                 AppCtx.getDbaseOps().saveQuery(context, queryInfo);
             });
@@ -182,6 +229,16 @@ public class Query {
                     LOGGER.trace("found " + pair.getId() + " from " + table);
                 }
 
+                // a full page may have more after it
+                if (seekColumns != null && list.size() == seekLimit) {
+                    Map<String, Object> lastRow = list.get(list.size() - 1);
+                    List<Object> lastKeys = new ArrayList<>();
+                    for (String column: seekColumns) {
+                        lastKeys.add(lastRow.get(column));
+                    }
+                    context.setNextCursor(encodeCursor(lastKeys));
+                }
+
                 return true;
             }
         } catch (Exception e) {
@@ -199,10 +256,177 @@ public class Query {
         return false;
     }
 
+    // streams selected rows to consumer one by one, rows are read with a jdbc
+    // fetch size and not kept, so memory stays flat for large results
+    //
+    // returns the number of rows
+    //
+    public long executeSelectStream(Consumer<Map<String, Object>> consumer) {
+
+        KeyInfo keyInfo = anyKey.getKeyInfo();
+        Map<String, Object> columns = keyInfo.getColumns();
+        final RowCodec rowCodec = columns != null ? AppCtx.getDbaseOps().getRowCodec(columns) : null;
+
+        LOGGER.trace("sql: " + sql);
+        LOGGER.trace("params: " + (params != null ? params.toString() : "null"));
+
+        // mysql only streams a result set with fetch size Integer.MIN_VALUE
+        final int fetchSize = AppCtx.getDbaseOps().getDatabaseType().equals("mysql") ?
+                Integer.MIN_VALUE : PropCfg.getStreamFetchSize().intValue();
+
+        final long[] count = new long[]{0L};
+        final ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+
+        StopWatch stopWatch = context.startStopWatch("dbase", "jdbcTemplate.queryStream");
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                if (params != null) {
+                    int i = 1;
+                    for (Object param: params) {
+                        ps.setObject(i++, param);
+                    }
+                }
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                Map<String, Object> map = rowMapper.mapRow(rs, (int) count[0]);
+                if (rowCodec != null) {
+                    rowCodec.convert(map);
+                }
+                consumer.accept(map);
+                count[0]++;
+            });
+            if (stopWatch != null) stopWatch.stopNow();
+        } catch (Exception e) {
+            if (stopWatch != null) stopWatch.stopNow();
+
+            String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            LOGGER.error(msg);
+            context.logTraceMessage(msg);
+            throw new ServerErrorException(context, msg);
+        }
+
+        LOGGER.trace("streamed " + count[0] + " row(s) from " + keyInfo.getTable());
+
+        return count[0];
+    }
+
+    // keys of the same table, each found by the same single column clause,
+    // can be fetched together with an in-list
+    //
+    public boolean ifSelectInOk() {
+
+        if (pairs.size() < 2 || anyKey.size() != pairs.size()) {
+            return false;
+        }
+
+        String table = anyKey.getKeyInfo().getTable();
+        String clause = anyKey.getKeyInfo().getClause();
+        if (table == null || clause == null) {
+            return false;
+        }
+
+        Matcher matcher = singleColumnClause.matcher(clause);
+        if (!matcher.matches()) {
+            return false;
+        }
+
+        for (KeyInfo keyInfo: anyKey) {
+            if (keyInfo.getQuery() != null || !table.equals(keyInfo.getTable()) ||
+                    !clause.equals(keyInfo.getClause()) ||
+                    keyInfo.getParams() == null || keyInfo.getParams().size() != 1) {
+                return false;
+            }
+        }
+
+        selectInColumn = matcher.group(1);
+
+        return true;
+    }
+
+    // returns true if all keys are found, the found pairs get their data
+    //
+    public boolean executeSelectIn() {
+
+        String table = anyKey.getKeyInfo().getTable();
+
+        int chunkSize = PropCfg.getSelectInSize().intValue();
+        if (chunkSize < 1) chunkSize = 1;
+
+        boolean allFound = true;
+
+        for (int start = 0; start < pairs.size(); start += chunkSize) {
+
+            int end = Math.min(start + chunkSize, pairs.size());
+
+            params = new ArrayList<>();
+            for (int i = start; i < end; i++) {
+                params.add(anyKey.get(i).getParams().get(0));
+            }
+            sql = SqlTemplates.selectIn(table, selectInColumn, end - start);
+
+            LOGGER.trace("sql: " + sql);
+            LOGGER.trace("params: " + params.toString());
+
+            List<Map<String, Object>> list = null;
+            StopWatch stopWatch = context.startStopWatch("dbase", "jdbcTemplate.queryForList");
+            try {
+                list = jdbcTemplate.queryForList(sql, params.toArray());
+                if (stopWatch != null) stopWatch.stopNow();
+            } catch (Exception e) {
+                if (stopWatch != null) stopWatch.stopNow();
+
+                String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                LOGGER.error(msg);
+                context.logTraceMessage(msg);
+                if (context.isSync()) {
+                    throw new ServerErrorException(context, msg);
+                }
+                allFound = false;
+                continue;
+            }
+
+            Map<String, Map<String, Object>> rows = new HashMap<>();
+            for (Map<String, Object> row: list) {
+                rows.put(String.valueOf(row.get(selectInColumn)), row);
+            }
+
+            for (int i = start; i < end; i++) {
+
+                Map<String, Object> row = rows.get(String.valueOf(anyKey.get(i).getParams().get(0)));
+                if (row == null) {
+                    allFound = false;
+                    continue;
+                }
+
+                KvPair pair = pairs.get(i);
+                KeyInfo keyInfo = anyKey.get(i);
+                if (pair.getType().equals("data")) {
+                    pair.setType(table);
+                }
+                pair.setData(new LinkedHashMap<>(row));
+
+                if (!Parser.prepareStandardClauseParams(context, pair, keyInfo)) {
+                    String msg = "executeSelectIn failed when prepareStandardClauseParams for " + pair.getId();
+                    LOGGER.error(msg);
+                    context.logTraceMessage(msg);
+                    if (context.isSync()) {
+                        throw new ServerErrorException(context, msg);
+                    }
+                }
+
+                LOGGER.trace("found " + pair.getId() + " from " + table);
+            }
+        }
+
+        return allFound;
+    }
+
     public boolean ifInsertOk() {
 
-        Assert.isTrue(anyKey.size() == 1, "anyKey.size() = " +
-                anyKey.size() + ", insert only supports anyKey size == 1");
+        Assert.isTrue(anyKey.size() == 1 || anyKey.size() == pairs.size(), "anyKey.size() = " +
+                anyKey.size() + ", insert only supports anyKey size == 1 or pairs size");
 
         KeyInfo keyInfo = anyKey.getKeyInfo();
 
@@ -219,10 +443,18 @@ public class Query {
         return true;
     }
 
-    public boolean executeInsert(boolean enableLocal, boolean enableRedis) {
+    // rows with the same insert statement are sent in jdbc batches of up to
+    // insertBatchSize, generated keys come back in the order of the rows
+    //
+    // returns a flag for each pair, true if it is inserted
+    //
+    public boolean[] executeInsert(boolean enableLocal, boolean enableRedis) {
 
-        params = new ArrayList<>();
-        boolean allOk = true;
+        boolean[] inserted = new boolean[pairs.size()];
+
+        Map<String, List<Integer>> rowsMap = new LinkedHashMap<>();
+        List<List<Object>> rowParams = new ArrayList<>();
+        List<Boolean> cacheUpdates = new ArrayList<>();
 
         for (int i = 0; i < pairs.size(); i++) {
 
@@ -245,74 +477,94 @@ public class Query {
             Map<String, Object> columns = keyInfo.getColumns();
             AppCtx.getDbaseOps().convertDbMap(columns, map);
 
-            String fields = "", values = "";
-            params.clear();
-            for (Map.Entry<String, Object> entry : map.entrySet()) {
-                params.add(entry.getValue());
-                if (fields.length() != 0) {
-                    fields += ", ";
-                    values += ", ";
-                }
-                fields += entry.getKey();
-                values += "?";
-            }
-            sql = "insert into " + table + " (" + fields + ") values (" + values + ")";
+            List<Object> params = new ArrayList<>(map.values());
+            String sql = SqlTemplates.insert(table, map.keySet());
 
-            LOGGER.trace("sql: " + sql);
-            LOGGER.trace("params: " + params.toString());
+            rowsMap.computeIfAbsent(sql, k -> new ArrayList<>()).add(i);
+            rowParams.add(params);
+            cacheUpdates.add(cacheUpdate);
+        }
 
-            int rowCount = 0;
-            KeyHolder keyHolder = new GeneratedKeyHolder();
+        int batchSize = PropCfg.getInsertBatchSize().intValue();
+        if (batchSize < 1) batchSize = 1;
 
-            StopWatch stopWatch = context.startStopWatch("dbase", "jdbcTemplate.update");
-            try {
-                rowCount = jdbcTemplate.update(new PreparedStatementCreator() {
-
-                    @Override
-                    public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
-                        PreparedStatement ps;
-                        ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-                        int i = 1;
-                        for (Object param : params) {
-                            ps.setObject(i++, param);
-                        }
-                        return ps;
-                    }
-                }, keyHolder);
-                if (stopWatch != null) stopWatch.stopNow();
-
-            } catch (Exception e) {
-                if (stopWatch != null) stopWatch.stopNow();
+        for (Map.Entry<String, List<Integer>> entry: rowsMap.entrySet()) {
 
-                allOk = false;
+            sql = entry.getKey();
+            List<Integer> rows = entry.getValue();
 
-                String msg = e.getCause().getMessage();
-                LOGGER.error(msg);
-                context.logTraceMessage(msg);
-                if (context.isSync()) {
-                    throw new ServerErrorException(context, msg);
-                }
-            }
+            for (int start = 0; start < rows.size(); start += batchSize) {
 
-            if (rowCount > 0) {
+                List<Integer> batch = rows.subList(start, Math.min(start + batchSize, rows.size()));
 
-                if (autoIncKey != null && keyHolder.getKey() != null) {
-                    String keyValue = String.valueOf(keyHolder.getKey());
-                    map.put(autoIncKey, keyValue);
-                    cacheUpdate = true;
+                if (batch.size() == 1) {
+                    params = rowParams.get(batch.get(0));
                 }
 
-                if (cacheUpdate) {
-                    if (enableLocal) {
-                        AppCtx.getCacheOps().putData(pair, keyInfo);
-                    }
-                    if (enableRedis) {
-                        AppCtx.getRedisRepo().save(context, new KvPairs(pair), new AnyKey(keyInfo));
+                LOGGER.trace("sql: " + sql);
+                LOGGER.trace("rows: " + batch.size());
+
+                final int[] rowCounts = new int[batch.size()];
+                List<Object> keys = new ArrayList<>();
+
+                StopWatch stopWatch = context.startStopWatch("dbase",
+                        batch.size() == 1 ? "jdbcTemplate.update" : "jdbcTemplate.batchUpdate");
+                try {
+                    if (batch.size() == 1) {
+                        KeyHolder keyHolder = new GeneratedKeyHolder();
+                        rowCounts[0] = jdbcTemplate.update(new PreparedStatementCreator() {
+
+                            @Override
+                            public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
+                                PreparedStatement ps;
+                                ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                                int i = 1;
+                                for (Object param : params) {
+                                    ps.setObject(i++, param);
+                                }
+                                return ps;
+                            }
+                        }, keyHolder);
+                        if (keyHolder.getKeyList().size() > 0) {
+                            keys.add(keyHolder.getKey());
+                        }
+                    } else {
+                        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                            try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                                for (Integer row: batch) {
+                                    int i = 1;
+                                    for (Object param : rowParams.get(row)) {
+                                        ps.setObject(i++, param);
+                                    }
+                                    ps.addBatch();
+                                }
+                                int[] counts;
+                                try {
+                                    counts = ps.executeBatch();
+                                } catch (BatchUpdateException e) {
+                                    // rows other than the failed one may be in already
+                                    counts = e.getUpdateCounts();
+                                    if (counts != null) {
+                                        System.arraycopy(counts, 0, rowCounts, 0, Math.min(counts.length, rowCounts.length));
+                                    }
+                                    throw e;
+                                }
+                                System.arraycopy(counts, 0, rowCounts, 0, Math.min(counts.length, rowCounts.length));
+                                try (ResultSet rs = ps.getGeneratedKeys()) {
+                                    while (rs != null && rs.next()) {
+                                        keys.add(rs.getObject(1));
+                                    }
+                                }
+                                return null;
+                            }
+                        });
                     }
-                }
+                    if (stopWatch != null) stopWatch.stopNow();
 
-                if (!Parser.prepareStandardClauseParams(context, pair, keyInfo)) {
-                    String msg = "executeInsert failed when prepareStandardClauseParams for " + pair.getId();
+                } catch (Exception e) {
+                    if (stopWatch != null) stopWatch.stopNow();
+
+                    String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
                     LOGGER.error(msg);
                     context.logTraceMessage(msg);
                     if (context.isSync()) {
@@ -320,17 +572,176 @@ public class Query {
                     }
                 }
 
-                LOGGER.trace("inserted " + pair.getId() + " into " + table);
+                // keys are matched to rows only when the driver returns one per row
+                if (keys.size() != batch.size()) {
+                    if (keys.size() > 0) {
+                        LOGGER.warn("got " + keys.size() + " generated keys for " + batch.size() + " rows");
+                    }
+                    keys.clear();
+                }
 
-            } else {
+                for (int j = 0; j < batch.size(); j++) {
+                    int row = batch.get(j);
+                    boolean rowInserted = rowCounts[j] > 0 || rowCounts[j] == Statement.SUCCESS_NO_INFO;
+                    Object keyValue = keys.size() > 0 ? keys.get(j) : null;
+                    inserted[row] = afterInsert(pairs.get(row), anyKey.getAny(row), rowInserted, keyValue,
+                            cacheUpdates.get(row), enableLocal, enableRedis);
+                }
+            }
+        }
 
-                allOk = false;
+        return inserted;
+    }
 
-                LOGGER.warn("failed to insert " + pair.getId() + " into " + table);
+    private boolean afterInsert(KvPair pair, KeyInfo keyInfo, boolean inserted, Object keyValue,
+                                boolean cacheUpdate, boolean enableLocal, boolean enableRedis) {
+
+        String table = keyInfo.getTable();
+
+        if (!inserted) {
+            LOGGER.warn("failed to insert " + pair.getId() + " into " + table);
+            return false;
+        }
+
+        Map<String, Object> map = pair.getData();
+
+        String autoIncKey = AppCtx.getDbaseOps().getTableAutoIncColumn(context, table);
+        if (autoIncKey != null && keyValue != null) {
+            map.put(autoIncKey, String.valueOf(keyValue));
+            cacheUpdate = true;
+        }
+
+        if (cacheUpdate) {
+            if (enableLocal) {
+                AppCtx.getCacheOps().putData(pair, keyInfo);
+            }
+            if (enableRedis) {
+                AppCtx.getRedisRepo().save(context, new KvPairs(pair), new AnyKey(keyInfo));
             }
         }
 
-        return allOk;
+        if (!Parser.prepareStandardClauseParams(context, pair, keyInfo)) {
+            String msg = "executeInsert failed when prepareStandardClauseParams for " + pair.getId();
+            LOGGER.error(msg);
+            context.logTraceMessage(msg);
+            if (context.isSync()) {
+                throw new ServerErrorException(context, msg);
+            }
+        }
+
+        LOGGER.trace("inserted " + pair.getId() + " into " + table);
+
+        return true;
+    }
+
+    // upsert saves a record in one statement, without reading it first
+    //
+    // it needs all columns of the primary index in the data, and no unknown column
+    //
+    public boolean ifUpsertOk() {
+
+        if (anyKey.size() != 1 || pairs.size() != 1) {
+            return false;
+        }
+
+        KeyInfo keyInfo = anyKey.getKeyInfo();
+
+        String table = keyInfo.getTable();
+        if (table == null || keyInfo.getQuery() != null) {
+            return false;
+        }
+
+        Map<String, Object> columns = keyInfo.getColumns();
+        List<String> primaryIndexes = keyInfo.getPrimaryIndexes();
+        if (columns == null || primaryIndexes == null || primaryIndexes.size() == 0) {
+            return false;
+        }
+
+        KvPair pair = pairs.getPair();
+        Map<String, Object> map = pair.getData();
+        if (map == null || map.size() == 0) {
+            return false;
+        }
+
+        // the standard clause holds the key when the data doesn't
+        if (primaryIndexes.size() == 1 && keyInfo.getParams() != null && keyInfo.getParams().size() == 1) {
+            String primaryKey = primaryIndexes.get(0).toLowerCase();
+            String stdClause = "(" + primaryKey + " = ?)";
+            if (!containsColumn(map, primaryKey) && stdClause.equals(keyInfo.getClause())) {
+                map.put(primaryKey, keyInfo.getParams().get(0));
+            }
+        }
+
+        for (String column: primaryIndexes) {
+            if (!containsColumn(map, column)) {
+                return false;
+            }
+        }
+        for (String field: map.keySet()) {
+            if (!containsColumn(columns, field)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public boolean executeUpsert() {
+
+        KvPair pair = pairs.getPair();
+        KeyInfo keyInfo = anyKey.getKeyInfo();
+        String table = keyInfo.getTable();
+        Map<String, Object> map = pair.getData();
+
+        AppCtx.getDbaseOps().convertDbMap(keyInfo.getColumns(), map);
+
+        List<String> primaryIndexes = keyInfo.getPrimaryIndexes();
+
+        params = new ArrayList<>(map.values());
+        sql = SqlTemplates.upsert(AppCtx.getDbaseOps().getDatabaseType(), table, map.keySet(), primaryIndexes);
+
+        LOGGER.trace("sql: " + sql);
+        LOGGER.trace("params: " + params.toString());
+
+        StopWatch stopWatch = context.startStopWatch("dbase", "jdbcTemplate.upsert");
+        try {
+            // mysql counts 0 for an unchanged row, any count is Ok
+            jdbcTemplate.update(sql, params.toArray());
+            if (stopWatch != null) stopWatch.stopNow();
+        } catch (Exception e) {
+            if (stopWatch != null) stopWatch.stopNow();
+
+            String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            LOGGER.error(msg);
+            context.logTraceMessage(msg);
+            if (context.isSync()) {
+                throw new ServerErrorException(context, msg);
+            }
+            return false;
+        }
+
+        if (keyInfo.getParams() == null && !Parser.prepareStandardClauseParams(context, pair, keyInfo)) {
+            String msg = "executeUpsert failed when prepareStandardClauseParams for " + pair.getId();
+            LOGGER.error(msg);
+            context.logTraceMessage(msg);
+        }
+
+        LOGGER.trace("upserted " + pair.getId() + " into " + table);
+
+        return true;
+    }
+
+    private static boolean containsColumn(Map<String, Object> map, String column) {
+        return containsColumn(map.keySet(), column);
+    }
+
+    static boolean containsColumn(Collection<String> columns, String column) {
+        for (String name: columns) {
+            if (name.equalsIgnoreCase(column)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean ifUpdateOk() {
@@ -384,17 +795,11 @@ public class Query {
 
             Map<String, Object> map = pair.getData();
             params.clear();
-            String updates = "";
-            for (Map.Entry<String, Object> entry: map.entrySet()) {
-                params.add(entry.getValue());
-                if (updates.length() != 0) updates += ", ";
-                updates += entry.getKey() + " = ?";
-            }
-
+            params.addAll(map.values());
             params.addAll(keyInfo.getParams());
             String clause = keyInfo.getClause();
 
-            sql = "update " + table + " set " + updates + " where " + clause + " limit 1";
+            sql = SqlTemplates.update(table, map.keySet(), clause);
 
             LOGGER.trace("sql: " + sql);
             LOGGER.trace("params: " + params.toString());
@@ -480,7 +885,7 @@ public class Query {
             params = keyInfo.getParams();
             String clause =  keyInfo.getClause();
 
-            sql = "delete from " + table + " where " + clause + " limit 1";
+            sql = SqlTemplates.delete(table, clause);
 
             LOGGER.trace("sql: " + sql);
             LOGGER.trace("params: " + params.toString());
@@ -520,6 +925,26 @@ public class Query {
         return allOk;
     }
 
+    // cursor token is the url safe base64 of the json list of last primary key values
+    //
+    private static String encodeCursor(List<Object> keys) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Utils.toJson(keys).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<Object> decodeCursor(String cursor, int size) {
+        List<Object> keys = null;
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            keys = Utils.toList(json);
+        } catch (Exception e) {
+            keys = null;
+        }
+        if (keys == null || keys.size() != size) {
+            throw new BadRequestException(context, "invalid cursor " + cursor);
+        }
+        return keys;
+    }
+
     private int getLimit() {
 
         KeyInfo keyInfo = anyKey.getKeyInfo();
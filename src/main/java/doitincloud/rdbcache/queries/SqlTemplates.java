@@ -0,0 +1,265 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.queries;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// prebuilt sql text, keyed by operation, table, ordered columns and clause
+//
+// parameters bind in the order of the columns, then the clause parameters.
+// the same statement text is reused for the same shape of request, so jdbc
+// and database prepared statement caches can find it. shapes come from requests,
+// so past maxSize a sample of evictSize shapes is evicted. lookups take no lock,
+// eviction is approximate rather than least recently used.
+//
+public class SqlTemplates {
+
+    private static final int maxSize = 4096;
+
+    private static final int evictSize = maxSize / 16;
+
+    private static ConcurrentHashMap<Shape, String> templates = new ConcurrentHashMap<>(256);
+
+    private static AtomicLong hitCount = new AtomicLong(0L);
+
+    private static AtomicLong missCount = new AtomicLong(0L);
+
+    public static int getSize() {
+        return templates.size();
+    }
+
+    public static int getMaxSize() {
+        return maxSize;
+    }
+
+    public static int getEvictSize() {
+        return evictSize;
+    }
+
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    public static void clear() {
+        templates.clear();
+    }
+
+    public static String select(String table, String clause, int limit) {
+        return get(new Shape("select", table, null, clause, limit), () -> {
+            StringBuilder sb = new StringBuilder("select * from ").append(table);
+            if (clause != null && clause.length() > 0) {
+                sb.append(" where ").append(clause);
+            }
+            if (limit != 0) {
+                sb.append(" limit ").append(limit);
+            }
+            return sb.toString();
+        });
+    }
+
+    // first page of keyset pagination, in seek columns order
+    //
+    public static String seekFirst(String table, String clause, List<String> seekColumns, int limit) {
+        return get(new Shape("seekFirst", table, seekColumns, clause, limit), () -> {
+            StringBuilder sb = new StringBuilder("select * from ").append(table);
+            if (clause != null && clause.length() > 0) {
+                sb.append(" where (").append(clause).append(")");
+            }
+            return appendSeekOrder(sb, seekColumns, limit).toString();
+        });
+    }
+
+    // next page of keyset pagination, after the last seek column values of previous page
+    //
+    // composite keys expand to (a > ?) OR (a = ? AND b > ?), parameters bind
+    // after the clause parameters, in the same order
+    //
+    public static String seek(String table, String clause, List<String> seekColumns, int limit) {
+        return get(new Shape("seek", table, seekColumns, clause, limit), () -> {
+            StringBuilder sb = new StringBuilder("select * from ").append(table).append(" where ");
+            if (clause != null && clause.length() > 0) {
+                sb.append("(").append(clause).append(") AND ");
+            }
+            sb.append("(");
+            for (int i = 0; i < seekColumns.size(); i++) {
+                if (i > 0) sb.append(" OR ");
+                sb.append("(");
+                for (int j = 0; j < i; j++) {
+                    sb.append(seekColumns.get(j)).append(" = ? AND ");
+                }
+                sb.append(seekColumns.get(i)).append(" > ?)");
+            }
+            sb.append(")");
+            return appendSeekOrder(sb, seekColumns, limit).toString();
+        });
+    }
+
+    public static String selectIn(String table, String column, int size) {
+        return get(new Shape("selectIn", table, Collections.singletonList(column), null, size), () -> {
+            StringBuilder sb = new StringBuilder("select * from ").append(table)
+                    .append(" where ").append(column).append(" in (");
+            appendPlaceholders(sb, size);
+            return sb.append(")").toString();
+        });
+    }
+
+    public static String insert(String table, Collection<String> columns) {
+        List<String> list = new ArrayList<>(columns);
+        return get(new Shape("insert", table, list, null, 0), () -> {
+            StringBuilder sb = new StringBuilder("insert into ").append(table).append(" (");
+            appendColumns(sb, list, "");
+            sb.append(") values (");
+            appendPlaceholders(sb, list.size());
+            return sb.append(")").toString();
+        });
+    }
+
+    // primary key columns are not updated on duplicate key
+    //
+    public static String upsert(String databaseType, String table, Collection<String> columns, List<String> keys) {
+        List<String> list = new ArrayList<>(columns);
+        String keyList = String.join(", ", keys);
+        return get(new Shape("upsert:" + databaseType, table, list, keyList, 0), () -> {
+            StringBuilder sb;
+            if (databaseType.equals("h2")) {
+                sb = new StringBuilder("merge into ").append(table).append(" (");
+                appendColumns(sb, list, "");
+                sb.append(") key (").append(keyList).append(") values (");
+                appendPlaceholders(sb, list.size());
+                sb.append(")");
+            } else {
+                sb = new StringBuilder("insert into ").append(table).append(" (");
+                appendColumns(sb, list, "");
+                sb.append(") values (");
+                appendPlaceholders(sb, list.size());
+                sb.append(") on duplicate key update ");
+                int count = 0;
+                for (String column: list) {
+                    if (Query.containsColumn(keys, column)) continue;
+                    if (count++ > 0) sb.append(", ");
+                    sb.append(column).append(" = VALUES(").append(column).append(")");
+                }
+                if (count == 0) {
+                    sb.append(keys.get(0)).append(" = ").append(keys.get(0));
+                }
+            }
+            return sb.toString();
+        });
+    }
+
+    public static String update(String table, Collection<String> columns, String clause) {
+        List<String> list = new ArrayList<>(columns);
+        return get(new Shape("update", table, list, clause, 0), () -> {
+            StringBuilder sb = new StringBuilder("update ").append(table).append(" set ");
+            appendColumns(sb, list, " = ?");
+            return sb.append(" where ").append(clause).append(" limit 1").toString();
+        });
+    }
+
+    public static String delete(String table, String clause) {
+        return get(new Shape("delete", table, null, clause, 0), () ->
+                "delete from " + table + " where " + clause + " limit 1");
+    }
+
+    private static String get(Shape shape, Supplier<String> builder) {
+        String sql = templates.get(shape);
+        if (sql != null) {
+            hitCount.incrementAndGet();
+            return sql;
+        }
+        missCount.incrementAndGet();
+        sql = builder.get();
+        String old = templates.putIfAbsent(shape, sql);
+        if (old != null) {
+            return old;
+        }
+        if (templates.size() > maxSize) {
+            evict();
+        }
+        return sql;
+    }
+
+    // removes the first evictSize shapes in hash order, which is as good as a random sample
+    //
+    private static void evict() {
+        int count = 0;
+        Iterator<Shape> iterator = templates.keySet().iterator();
+        while (count < evictSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            count++;
+        }
+    }
+
+    private static StringBuilder appendSeekOrder(StringBuilder sb, List<String> seekColumns, int limit) {
+        sb.append(" order by ");
+        appendColumns(sb, seekColumns, "");
+        return sb.append(" limit ").append(limit);
+    }
+
+    private static void appendColumns(StringBuilder sb, List<String> columns, String suffix) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(columns.get(i)).append(suffix);
+        }
+    }
+
+    private static void appendPlaceholders(StringBuilder sb, int size) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append("?");
+        }
+    }
+
+    private static class Shape {
+
+        private final String operation;
+
+        private final String table;
+
+        private final List<String> columns;
+
+        private final String clause;
+
+        private final int size;
+
+        private final int hash;
+
+        Shape(String operation, String table, List<String> columns, String clause, int size) {
+            this.operation = operation;
+            this.table = table;
+            this.columns = columns;
+            this.clause = clause;
+            this.size = size;
+            this.hash = Objects.hash(operation, table, columns, clause, size);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Shape shape = (Shape) o;
+            return size == shape.size &&
+                    Objects.equals(operation, shape.operation) &&
+                    Objects.equals(table, shape.table) &&
+                    Objects.equals(columns, shape.columns) &&
+                    Objects.equals(clause, shape.clause);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -10,12 +10,16 @@ import doitincloud.rdbcache.models.Monitor;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface MonitorRepo {
 
     Monitor findById(Long id);
 
     void save(Monitor monitor);
+
+    boolean saveAll(List<Monitor> monitors);
 }
 
 
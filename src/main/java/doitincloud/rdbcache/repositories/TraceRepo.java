@@ -0,0 +1,21 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.repositories;
+
+import doitincloud.rdbcache.models.KvPair;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public interface TraceRepo {
+
+    KvPair findById(String traceId);
+
+    boolean saveAll(List<Map<String, Object>> logs);
+}
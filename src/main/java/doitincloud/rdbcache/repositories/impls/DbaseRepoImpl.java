@@ -14,6 +14,7 @@ import doitincloud.rdbcache.models.*;
 import doitincloud.rdbcache.queries.Parser;
 import doitincloud.rdbcache.queries.QueryInfo;
 import doitincloud.rdbcache.repositories.DbaseRepo;
+import doitincloud.rdbcache.services.QueryCacheOps;
 
 import doitincloud.rdbcache.queries.Condition;
 import doitincloud.rdbcache.queries.Query;
@@ -44,6 +45,8 @@ public class DbaseRepoImpl implements DbaseRepo {
 
     private Boolean enableDbFallback = PropCfg.getEnableDbFallback();
 
+    private String saveMode = PropCfg.getSaveMode();
+
     @PostConstruct
     public void init() {
         //System.out.println("*** init DbaseRepoImpl");
@@ -52,6 +55,7 @@ public class DbaseRepoImpl implements DbaseRepo {
     @EventListener
     public void handleEvent(ContextRefreshedEvent event) {
         enableDbFallback = PropCfg.getEnableDbFallback();
+        saveMode = PropCfg.getSaveMode();
         if (PropCfg.getDataMaxCacheTLL() <= 0l) {
             enableDataCache = false;
         } else {
@@ -87,6 +91,14 @@ public class DbaseRepoImpl implements DbaseRepo {
         this.enableDbFallback = enableDbFallback;
     }
 
+    public String getSaveMode() {
+        return saveMode;
+    }
+
+    public void setSaveMode(String saveMode) {
+        this.saveMode = saveMode;
+    }
+
     @Override
     public boolean find(final Context context, final KvPair pair, final KeyInfo keyInfo) {
         KvPairs pairs = new KvPairs(pair);
@@ -144,8 +156,15 @@ public class DbaseRepoImpl implements DbaseRepo {
 
             } else {
 
+                boolean[] done = new boolean[anyKey.size()];
+                if (!findByInList(context, pairs, anyKey, done)) {
+                    allOk = false;
+                }
+
                 for (int i = 0; i < anyKey.size(); i++) {
 
+                    if (done[i]) continue;
+
                     KeyInfo keyInfo = anyKey.get(i);
 
                     if (keyInfo.getQuery() != null) {
@@ -219,11 +238,23 @@ public class DbaseRepoImpl implements DbaseRepo {
         } else {
 
             boolean result = true;
+
+            // new records of a table are inserted together
+            Map<String, KvPairs> insertPairsMap = new LinkedHashMap<>();
+            Map<String, AnyKey> insertAnyKeyMap = new LinkedHashMap<>();
+
             for (int i = 0; i < pairs.size(); i++) {
 
                 KvPair pair = pairs.get(i);
                 KeyInfo keyInfo = anyKey.getAny(i);
 
+                String table = keyInfo.getTable();
+                if (table != null && pair.isNewUuid() && keyInfo.getQuery() == null && keyInfo.getParams() == null) {
+                    insertPairsMap.computeIfAbsent(table, k -> new KvPairs()).add(pair);
+                    insertAnyKeyMap.computeIfAbsent(table, k -> new AnyKey()).add(keyInfo);
+                    continue;
+                }
+
                 if (!saveOne(context, pair, keyInfo)) {
                     LOGGER.debug("save - saveOne failed: " + pair.getId());
                     result = false;
@@ -232,6 +263,16 @@ public class DbaseRepoImpl implements DbaseRepo {
                     LOGGER.debug("save - saveOne Ok: " + pair.getId());
                 }
             }
+
+            for (Map.Entry<String, KvPairs> entry: insertPairsMap.entrySet()) {
+                KvPairs insertPairs = entry.getValue();
+                if (!insert(context, insertPairs, insertAnyKeyMap.get(entry.getKey()))) {
+                    LOGGER.debug("save - insert failed: " + insertPairs.printKey());
+                    result = false;
+                } else {
+                    LOGGER.debug("save - insert Ok: " + insertPairs.size() + " record(s) into " + entry.getKey());
+                }
+            }
             return result;
         }
     }
@@ -266,25 +307,46 @@ public class DbaseRepoImpl implements DbaseRepo {
 
             Query query = new Query(context, jdbcTemplate, pairs, anyKey);
 
-            if (!query.ifInsertOk() || !query.executeInsert(enableDataCache, enableRedisCache)) {
+            boolean[] inserted = query.ifInsertOk() ?
+                    query.executeInsert(enableDataCache, enableRedisCache) : new boolean[pairs.size()];
+            tableChanged(table);
+
+            // only the rows not inserted fall back
+            KvPairs insertedPairs = new KvPairs();
+            AnyKey insertedAnyKey = new AnyKey();
+            KvPairs failedPairs = new KvPairs();
+            AnyKey failedAnyKey = new AnyKey();
+            for (int i = 0; i < pairs.size(); i++) {
+                if (inserted[i]) {
+                    insertedPairs.add(pairs.get(i));
+                    insertedAnyKey.add(anyKey.getAny(i));
+                } else {
+                    failedPairs.add(pairs.get(i));
+                    failedAnyKey.add(anyKey.getAny(i));
+                }
+            }
+
+            if (insertedPairs.size() > 0) {
+                AppCtx.getKeyInfoRepo().save(context, insertedPairs, insertedAnyKey);
+                LOGGER.debug("insert Ok: " + insertedPairs.printKey() + " for " + table);
+            }
+
+            if (failedPairs.size() > 0) {
                 if (enableDbFallback) {
-                    if (!kvSave(context, pairs, anyKey)) {
+                    if (!kvSave(context, failedPairs, failedAnyKey)) {
                         LOGGER.debug("insert failed - fallbacked to kvSave: " +
-                                pairs.printKey());
+                                failedPairs.printKey());
                         return false;
                     } else {
                         String msg = "inserted Ok - fallbacked to kvSave: " +
-                                pairs.printKey();
+                                failedPairs.printKey();
                         context.logTraceMessage(msg);
                         LOGGER.warn(msg);
                     }
                 } else {
-                    LOGGER.debug("insert failed: " + pairs.printKey());
+                    LOGGER.debug("insert failed: " + failedPairs.printKey());
                     return false;
                 }
-            } else {
-                AppCtx.getKeyInfoRepo().save(context, pairs, anyKey);
-                LOGGER.debug("insert Ok: " + pairs.getPair().getId() + pairs.printKey() + " for " + table);
             }
         }
 
@@ -320,7 +382,10 @@ public class DbaseRepoImpl implements DbaseRepo {
 
             Query query = new Query(context, jdbcTemplate, pairs, anyKey);
 
-            if (!query.ifUpdateOk() || !query.executeUpdate()) {
+            boolean updated = query.ifUpdateOk() && query.executeUpdate();
+            tableChanged(table);
+
+            if (!updated) {
                 if (enableDbFallback) {
                     if (!kvUpdate(context, pairs, anyKey)) {
                         LOGGER.debug("update failed - fallback to kvSave: " + pairs.printKey());
@@ -376,7 +441,10 @@ public class DbaseRepoImpl implements DbaseRepo {
 
             Query query = new Query(context, jdbcTemplate, pairs, anyKey);
 
-            if (!query.ifDeleteOk() || !query.executeDelete()) {
+            boolean deleted = query.ifDeleteOk() && query.executeDelete();
+            tableChanged(table);
+
+            if (!deleted) {
                 if (enableDbFallback) {
                     if (!kvDelete(context, pairs, anyKey)) {
                         LOGGER.debug("delete failed - fallback to kvDelete: " + pairs.printKey());
@@ -397,6 +465,122 @@ public class DbaseRepoImpl implements DbaseRepo {
         return true;
     }
 
+    // upsert of saveOne, falls back and saves key info the same way as insert and update
+    //
+    // keyAdded is true when ifUpsertOk took the key from the standard clause into the data
+    //
+    private boolean upsert(final Context context, final Query query, final KvPairs pairs, final AnyKey anyKey,
+                           boolean keyAdded) {
+
+        String table = anyKey.getKeyInfo().getTable();
+
+        boolean upserted = query.executeUpsert();
+        tableChanged(table);
+
+        if (!upserted) {
+            if (enableDbFallback) {
+                if (!kvSave(context, pairs, anyKey)) {
+                    LOGGER.debug("upsert failed - fallbacked to kvSave: " + pairs.printKey());
+                    return false;
+                } else {
+                    String msg = "upserted Ok - fallbacked to kvSave: " + pairs.printKey();
+                    context.logTraceMessage(msg);
+                    LOGGER.warn(msg);
+                }
+            } else {
+                LOGGER.debug("upsert failed: " + pairs.printKey());
+                return false;
+            }
+        } else {
+            if (keyAdded) {
+                if (enableDataCache) {
+                    AppCtx.getCacheOps().updateData(pairs.getPair());
+                }
+                if (enableRedisCache) {
+                    if (AppCtx.getRedisRepo().ifExist(context, pairs, anyKey)) {
+                        AppCtx.getRedisRepo().update(context, pairs, anyKey);
+                    }
+                }
+            }
+            AppCtx.getKeyInfoRepo().save(context, pairs, anyKey);
+            LOGGER.debug("upsert Ok: " + pairs.printKey() + " for " + table);
+        }
+
+        return true;
+    }
+
+    // cached selects of the table are stale after a write, even a failed one
+    //
+    private void tableChanged(String table) {
+        QueryCacheOps queryCacheOps = AppCtx.getQueryCacheOps();
+        if (queryCacheOps != null) {
+            queryCacheOps.bumpTableVersion(table);
+        }
+    }
+
+    // keys of a table with the same single column clause are found with in-lists
+    //
+    // sets done for the keys it has worked on, returns false if any of them is not found
+    //
+    private boolean findByInList(final Context context, final KvPairs pairs, final AnyKey anyKey, boolean[] done) {
+
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < anyKey.size(); i++) {
+            KeyInfo keyInfo = anyKey.get(i);
+            if (pairs.get(i).hasContent() ||
+                    keyInfo.getTable() == null || keyInfo.getQuery() != null || keyInfo.getClause() == null ||
+                    keyInfo.getParams() == null || keyInfo.getParams().size() != 1) {
+                continue;
+            }
+            String group = keyInfo.getTable() + " " + keyInfo.getClause();
+            groups.computeIfAbsent(group, k -> new ArrayList<>()).add(i);
+        }
+
+        boolean allOk = true;
+
+        for (List<Integer> indexes: groups.values()) {
+
+            if (indexes.size() < 2) continue;
+
+            KvPairs groupPairs = new KvPairs();
+            AnyKey groupAnyKey = new AnyKey();
+            for (Integer index: indexes) {
+                groupPairs.add(pairs.get(index));
+                groupAnyKey.add(anyKey.get(index));
+            }
+
+            String table = groupAnyKey.getKeyInfo().getTable();
+            JdbcTemplate jdbcTemplate = AppCtx.getDbaseOps().getJdbcTemplate(context, table);
+
+            Query query = new Query(context, jdbcTemplate, groupPairs, groupAnyKey);
+            if (!query.ifSelectInOk()) continue;
+
+            query.executeSelectIn();
+
+            KvPairs foundPairs = new KvPairs();
+            AnyKey foundAnyKey = new AnyKey();
+            for (int j = 0; j < indexes.size(); j++) {
+                KvPair pair = groupPairs.get(j);
+                if (pair.hasContent()) {
+                    done[indexes.get(j)] = true;
+                    foundPairs.add(pair);
+                    foundAnyKey.add(groupAnyKey.get(j));
+                } else if (!enableDbFallback) {
+                    // fallback needs the single key path
+                    done[indexes.get(j)] = true;
+                    allOk = false;
+                }
+            }
+
+            if (foundPairs.size() > 0) {
+                LOGGER.debug("find - found Ok: " + foundPairs.size() + " record(s) from " + table);
+                AppCtx.getKeyInfoRepo().save(context, foundPairs, foundAnyKey);
+            }
+        }
+
+        return allOk;
+    }
+
     private boolean saveOne(final Context context, final KvPair pair, final KeyInfo keyInfo) {
 
         if (LOGGER.isTraceEnabled()) {
@@ -412,6 +596,18 @@ public class DbaseRepoImpl implements DbaseRepo {
             return insert(context, new KvPairs(pair), new AnyKey(keyInfo));
         }
 
+        // upsert in one statement, compare with database only when asked for
+        if (table != null && "upsert".equals(saveMode)) {
+            JdbcTemplate jdbcTemplate = AppCtx.getDbaseOps().getJdbcTemplate(context, table);
+            KvPairs pairs = new KvPairs(pair);
+            AnyKey anyKey = new AnyKey(keyInfo);
+            int size = map == null ? 0 : map.size();
+            Query query = new Query(context, jdbcTemplate, pairs, anyKey);
+            if (query.ifUpsertOk()) {
+                return upsert(context, query, pairs, anyKey, map.size() != size);
+            }
+        }
+
         // get it from database
         KvPairs dbPairs = new KvPairs(pair.getIdType());
         if (!find(context, dbPairs, new AnyKey(keyInfo))) {
@@ -557,7 +753,7 @@ public class DbaseRepoImpl implements DbaseRepo {
 
             if (queryInfo != null) {
                 keyInfo.setQuery(null);
-                Utils.getExcutorService().submit(() -> {
+                AppCtx.getExecutorOps().getDbaseExecutor().submit(() -> {
                     Thread.yield();
                     AppCtx.getDbaseOps().saveQuery(context, queryInfo);
                 });
@@ -133,7 +133,7 @@ public class KeyInfoRepoImpl implements KeyInfoRepo {
         keyInfo.copy(keyInfoDb);
         AppCtx.getCacheOps().putKeyInfo(pair.getIdType(), keyInfo);
 
-        Utils.getExcutorService().submit(() -> {
+        AppCtx.getExecutorOps().getRedisExecutor().submit(() -> {
             StopWatch stopWatch2 = context.startStopWatch("dbase", "finalQuery.save");
             keyInfoOps.put(hkeyPrefix + "::" + type, key, keyInfo);
             if (stopWatch2 != null) stopWatch2.stopNow();
@@ -298,7 +298,7 @@ public class KeyInfoRepoImpl implements KeyInfoRepo {
             }
 
             if (redisKeyInfoMap.size() > 0) {
-                Utils.getExcutorService().submit(() -> {
+                AppCtx.getExecutorOps().getRedisExecutor().submit(() -> {
                     StopWatch stopWatch2 = context.startStopWatch("redis", "keyInfoOps.putAll");
                     keyInfoOps.putAll(hkeyPrefix + "::" + type, redisKeyInfoMap);
                     if (stopWatch2 != null) stopWatch2.stopNow();
@@ -1,7 +1,9 @@
 package doitincloud.rdbcache.repositories.impls;
 
+import doitincloud.commons.exceptions.ServerErrorException;
 import doitincloud.commons.helpers.Utils;
 import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.configs.PropCfg;
 import doitincloud.rdbcache.models.KvIdType;
 import doitincloud.rdbcache.models.KvPair;
 import doitincloud.rdbcache.repositories.KvPairRepo;
@@ -9,12 +11,12 @@ import doitincloud.rdbcache.supports.DbUtils;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.sql.Statement;
+import java.util.*;
 
 @Repository
 public class KvPairRepoImpl implements KvPairRepo {
@@ -23,11 +25,38 @@ public class KvPairRepoImpl implements KvPairRepo {
 
     private JdbcTemplate jdbcTemplate;
 
+    // of the system database, it may differ from the data database
+    private String databaseType;
+
     @EventListener
     public void handleApplicationReadyEvent(ApplicationReadyEvent event) {
         jdbcTemplate = AppCtx.getSystemJdbcTemplate();
     }
 
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        databaseType = null;
+    }
+
+    public String getDatabaseType() {
+        if (databaseType == null) {
+            String driverName = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDriverName());
+            if (driverName.indexOf("MySQL") >= 0) {
+                databaseType = "mysql";
+            } else if (driverName.indexOf("H2") >= 0) {
+                databaseType = "h2";
+            } else {
+                throw new ServerErrorException("database drive not support");
+            }
+        }
+        return databaseType;
+    }
+
     @Override
     public KvPair findById(KvIdType idType) {
 
@@ -46,12 +75,40 @@ public class KvPairRepoImpl implements KvPairRepo {
         }
     }
 
+    // finds pairs of the same type with id in-lists
+    //
+    // returns a list in the order of idTypes, null for the one not found
+    //
     @Override
     public Iterable<KvPair> findAllById(List<KvIdType> idTypes) {
 
+        Map<KvIdType, KvPair> found = new HashMap<>();
+
+        for (Map.Entry<String, List<String>> entry: groupIdsByType(idTypes).entrySet()) {
+
+            String type = entry.getKey();
+
+            for (List<String> ids: chunks(entry.getValue(), PropCfg.getSelectInSize())) {
+
+                String sql = "select id, value from " + table + " where type = ? AND id in (" + placeholders(ids.size()) + ")";
+                List<Object> params = new ArrayList<>();
+                params.add(type);
+                params.addAll(ids);
+
+                List<Map<String, Object>> list = jdbcTemplate.queryForList(sql, params.toArray());
+                for (Map<String, Object> row: list) {
+                    String value = (String) row.get("value");
+                    if (value == null) continue;
+                    KvPair pair = new KvPair((String) row.get("id"), type);
+                    pair.setValue(value);
+                    found.put(pair.getIdType(), pair);
+                }
+            }
+        }
+
         List<KvPair> pairs = new ArrayList<>();
         for (KvIdType idType: idTypes) {
-            pairs.add(findById(idType));
+            pairs.add(found.get(idType));
         }
         return pairs;
     }
@@ -83,11 +140,42 @@ public class KvPairRepoImpl implements KvPairRepo {
         return true;
     }
 
+    // upserts pairs in jdbc batches, without reading them first
+    //
     @Override
     public boolean saveAll(List<KvPair> pairs) {
+
+        if (pairs.size() == 0) {
+            return true;
+        }
+        if (pairs.size() == 1) {
+            return save(pairs.get(0));
+        }
+
+        String sql;
+        if (getDatabaseType().equals("h2")) {
+            sql = "merge into " + table + " (id, type, value) key (id, type) values (?, ?, ?)";
+        } else {
+            sql = "insert into " + table + " (id, type, value) values (?, ?, ?) on duplicate key update value = VALUES(value)";
+        }
+
         boolean allOk = true;
-        for (KvPair pair: pairs) {
-            if (!save(pair)) {
+
+        for (List<KvPair> chunk: chunks(pairs, PropCfg.getInsertBatchSize())) {
+
+            List<Object[]> batchParams = new ArrayList<>();
+            for (KvPair pair: chunk) {
+                batchParams.add(new Object[]{pair.getId(), pair.getType(), pair.getValue()});
+            }
+            try {
+                int[] results = jdbcTemplate.batchUpdate(sql, batchParams);
+                for (int result: results) {
+                    if (result < 0 && result != Statement.SUCCESS_NO_INFO) {
+                        allOk = false;
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
                 allOk = false;
             }
         }
@@ -107,14 +195,69 @@ public class KvPairRepoImpl implements KvPairRepo {
         }
     }
 
+    // deletes pairs of the same type with id in-lists
+    //
     @Override
     public boolean deleteAll(List<KvPair> pairs) {
-        boolean allOk = true;
+
+        List<KvIdType> idTypes = new ArrayList<>();
         for (KvPair pair: pairs) {
-            if (!delete(pair)) {
-                allOk = false;
+            idTypes.add(pair.getIdType());
+        }
+
+        boolean allOk = true;
+
+        for (Map.Entry<String, List<String>> entry: groupIdsByType(idTypes).entrySet()) {
+
+            String type = entry.getKey();
+
+            for (List<String> ids: chunks(entry.getValue(), PropCfg.getSelectInSize())) {
+
+                String sql = "delete from " + table + " where type = ? AND id in (" + placeholders(ids.size()) + ")";
+                List<Object> params = new ArrayList<>();
+                params.add(type);
+                params.addAll(ids);
+                try {
+                    int result = jdbcTemplate.update(sql, params.toArray());
+                    if (result != ids.size()) {
+                        allOk = false;
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    allOk = false;
+                }
             }
         }
         return allOk;
     }
+
+    private static Map<String, List<String>> groupIdsByType(List<KvIdType> idTypes) {
+        Map<String, Set<String>> sets = new LinkedHashMap<>();
+        for (KvIdType idType: idTypes) {
+            sets.computeIfAbsent(idType.getType(), k -> new LinkedHashSet<>()).add(idType.getId());
+        }
+        Map<String, List<String>> map = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> entry: sets.entrySet()) {
+            map.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return map;
+    }
+
+    private static <T> List<List<T>> chunks(List<T> list, Long size) {
+        int chunkSize = size == null || size < 1L ? 1 : size.intValue();
+        List<List<T>> chunks = new ArrayList<>();
+        for (int start = 0; start < list.size(); start += chunkSize) {
+            chunks.add(list.subList(start, Math.min(start + chunkSize, list.size())));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(int size) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append("?");
+        }
+        return sb.toString();
+    }
 }
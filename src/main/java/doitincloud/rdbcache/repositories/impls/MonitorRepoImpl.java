@@ -1,30 +1,30 @@
 package doitincloud.rdbcache.repositories.impls;
 
-import doitincloud.commons.helpers.Utils;
 import doitincloud.rdbcache.configs.AppCtx;
 import doitincloud.rdbcache.models.Monitor;
 import doitincloud.rdbcache.models.StopWatch;
 import doitincloud.rdbcache.repositories.MonitorRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.PreparedStatementCreator;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 @Repository
 public class MonitorRepoImpl implements MonitorRepo {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MonitorRepoImpl.class);
+
     private String monitorTable = "rdbcache_monitor";
 
     private String stopWatchTable = "rdbcache_stopwatch";
@@ -36,6 +36,14 @@ public class MonitorRepoImpl implements MonitorRepo {
         jdbcTemplate = AppCtx.getSystemJdbcTemplate();
     }
 
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
     @Override
     public Monitor findById(Long id) {
         String sql = "select * from " + monitorTable + " where id = ?";
@@ -52,81 +60,91 @@ public class MonitorRepoImpl implements MonitorRepo {
 
     @Override
     public void save(Monitor monitor) {
+        List<Monitor> monitors = new ArrayList<>();
+        monitors.add(monitor);
+        saveAll(monitors);
+    }
 
-        Map<String, Object> map = Utils.toMap(monitor);
-        String fields = "";
-        String values = "";
-        final List<Object> params1 = new ArrayList<>();
-        for (Map.Entry<String, Object> entry: map.entrySet()) {
-            params1.add(entry.getValue());
-            if (fields.length() != 0) {
-                fields += ", ";
-                values += ", ";
-            }
-            fields += entry.getKey();
-            values += "?";
+    // inserts monitors in one jdbc batch, then all their stop watches in another
+    //
+    // returns false if any of them is not saved
+    //
+    @Override
+    public boolean saveAll(List<Monitor> monitors) {
+
+        if (monitors.size() == 0) {
+            return true;
         }
-        final String sql1 = "insert into " + monitorTable + " (" + fields + ") values (" + values + ")";
 
-        int result = 0;
-        KeyHolder keyHolder = new GeneratedKeyHolder();
+        final String sql1 = "insert into " + monitorTable + " (name, thread_id, duration, main_duration, " +
+                "started_at, ended_at, trace_id, built_info) values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        List<Long> ids = null;
         try {
-            result = jdbcTemplate.update(new PreparedStatementCreator() {
+            ids = jdbcTemplate.execute(new ConnectionCallback<List<Long>>() {
                 @Override
-                public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
-                    PreparedStatement ps;
-                    ps = connection.prepareStatement(sql1, Statement.RETURN_GENERATED_KEYS);
-                    int i = 1;
-                    for (Object param : params1) {
-                        ps.setObject(i++, param);
+                public List<Long> doInConnection(Connection connection) throws SQLException {
+                    try (PreparedStatement ps = connection.prepareStatement(sql1, Statement.RETURN_GENERATED_KEYS)) {
+                        for (Monitor monitor: monitors) {
+                            int i = 1;
+                            for (Object param: toParams(monitor)) {
+                                ps.setObject(i++, param);
+                            }
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                        List<Long> keys = new ArrayList<>();
+                        try (ResultSet rs = ps.getGeneratedKeys()) {
+                            while (rs.next()) {
+                                keys.add(rs.getLong(1));
+                            }
+                        }
+                        return keys;
                     }
-                    return ps;
                 }
-            }, keyHolder);
-
+            });
         } catch (Exception e) {
-            e.getStackTrace();
-            return;
+            e.printStackTrace();
+            return false;
         }
-        if (result == 0) {
-            return;
-        }
-        Long id = Long.valueOf(keyHolder.getKey().toString());
-
-        List<StopWatch> watches = monitor.getStopWatches();
-        if (watches != null && watches.size() > 0) {
 
-            map = AppCtx.getDbaseOps().getTableColumns(null, stopWatchTable);
-            Set<String> keySet = map.keySet();
+        if (ids == null || ids.size() != monitors.size()) {
+            // without the ids, stop watches can not be linked to their monitors
+            LOGGER.error("got " + (ids == null ? 0 : ids.size()) + " generated id(s) for " +
+                    monitors.size() + " monitor(s), their stop watches are not saved");
+            return false;
+        }
 
-            fields = "";
-            values = "";
-            for (String key: keySet) {
-                if (fields.length() != 0) {
-                    fields += ", ";
-                    values += ", ";
-                }
-                fields += key;
-                values += "?";
-            }
-            final String sql2 = "insert into " + monitorTable + "(" + fields + ") values (" + values + ")";
+        final String sql2 = "insert into " + stopWatchTable + " (monitor_id, type, action, thread_id, " +
+                "duration, started_at, ended_at) values (?, ?, ?, ?, ?, ?, ?)";
 
-            List<Object[]> paramsList = new ArrayList<Object[]>();
+        List<Object[]> paramsList = new ArrayList<Object[]>();
 
+        for (int i = 0; i < monitors.size(); i++) {
+            Monitor monitor = monitors.get(i);
+            Long id = ids.get(i);
+            monitor.setId(id);
+            List<StopWatch> watches = monitor.getStopWatches();
+            if (watches == null) continue;
             for (StopWatch watch: watches) {
                 watch.setMonitorId(id);
-                map = Utils.toMap(watch);
-                List<Object> params = new ArrayList<>();
-                for (String key: keySet) {
-                    if (map.containsKey(key)) {
-                        params.add(map.get(key));
-                    } else {
-                        params.add(null);
-                    }
-                }
-                paramsList.add(params.toArray());
+                paramsList.add(new Object[]{watch.getMonitorId(), watch.getType(), watch.getAction(),
+                        watch.getThreadId(), watch.getDuration(), watch.getStartedAt(), watch.getEndedAt()});
+            }
+        }
+        if (paramsList.size() > 0) {
+            try {
+                jdbcTemplate.batchUpdate(sql2, paramsList);
+            } catch (Exception e) {
+                e.printStackTrace();
+                return false;
             }
-            jdbcTemplate.batchUpdate(sql2, paramsList);
         }
+        return true;
+    }
+
+    private static Object[] toParams(Monitor monitor) {
+        return new Object[]{monitor.getName(), monitor.getThreadId(), monitor.getDuration(), monitor.getMainDuration(),
+                monitor.getStartedAt(), monitor.getEndedAt(), monitor.getTraceId(), monitor.getBuiltInfo()};
     }
 }
@@ -19,6 +19,7 @@ import doitincloud.rdbcache.repositories.RedisRepo;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.core.*;
 import org.springframework.stereotype.Repository;
 
@@ -27,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Repository
 public class RedisRepoImpl implements RedisRepo {
@@ -135,12 +137,13 @@ public class RedisRepoImpl implements RedisRepo {
 
         boolean foundAll = true;
 
+        List<String> hashKeys = new ArrayList<>();
+
         for (int i = 0; i < pairs.size(); i++) {
 
             KvPair pair = pairs.get(i);
             String key = pair.getId();
             String type = pair.getType();
-            String hashKey = hdataPrefix + "::" + type + ":" + key;
 
             if (enableDataCache) {
                 if (AppCtx.getCacheOps().containsData(pair.getIdType())) {
@@ -149,15 +152,23 @@ public class RedisRepoImpl implements RedisRepo {
                 }
             }
 
-            StopWatch stopWatch = context.startStopWatch("redis", "stringRedisTemplate.hasKey");
-            foundAll = AppCtx.getStringRedisTemplate().hasKey(hashKey);
-            if (stopWatch != null) stopWatch.stopNow();
+            hashKeys.add(hdataPrefix + "::" + type + ":" + key);
+        }
 
-            if (!foundAll) {
-                LOGGER.debug("ifExit not found from redis " + key);
-                break;
-            } else {
-                LOGGER.debug("ifExit found redis " + key);
+        if (hashKeys.size() > 0) {
+
+            List<Object> results = executePipelined(context, "stringRedisTemplate.hasKey", operations -> {
+                for (String hashKey: hashKeys) {
+                    operations.hasKey(hashKey);
+                }
+            });
+
+            for (int i = 0; i < hashKeys.size(); i++) {
+                if (!Boolean.TRUE.equals(results.get(i))) {
+                    foundAll = false;
+                    LOGGER.debug("ifExit not found from redis " + hashKeys.get(i));
+                    break;
+                }
             }
         }
 
@@ -211,43 +222,38 @@ public class RedisRepoImpl implements RedisRepo {
                     "anyKey(" + anyKey.size() + "): " + anyKey.printTable());
         }
 
-        boolean foundAll = true;
+        if (pairs.size() == 0) {
+            return true;
+        }
 
         for (int i = 0; i < pairs.size(); i++) {
-            
-            KvPair pair = pairs.get(i);
-
             if (enableDataCache) {
-                AppCtx.getCacheOps().updateData(pair);
+                AppCtx.getCacheOps().updateData(pairs.get(i));
             }
+        }
 
-            String key = pair.getId();
-            String type = pair.getType();
-            String hashKey = hdataPrefix + "::" + type + ":" + key;
-            Map<String, Object> map = pair.getData();
-
-            StopWatch stopWatch = context.startStopWatch("redis", "hashOps.putAll");
-            try {
-                hashOps.putAll(hashKey, map);
-                if (stopWatch != null) stopWatch.stopNow();
-
-                LOGGER.debug("update redis for " + key);
+        try {
+            executePipelined(context, "hashOps.putAll", operations -> {
+                HashOperations ops = operations.opsForHash();
+                for (int i = 0; i < pairs.size(); i++) {
+                    KvPair pair = pairs.get(i);
+                    ops.putAll(hdataPrefix + "::" + pair.getType() + ":" + pair.getId(), pair.getData());
+                }
+            });
 
-            } catch (Exception e) {
-                if (stopWatch != null) stopWatch.stopNow();
+            LOGGER.debug("update redis for " + pairs.size() + " keys");
 
-                foundAll = false;
+        } catch (Exception e) {
 
-                String msg = e.getCause().getMessage();
-                LOGGER.error(msg);
-                e.printStackTrace();
-                throw new ServerErrorException(context, msg);
-            }
+            String msg = e.getCause().getMessage();
+            LOGGER.error(msg);
+            e.printStackTrace();
+            throw new ServerErrorException(context, msg);
         }
 
-        LOGGER.debug("update returns " + foundAll);
+        LOGGER.debug("update returns true");
 
-        return foundAll;
+        return true;
     }
 
     @Override
@@ -322,59 +328,68 @@ public class RedisRepoImpl implements RedisRepo {
 
         boolean foundAll = true;
 
+        // indexes of the pairs not found from cache
+        List<Integer> indexes = new ArrayList<>();
+
         for (int i = 0; i < pairs.size(); i++) {
 
             KvPair pair = pairs.get(i);
-            String key = pair.getId();
-            String type = pair.getType();
-            KeyInfo keyInfo = anyKey.getAny(i);
-
-            String hashKey = hdataPrefix + "::" + type + ":" + key;
-            Map<String, Object> map = null;
 
             if (enableDataCache) {
-                map = (Map<String, Object>) AppCtx.getCacheOps().getData(pair.getIdType());
+                Map<String, Object> map = (Map<String, Object>) AppCtx.getCacheOps().getData(pair.getIdType());
                 if (map != null && map.size() > 0) {
                     pair.setData(map);
-                    LOGGER.debug("find - found from cache " + key);
+                    LOGGER.debug("find - found from cache " + pair.getId());
+                    continue;
                 }
             }
 
-            if (map == null) {
-
-                StopWatch stopWatch = context.startStopWatch("redis", "hashOps.entries");
-                try {
-                    map = hashOps.entries(hashKey);
-                    if (stopWatch != null) stopWatch.stopNow();
-
-                    if (map != null && map.size() > 0) {
-                        pair.setData(map);
-                        if (enableDataCache) {
-                            AppCtx.getCacheOps().putData(pair, keyInfo);
-                        }
-                        LOGGER.debug("find - found from redis " + key);
-                    }
-                } catch (Exception e) {
-                    if (stopWatch != null) stopWatch.stopNow();
+            indexes.add(i);
+        }
 
-                    foundAll = false;
+        if (indexes.size() == 0) {
+            LOGGER.trace("find returns " + foundAll);
+            return foundAll;
+        }
 
-                    String msg = e.getCause().getMessage();
-                    LOGGER.error(msg);
-                    context.logTraceMessage(msg);
-                    e.printStackTrace();
-                    if (context.isSync()) {
-                        throw new ServerErrorException(context, msg);
-                    }
-                    continue;
+        List<Object> results = null;
+        try {
+            results = executePipelined(context, "hashOps.entries", operations -> {
+                HashOperations ops = operations.opsForHash();
+                for (int i: indexes) {
+                    KvPair pair = pairs.get(i);
+                    ops.entries(hdataPrefix + "::" + pair.getType() + ":" + pair.getId());
                 }
+            });
+        } catch (Exception e) {
+
+            String msg = e.getCause().getMessage();
+            LOGGER.error(msg);
+            context.logTraceMessage(msg);
+            e.printStackTrace();
+            if (context.isSync()) {
+                throw new ServerErrorException(context, msg);
             }
+            return false;
+        }
+
+        for (int j = 0; j < indexes.size(); j++) {
+
+            int i = indexes.get(j);
+            KvPair pair = pairs.get(i);
+            Map<String, Object> map = (Map<String, Object>) results.get(j);
 
             if (map == null || map.size() == 0) {
                 foundAll = false;
-                LOGGER.debug("find - not found " + key);
+                LOGGER.debug("find - not found " + pair.getId());
                 continue;
             }
+
+            pair.setData(map);
+            if (enableDataCache) {
+                AppCtx.getCacheOps().putData(pair, anyKey.getAny(i));
+            }
+            LOGGER.debug("find - found from redis " + pair.getId());
         }
 
         LOGGER.trace("find returns " + foundAll);
@@ -441,42 +456,43 @@ public class RedisRepoImpl implements RedisRepo {
 
         boolean savedAll = true;
 
-        for (int i = 0; i < pairs.size(); i++) {
-
-            KvPair pair = pairs.get(i);
-            String key = pair.getId();
-            String type = pair.getType();
-            String hashKey = hdataPrefix + "::" + type + ":" + key;
-            KeyInfo keyInfo = anyKey.getAny(i);
+        if (pairs.size() == 0) {
+            return savedAll;
+        }
 
-            Map<String, Object> map = pair.getData();
+        for (int i = 0; i < pairs.size(); i++) {
             if (enableDataCache) {
-                AppCtx.getCacheOps().putData(pair, keyInfo);
+                AppCtx.getCacheOps().putData(pairs.get(i), anyKey.getAny(i));
             }
+        }
 
-            StopWatch stopWatch = context.startStopWatch("redis", "hashOps.putAll");
-            try {
-                hashOps.putAll(hashKey, map);
-                if (stopWatch != null) stopWatch.stopNow();
+        try {
+            executePipelined(context, "hashOps.putAll", operations -> {
+                HashOperations ops = operations.opsForHash();
+                for (int i = 0; i < pairs.size(); i++) {
+                    KvPair pair = pairs.get(i);
+                    ops.putAll(hdataPrefix + "::" + pair.getType() + ":" + pair.getId(), pair.getData());
+                }
+            });
 
-                LOGGER.debug("save to redis for " + key);
+            LOGGER.debug("save to redis for " + pairs.size() + " keys");
 
-            } catch (Exception e) {
-                if (stopWatch != null) stopWatch.stopNow();
+        } catch (Exception e) {
 
-                if (enableDataCache) {
-                    AppCtx.getCacheOps().removeData(pair.getIdType());
+            if (enableDataCache) {
+                for (int i = 0; i < pairs.size(); i++) {
+                    AppCtx.getCacheOps().removeData(pairs.get(i).getIdType());
                 }
+            }
 
-                savedAll = false;
+            savedAll = false;
 
-                String msg = e.getCause().getMessage();
-                LOGGER.error(msg);
-                context.logTraceMessage(msg);
-                e.printStackTrace();
-                if (context.isSync()) {
-                    throw new ServerErrorException(context, msg);
-                }
+            String msg = e.getCause().getMessage();
+            LOGGER.error(msg);
+            context.logTraceMessage(msg);
+            e.printStackTrace();
+            if (context.isSync()) {
+                throw new ServerErrorException(context, msg);
             }
         }
 
@@ -661,25 +677,14 @@ public class RedisRepoImpl implements RedisRepo {
         String key = pair.getId();
         String type = pair.getType();
 
-        String hashKey = hdataPrefix + "::" + type + ":" + key;
-        String expKey = eventPrefix + "::" + type + ":" + key;
+        Set<String> keys = getExpireKeys(context, Collections.singletonList(pair));
+        keys.add(hdataPrefix + "::" + type + ":" + key);
 
-        // get existing expire key
-        StopWatch stopWatch = context.startStopWatch("redis", "stringRedisTemplate.hasKey");
-        Set<String> expKeys = AppCtx.getStringRedisTemplate().keys(expKey + "::*");
+        StopWatch stopWatch = context.startStopWatch("redis", "stringRedisTemplate.delete");
+        AppCtx.getStringRedisTemplate().delete(keys);
         if (stopWatch != null) stopWatch.stopNow();
 
-        if (expKeys != null && expKeys.size() > 0) {
-            stopWatch = context.startStopWatch("redis", "stringRedisTemplate.delete");
-            AppCtx.getStringRedisTemplate().delete(expKeys);
-            if (stopWatch != null) stopWatch.stopNow();
-
-            LOGGER.debug("delete " + key);
-        }
-
-        stopWatch = context.startStopWatch("redis", "stringRedisTemplate.delete");
-        AppCtx.getStringRedisTemplate().delete(hashKey);
-        if (stopWatch != null) stopWatch.stopNow();
+        LOGGER.debug("delete " + key);
 
         LOGGER.trace("delete done");
 
@@ -697,35 +702,76 @@ public class RedisRepoImpl implements RedisRepo {
             AppCtx.getCacheOps().removeKeyAndData(pairs);
         }
 
-        Set<String> hashKeys = new HashSet<>();
+        Set<String> hashKeys = getExpireKeys(context, pairs);
         for (int i = 0; i < pairs.size(); i++) {
-
             KvPair pair = pairs.get(i);
-            String key = pair.getId();
-            String type = pair.getType();
-            hashKeys.add(hdataPrefix + "::" + type + ":" + key);
+            hashKeys.add(hdataPrefix + "::" + pair.getType() + ":" + pair.getId());
+        }
 
-            String expKey = eventPrefix + "::" + type + ":" + key;
+        StopWatch stopWatch = context.startStopWatch("redis", "stringRedisTemplate.delete");
+        AppCtx.getStringRedisTemplate().delete(hashKeys);
+        if (stopWatch != null) stopWatch.stopNow();
 
-            // get existing expire key
-            StopWatch stopWatch = context.startStopWatch("redis", "stringRedisTemplate.hasKey");
-            Set<String> expKeys = AppCtx.getStringRedisTemplate().keys(expKey + "::*");
-            if (stopWatch != null) stopWatch.stopNow();
+        LOGGER.trace("delete done");
 
-            if (expKeys != null && expKeys.size() > 0) {
-                stopWatch = context.startStopWatch("redis", "stringRedisTemplate.delete");
-                AppCtx.getStringRedisTemplate().delete(expKeys);
-                if (stopWatch != null) stopWatch.stopNow();
+    }
 
-                LOGGER.debug("delete " + key);
-            }
+    // returns the index keys and current event keys of pairs
+    //
+    // the index key eventPrefix::type:key holds the trace id of the current event
+    // eventPrefix::type:key::traceId, it is maintained by set-expire-key.lua.
+    // the events are removed from the schedule sorted set here.
+    //
+    private Set<String> getExpireKeys(final Context context, final List<KvPair> pairs) {
+
+        List<String> indexKeys = new ArrayList<>();
+        for (KvPair pair: pairs) {
+            indexKeys.add(eventPrefix + "::" + pair.getType() + ":" + pair.getId());
         }
 
-        StopWatch stopWatch = context.startStopWatch("redis", "stringRedisTemplate.delete");
-        AppCtx.getStringRedisTemplate().delete(hashKeys);
+        StopWatch stopWatch = context.startStopWatch("redis", "valueOps.multiGet");
+        List<String> traceIds = AppCtx.getStringRedisTemplate().opsForValue().multiGet(indexKeys);
         if (stopWatch != null) stopWatch.stopNow();
 
-        LOGGER.trace("delete done");
+        List<String> eventKeys = new ArrayList<>();
+        if (traceIds != null) {
+            for (int i = 0; i < indexKeys.size() && i < traceIds.size(); i++) {
+                String traceId = traceIds.get(i);
+                if (traceId != null) {
+                    eventKeys.add(indexKeys.get(i) + "::" + traceId);
+                }
+            }
+        }
 
+        // pending events are also in the schedule sorted set in zset mode
+        String scheduleKey = AppCtx.getExpireOps().getScheduleKey();
+        if (scheduleKey.length() > 0 && eventKeys.size() > 0) {
+            stopWatch = context.startStopWatch("redis", "zsetOps.remove");
+            AppCtx.getStringRedisTemplate().opsForZSet().remove(scheduleKey, eventKeys.toArray());
+            if (stopWatch != null) stopWatch.stopNow();
+        }
+
+        Set<String> keys = new HashSet<>(indexKeys);
+        keys.addAll(eventKeys);
+        return keys;
+    }
+
+    // sends the commands issued by callback to redis in one round trip,
+    // returns their results in the same order
+    //
+    private List<Object> executePipelined(final Context context, String method, final Consumer<RedisOperations> callback) {
+
+        StopWatch stopWatch = context.startStopWatch("redis", "executePipelined." + method);
+        try {
+            return AppCtx.getStringRedisTemplate().executePipelined(new SessionCallback<Object>() {
+                @Override
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    callback.accept(operations);
+                    return null;
+                }
+            });
+        } finally {
+            if (stopWatch != null) stopWatch.stopNow();
+        }
     }
 }
@@ -0,0 +1,79 @@
+package doitincloud.rdbcache.repositories.impls;
+
+import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.models.KvIdType;
+import doitincloud.rdbcache.models.KvPair;
+import doitincloud.rdbcache.repositories.TraceRepo;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+
+// trace messages are appended as rows, one per message
+//
+@Repository
+public class TraceRepoImpl implements TraceRepo {
+
+    private String table = "rdbcache_trace";
+
+    private JdbcTemplate jdbcTemplate;
+
+    @EventListener
+    public void handleApplicationReadyEvent(ApplicationReadyEvent event) {
+        jdbcTemplate = AppCtx.getSystemJdbcTemplate();
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // returns all messages of the trace as one pair, messages keyed by 0, 1, 2 ...
+    //
+    @Override
+    public KvPair findById(String traceId) {
+
+        String sql = "select logged_at, message, trace from " + table + " where trace_id = ? order by id";
+        List<Map<String, Object>> list = jdbcTemplate.queryForList(sql, traceId);
+        if (list.size() == 0) {
+            return null;
+        }
+
+        KvPair pair = new KvPair(new KvIdType(traceId, "trace"));
+        Map<String, Object> map = pair.getData();
+        for (Map<String, Object> row: list) {
+            Map<String, Object> log = new LinkedHashMap<String, Object>();
+            log.put("timestamp", row.get("logged_at"));
+            log.put("message", row.get("message"));
+            log.put("trace", row.get("trace"));
+            map.put(Long.toString(map.size()), log);
+        }
+        return pair;
+    }
+
+    @Override
+    public boolean saveAll(List<Map<String, Object>> logs) {
+
+        if (logs.size() == 0) {
+            return true;
+        }
+
+        String sql = "insert into " + table + " (trace_id, logged_at, message, trace) values (?, ?, ?, ?)";
+        List<Object[]> paramsList = new ArrayList<Object[]>();
+        for (Map<String, Object> log: logs) {
+            paramsList.add(new Object[]{log.get("trace_id"), log.get("timestamp"), log.get("message"), log.get("trace")});
+        }
+        try {
+            jdbcTemplate.batchUpdate(sql, paramsList);
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
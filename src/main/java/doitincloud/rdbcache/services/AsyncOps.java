@@ -7,13 +7,14 @@
 package doitincloud.rdbcache.services;
 
 import doitincloud.rdbcache.configs.AppCtx;
-import doitincloud.commons.helpers.*;
 
 import doitincloud.rdbcache.models.KeyInfo;
 import doitincloud.rdbcache.models.StopWatch;
 import doitincloud.rdbcache.supports.AnyKey;
+import doitincloud.rdbcache.supports.BoundedExecutor;
 import doitincloud.rdbcache.supports.Context;
 import doitincloud.rdbcache.supports.KvPairs;
+import doitincloud.rdbcache.supports.StripedExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -23,7 +24,15 @@ import org.springframework.stereotype.Service;
 import doitincloud.rdbcache.models.KvPair;
 
 import javax.annotation.PostConstruct;
-
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+// async operations run on the stripe of their key, so operations of the same key
+// are done in the order they are requested. the parts of a batch on different
+// stripes run in parallel and share the context of the batch.
+//
 @Service
 public class AsyncOps {
 
@@ -47,7 +56,7 @@ public class AsyncOps {
 
         // set expire key always runs asynchronously
         //
-        Utils.getExcutorService().submit(() -> {
+        AppCtx.getExecutorOps().getExpireExecutor().submit(() -> {
 
             AppCtx.getExpireOps().setExpireKey(context, pair, keyInfo);
             context.closeMonitor();
@@ -60,7 +69,7 @@ public class AsyncOps {
 
         // set expire key always runs asynchronously
         //
-        Utils.getExcutorService().submit(() -> {
+        AppCtx.getExecutorOps().getExpireExecutor().submit(() -> {
 
             AppCtx.getExpireOps().setExpireKey(context, pairs, anyKey);
             context.closeMonitor();
@@ -78,7 +87,7 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        AppCtx.getExecutorOps().getAsyncExecutor().submit(pair.getIdType(), () -> {
 
             AppCtx.getRedisRepo().save(context, pair, keyInfo);
             AppCtx.getExpireOps().setExpireKey(context, pair, keyInfo);
@@ -97,11 +106,10 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        submit(context, pairs, anyKey, (stripePairs, stripeAnyKey) -> {
 
-            AppCtx.getRedisRepo().save(context, pairs, anyKey);
-            AppCtx.getExpireOps().setExpireKey(context, pairs, anyKey);
-            context.closeMonitor();
+            AppCtx.getRedisRepo().save(context, stripePairs, stripeAnyKey);
+            AppCtx.getExpireOps().setExpireKey(context, stripePairs, stripeAnyKey);
         });
     }
 
@@ -116,10 +124,10 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        AppCtx.getExecutorOps().getAsyncExecutor().submit(pair.getIdType(), () -> {
 
             if (!context.isDelayed()) {
-                AppCtx.getDbaseRepo().save(context, pair, keyInfo);
+                saveToDbase(context, pair, keyInfo);
             }
             AppCtx.getExpireOps().setExpireKey(context, pair, keyInfo);
             context.closeMonitor();
@@ -137,13 +145,12 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        submit(context, pairs, anyKey, (stripePairs, stripeAnyKey) -> {
 
             if (!context.isDelayed()) {
-                AppCtx.getDbaseRepo().save(context, pairs, anyKey);
+                saveToDbase(context, stripePairs, stripeAnyKey);
             }
-            AppCtx.getExpireOps().setExpireKey(context, pairs, anyKey);
-            context.closeMonitor();
+            AppCtx.getExpireOps().setExpireKey(context, stripePairs, stripeAnyKey);
         });
     }
 
@@ -158,10 +165,10 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        AppCtx.getExecutorOps().getAsyncExecutor().submit(pair.getIdType(), () -> {
 
             if (!context.isDelayed()) {
-                AppCtx.getDbaseRepo().update(context, pair, keyInfo);
+                updateToDbase(context, pair, keyInfo);
             }
             AppCtx.getExpireOps().setExpireKey(context, pair, keyInfo);
             context.closeMonitor();
@@ -179,13 +186,12 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        submit(context, pairs, anyKey, (stripePairs, stripeAnyKey) -> {
 
             if (!context.isDelayed()) {
-                AppCtx.getDbaseRepo().update(context, pairs, anyKey);
+                updateToDbase(context, stripePairs, stripeAnyKey);
             }
-            AppCtx.getExpireOps().setExpireKey(context, pairs, anyKey);
-            context.closeMonitor();
+            AppCtx.getExpireOps().setExpireKey(context, stripePairs, stripeAnyKey);
         });
     }
 
@@ -201,10 +207,10 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        AppCtx.getExecutorOps().getAsyncExecutor().submit(pair.getIdType(), () -> {
 
             if (!context.isDelayed()) {
-                AppCtx.getDbaseRepo().update(context, pair, keyInfo);
+                updateToDbase(context, pair, keyInfo);
             }
             AppCtx.getRedisRepo().update(context, pair, keyInfo);
             AppCtx.getExpireOps().setExpireKey(context, pair, keyInfo);
@@ -224,14 +230,13 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        submit(context, pairs, anyKey, (stripePairs, stripeAnyKey) -> {
 
             if (!context.isDelayed()) {
-                AppCtx.getDbaseRepo().update(context, pairs, anyKey);
+                updateToDbase(context, stripePairs, stripeAnyKey);
             }
-            AppCtx.getRedisRepo().update(context, pairs, anyKey);
-            AppCtx.getExpireOps().setExpireKey(context, pairs, anyKey);
-            context.closeMonitor();
+            AppCtx.getRedisRepo().update(context, stripePairs, stripeAnyKey);
+            AppCtx.getExpireOps().setExpireKey(context, stripePairs, stripeAnyKey);
         });
     }
 
@@ -247,14 +252,13 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        submit(context, pairs, anyKey, (stripePairs, stripeAnyKey) -> {
 
-            AppCtx.getRedisRepo().save(context, pairs,  anyKey);
+            AppCtx.getRedisRepo().save(context, stripePairs,  stripeAnyKey);
             if (!context.isDelayed()) {
-                AppCtx.getDbaseRepo().save(context, pairs, anyKey);
+                saveToDbase(context, stripePairs, stripeAnyKey);
             }
-            AppCtx.getExpireOps().setExpireKey(context, pairs, anyKey);
-            context.closeMonitor();
+            AppCtx.getExpireOps().setExpireKey(context, stripePairs, stripeAnyKey);
         });
     }
 
@@ -270,11 +274,11 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        AppCtx.getExecutorOps().getAsyncExecutor().submit(pair.getIdType(), () -> {
 
             AppCtx.getRedisRepo().save(context, pair, keyInfo);
             if (!context.isDelayed()) {
-                AppCtx.getDbaseRepo().save(context, pair, keyInfo);
+                saveToDbase(context, pair, keyInfo);
             }
             AppCtx.getExpireOps().setExpireKey(context, pair, keyInfo);
             context.closeMonitor();
@@ -293,14 +297,13 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        submit(context, pairs, anyKey, (stripePairs, stripeAnyKey) -> {
 
-            AppCtx.getRedisRepo().save(context, pairs, anyKey);
+            AppCtx.getRedisRepo().save(context, stripePairs, stripeAnyKey);
             if (!context.isDelayed()) {
-                AppCtx.getDbaseRepo().save(context, pairs, anyKey);
+                saveToDbase(context, stripePairs, stripeAnyKey);
             }
-            AppCtx.getExpireOps().setExpireKey(context, pairs, anyKey);
-            context.closeMonitor();
+            AppCtx.getExpireOps().setExpireKey(context, stripePairs, stripeAnyKey);
         });
     }
 
@@ -322,7 +325,7 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        AppCtx.getExecutorOps().getAsyncExecutor().submit(pair.getIdType(), () -> {
 
             if (AppCtx.getRedisRepo().ifExist(context, pair, keyInfo)) {
                 AppCtx.getRedisRepo().update(context, pair, keyInfo);
@@ -355,18 +358,17 @@ public class AsyncOps {
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        submit(context, pairs, anyKey, (stripePairs, stripeAnyKey) -> {
 
-            if (AppCtx.getRedisRepo().ifExist(context, pairs, anyKey)) {
-                AppCtx.getRedisRepo().update(context, pairs, anyKey);
-                AppCtx.getDbaseRepo().update(context, pairs, anyKey);
+            if (AppCtx.getRedisRepo().ifExist(context, stripePairs, stripeAnyKey)) {
+                AppCtx.getRedisRepo().update(context, stripePairs, stripeAnyKey);
+                AppCtx.getDbaseRepo().update(context, stripePairs, stripeAnyKey);
             } else {
-                AppCtx.getDbaseRepo().save(context, pairs, anyKey);
-                AppCtx.getDbaseRepo().find(context, pairs, anyKey);
-                AppCtx.getRedisRepo().save(context, pairs, anyKey);
+                AppCtx.getDbaseRepo().save(context, stripePairs, stripeAnyKey);
+                AppCtx.getDbaseRepo().find(context, stripePairs, stripeAnyKey);
+                AppCtx.getRedisRepo().save(context, stripePairs, stripeAnyKey);
             }
-            AppCtx.getExpireOps().setExpireKey(context, pairs, anyKey);
-            context.closeMonitor();
+            AppCtx.getExpireOps().setExpireKey(context, stripePairs, stripeAnyKey);
         });
     }
 
@@ -380,13 +382,13 @@ public class AsyncOps {
             AppCtx.getKeyInfoRepo().delete(context, pair);
             deleteKvPairKeyInfo(context, pair, keyInfo);
 
-            Utils.getExcutorService().submit(() -> {
+            AppCtx.getExecutorOps().getRedisExecutor().submit(() -> {
                 context.closeMonitor();
             });
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        AppCtx.getExecutorOps().getAsyncExecutor().submit(pair.getIdType(), () -> {
 
             AppCtx.getRedisRepo().delete(context, pair, keyInfo);
             AppCtx.getKeyInfoRepo().delete(context, pair);
@@ -405,18 +407,17 @@ public class AsyncOps {
             AppCtx.getKeyInfoRepo().delete(context, pairs);
             deleteKvPairsKeyInfo(context, pairs, anyKey);
 
-            Utils.getExcutorService().submit(() -> {
+            AppCtx.getExecutorOps().getRedisExecutor().submit(() -> {
                 context.closeMonitor();
             });
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        submit(context, pairs, anyKey, (stripePairs, stripeAnyKey) -> {
 
-            AppCtx.getRedisRepo().delete(context, pairs, anyKey);
-            AppCtx.getKeyInfoRepo().delete(context, pairs);
-            deleteKvPairsKeyInfo(context, pairs, anyKey);
-            context.closeMonitor();
+            AppCtx.getRedisRepo().delete(context, stripePairs, stripeAnyKey);
+            AppCtx.getKeyInfoRepo().delete(context, stripePairs);
+            deleteKvPairsKeyInfo(context, stripePairs, stripeAnyKey);
         });
     }
 
@@ -427,19 +428,21 @@ public class AsyncOps {
         if (context.isSync()) {
 
             AppCtx.getRedisRepo().delete(context, pair, keyInfo);
+            removeWriteBehind(new KvPairs(pair));
             AppCtx.getDbaseRepo().delete(context, pair, keyInfo);
             AppCtx.getKeyInfoRepo().delete(context, pair);
             deleteKvPairKeyInfo(context, pair, keyInfo);
 
-            Utils.getExcutorService().submit(() -> {
+            AppCtx.getExecutorOps().getDbaseExecutor().submit(() -> {
                 context.closeMonitor();
             });
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        AppCtx.getExecutorOps().getAsyncExecutor().submit(pair.getIdType(), () -> {
 
             AppCtx.getRedisRepo().delete(context, pair, keyInfo);
+            removeWriteBehind(new KvPairs(pair));
             AppCtx.getDbaseRepo().delete(context, pair, keyInfo);
             AppCtx.getKeyInfoRepo().delete(context, pair);
             deleteKvPairKeyInfo(context, pair, keyInfo);
@@ -454,23 +457,24 @@ public class AsyncOps {
         if (context.isSync()) {
 
             AppCtx.getRedisRepo().delete(context, pairs, anyKey);
+            removeWriteBehind(pairs);
             AppCtx.getDbaseRepo().delete(context, pairs, anyKey);
             AppCtx.getKeyInfoRepo().delete(context, pairs);
             deleteKvPairsKeyInfo(context, pairs, anyKey);
 
-            Utils.getExcutorService().submit(() -> {
+            AppCtx.getExecutorOps().getDbaseExecutor().submit(() -> {
                 context.closeMonitor();
             });
             return;
         }
 
-        Utils.getExcutorService().submit(() -> {
+        submit(context, pairs, anyKey, (stripePairs, stripeAnyKey) -> {
 
-            AppCtx.getRedisRepo().delete(context, pairs, anyKey);
-            AppCtx.getDbaseRepo().delete(context, pairs, anyKey);
-            AppCtx.getKeyInfoRepo().delete(context, pairs);
-            deleteKvPairsKeyInfo(context, pairs, anyKey);
-            context.closeMonitor();
+            AppCtx.getRedisRepo().delete(context, stripePairs, stripeAnyKey);
+            removeWriteBehind(stripePairs);
+            AppCtx.getDbaseRepo().delete(context, stripePairs, stripeAnyKey);
+            AppCtx.getKeyInfoRepo().delete(context, stripePairs);
+            deleteKvPairsKeyInfo(context, stripePairs, stripeAnyKey);
         });
     }
 
@@ -502,4 +506,90 @@ public class AsyncOps {
             if (stopWatch != null) stopWatch.stopNow();
         }
     }
-}
\ No newline at end of file
+
+    // a batch is split by the stripes of its keys, each part runs in order with the
+    // other operations of its keys. the monitor is closed after the last part.
+    //
+    private void submit(Context context, KvPairs pairs, AnyKey anyKey, BiConsumer<KvPairs, AnyKey> task) {
+
+        StripedExecutor executor = AppCtx.getExecutorOps().getAsyncExecutor();
+
+        Map<BoundedExecutor, KvPairs> stripePairsMap = new LinkedHashMap<>();
+        Map<BoundedExecutor, AnyKey> stripeAnyKeyMap = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            KvPair pair = pairs.get(i);
+            BoundedExecutor stripe = executor.stripeOf(pair.getIdType());
+            stripePairsMap.computeIfAbsent(stripe, k -> new KvPairs()).add(pair);
+            stripeAnyKeyMap.computeIfAbsent(stripe, k -> new AnyKey()).add(anyKey.getAny(i));
+        }
+
+        if (stripePairsMap.size() <= 1) {
+            executor.submit(pairs.size() == 0 ? null : pairs.get(0).getIdType(), () -> {
+                task.accept(pairs, anyKey);
+                context.closeMonitor();
+            });
+            return;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(stripePairsMap.size());
+        for (Map.Entry<BoundedExecutor, KvPairs> entry: stripePairsMap.entrySet()) {
+            KvPairs stripePairs = entry.getValue();
+            AnyKey stripeAnyKey = stripeAnyKeyMap.get(entry.getKey());
+            entry.getKey().submit(() -> {
+                try {
+                    task.accept(stripePairs, stripeAnyKey);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        context.closeMonitor();
+                    }
+                }
+            });
+        }
+    }
+
+    // asynchronous database writes go through write-behind when it is enabled
+    //
+    private void saveToDbase(Context context, KvPair pair, KeyInfo keyInfo) {
+        saveToDbase(context, new KvPairs(pair), new AnyKey(keyInfo));
+    }
+
+    private void saveToDbase(Context context, KvPairs pairs, AnyKey anyKey) {
+        WriteBehindOps writeBehindOps = AppCtx.getWriteBehindOps();
+        if (writeBehindOps != null && writeBehindOps.isEnabled() && !hasNewUuid(pairs)) {
+            writeBehindOps.save(context, pairs, anyKey);
+        } else {
+            AppCtx.getDbaseRepo().save(context, pairs, anyKey);
+        }
+    }
+
+    private void updateToDbase(Context context, KvPair pair, KeyInfo keyInfo) {
+        updateToDbase(context, new KvPairs(pair), new AnyKey(keyInfo));
+    }
+
+    private void updateToDbase(Context context, KvPairs pairs, AnyKey anyKey) {
+        WriteBehindOps writeBehindOps = AppCtx.getWriteBehindOps();
+        if (writeBehindOps != null && writeBehindOps.isEnabled() && !hasNewUuid(pairs)) {
+            writeBehindOps.update(context, pairs, anyKey);
+        } else {
+            AppCtx.getDbaseRepo().update(context, pairs, anyKey);
+        }
+    }
+
+    // a pending write must not recreate a deleted row
+    //
+    private void removeWriteBehind(KvPairs pairs) {
+        WriteBehindOps writeBehindOps = AppCtx.getWriteBehindOps();
+        if (writeBehindOps != null && writeBehindOps.isEnabled()) {
+            writeBehindOps.remove(pairs);
+        }
+    }
+
+    // new keys get their ids from database, they are not delayed
+    //
+    private boolean hasNewUuid(KvPairs pairs) {
+        for (KvPair pair: pairs) {
+            if (pair.isNewUuid()) return true;
+        }
+        return false;
+    }
+}
@@ -6,12 +6,18 @@
 
 package doitincloud.rdbcache.services;
 
+import doitincloud.rdbcache.configs.AppCtx;
 import doitincloud.rdbcache.configs.PropCfg;
 import doitincloud.commons.exceptions.ServerErrorException;
 import doitincloud.commons.helpers.*;
 import doitincloud.rdbcache.models.KeyInfo;
 import doitincloud.rdbcache.models.KvIdType;
 import doitincloud.rdbcache.models.KvPair;
+import doitincloud.rdbcache.supports.CompactCodec;
+import doitincloud.rdbcache.supports.MemoryWeigher;
+import doitincloud.rdbcache.supports.OffHeapStore;
+import doitincloud.rdbcache.supports.TimingWheel;
+import doitincloud.rdbcache.supports.TinyLfuPolicy;
 
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.ContextRefreshedEvent;
@@ -22,7 +28,9 @@ import javax.annotation.PostConstruct;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,29 +40,54 @@ public class CacheOps extends Thread {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CacheOps.class);
 
-    private Long recycleSecs = PropCfg.getCacheRecycleSecs();
-
     private Long maxCacheSize = PropCfg.getMaxCacheSize();
 
+    private Long maxCacheBytes = PropCfg.getMaxCacheBytes();
+
     private Long keyMinCacheTTL = PropCfg.getKeyMinCacheTTL();
 
     private Long dataMaxCacheTLL = PropCfg.getDataMaxCacheTLL();
 
+    private String dataStorage = PropCfg.getDataStorage();
+
+    private Long offHeapBytes = PropCfg.getOffHeapBytes();
+
+    private Long staleGraceSecs = PropCfg.getStaleGraceSecs();
+
     private ConcurrentHashMap<String, Cached> cache = null;
 
+    private TinyLfuPolicy policy = null;
+
+    private TimingWheel timingWheel = null;
+
+    // data entries are kept here when dataStorage is offheap
+    private OffHeapStore offHeapStore = null;
+
+    // timed out refreshable entries served while being refreshed
+    private AtomicLong staleHitCount = new AtomicLong(0L);
+
+    // how often the timing wheel advances
+    private static final long EXPIRE_TICK_MILLIS = 1000L;
+
     @PostConstruct
     public void init() {
     }
 
     @EventListener
     public void handleEvent(ContextRefreshedEvent event) {
-        recycleSecs = PropCfg.getCacheRecycleSecs();
         maxCacheSize = PropCfg.getMaxCacheSize();
+        maxCacheBytes = PropCfg.getMaxCacheBytes();
         keyMinCacheTTL = PropCfg.getKeyMinCacheTTL();
         dataMaxCacheTLL = PropCfg.getDataMaxCacheTLL();
+        dataStorage = PropCfg.getDataStorage();
+        offHeapBytes = PropCfg.getOffHeapBytes();
+        staleGraceSecs = PropCfg.getStaleGraceSecs();
 
         if (cache == null) {
             initializeCache();
+        } else {
+            policy.setMaximum(maxCacheSize);
+            policy.setMaximumWeight(maxCacheBytes);
         }
     }
 
@@ -76,14 +109,12 @@ public class CacheOps extends Thread {
         int concurrentLevel = (initCapacity / 256 < 32 ? 32 : initCapacity / 256);
         cache = new ConcurrentHashMap<String, Cached>(
                 initCapacity, 0.75f, concurrentLevel);
-    }
-
-    public Long getRecycleSecs() {
-        return recycleSecs;
-    }
-
-    public void setRecycleSecs(Long recycleSecs) {
-        this.recycleSecs = recycleSecs;
+        policy = new TinyLfuPolicy(maxCacheSize);
+        policy.setMaximumWeight(maxCacheBytes);
+        timingWheel = new TimingWheel(System.currentTimeMillis());
+        if ("offheap".equals(dataStorage)) {
+            offHeapStore = new OffHeapStore(offHeapBytes);
+        }
     }
 
     public Long getMaxCacheSize() {
@@ -92,6 +123,80 @@ public class CacheOps extends Thread {
 
     public void setMaxCacheSize(Long maxCacheSize) {
         this.maxCacheSize = maxCacheSize;
+        if (policy != null) {
+            policy.setMaximum(maxCacheSize);
+        }
+    }
+
+    public String getDataStorage() {
+        return dataStorage;
+    }
+
+    public long getOffHeapCapacity() {
+        if (offHeapStore == null) {
+            return 0L;
+        }
+        return offHeapStore.getCapacity();
+    }
+
+    public long getOffHeapUsedBytes() {
+        if (offHeapStore == null) {
+            return 0L;
+        }
+        return offHeapStore.getUsedBytes();
+    }
+
+    public Long getMaxCacheBytes() {
+        return maxCacheBytes;
+    }
+
+    public void setMaxCacheBytes(Long maxCacheBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+        if (policy != null) {
+            policy.setMaximumWeight(maxCacheBytes);
+        }
+    }
+
+    // estimated bytes held by the cache
+    //
+    public long getCacheWeight() {
+        if (policy == null) {
+            return 0L;
+        }
+        return policy.getTotalWeight();
+    }
+
+    public int getCacheSize() {
+        if (cache == null) {
+            return 0;
+        }
+        return cache.size();
+    }
+
+    public int getScheduledSize() {
+        if (timingWheel == null) {
+            return 0;
+        }
+        return timingWheel.size();
+    }
+
+    public long getEvictionCount() {
+        if (policy == null) {
+            return 0L;
+        }
+        return policy.getEvictionCount();
+    }
+
+    public Long getStaleGraceSecs() {
+        return staleGraceSecs;
+    }
+
+    public void setStaleGraceSecs(Long staleGraceSecs) {
+        this.staleGraceSecs = staleGraceSecs;
+    }
+
+    public long getStaleHitCount() {
+        return staleHitCount.get();
     }
 
     public Long getKeyMinCacheTTL() {
@@ -111,11 +216,11 @@ public class CacheOps extends Thread {
     }
 
     public void put(String key, Map<String, Object> map) {
-        cache.put(key, new Cached(map));
+        putCached(key, new Cached(map));
     }
 
     public void put(String key, Map<String, Object> map, long timeToLive) {
-        cache.put(key, new Cached(map, timeToLive));
+        putCached(key, new Cached(map, timeToLive));
     }
 
     public Map<String, Object> put(String key, Long timeToLive, Callable<Map<String, Object>> refreshable) {
@@ -126,7 +231,7 @@ public class CacheOps extends Thread {
             }
             Cached cached = new Cached(map, timeToLive);
             cached.refreshable = refreshable;
-            cache.put(key, cached);
+            putCached(key, cached);
             return map;
         } catch (Exception e) {
             String msg = e.getCause().getMessage();
@@ -140,38 +245,32 @@ public class CacheOps extends Thread {
         if (cached == null) {
             return null;
         }
+        policy.onAccess(key);
         if (cached.isTimeout()) {
-            if (!cached.isRefreshable()) {
-                cache.remove(key);
+            if (!cached.isRefreshable() || cached.isStaleExpired()) {
+                removeCached(key);
                 return null;
-            } else {
-                try {
-                    Map<String, Object> map = cached.refreshable.call();
-                    if (map == null) {
-                        cache.remove(key);
-                        return null;
-                    }
-                    for (Map.Entry<String, Object> entry: update.entrySet()) {
-                        map.put(entry.getKey(), entry.getValue());
-                    }
-                    cached.setMap(map);
-                    cached.renew();
-                    return map;
-                } catch (Exception e) {
-                    String msg = e.getCause().getMessage();
-                    LOGGER.error(msg);
-                    throw new ServerErrorException(msg);
-                }
             }
-        } else {
-            Map<String, Object> map = cached.getMap();
-            if (map != null) {
-                for (Map.Entry<String, Object> entry : update.entrySet()) {
-                    map.put(entry.getKey(), entry.getValue());
-                }
+            revalidateCached(key, cached);
+        }
+        Map<String, Object> map = cached.getMap();
+        if (map != null) {
+            for (Map.Entry<String, Object> entry : update.entrySet()) {
+                map.put(entry.getKey(), entry.getValue());
             }
-            return map;
+            try {
+                cached.setMap(map);
+            } catch (IllegalArgumentException e) {
+                LOGGER.trace(e.getMessage() + ", remove " + key);
+            }
+            if (!cached.isStored()) {
+                // the off-heap entry has no data left, like putData
+                removeCached(key);
+                return null;
+            }
+            weighCached(key, cached);
         }
+        return map;
     }
 
     public Map<String, Object> get(String key) {
@@ -179,25 +278,15 @@ public class CacheOps extends Thread {
         if (cached == null) {
             return null;
         }
+        policy.onAccess(key);
         if (cached.isTimeout()) {
-            if (!cached.isRefreshable()) {
-                cache.remove(key);
+            if (!cached.isRefreshable() || cached.isStaleExpired()) {
+                removeCached(key);
                 return null;
-            } else {
-                try {
-                    Map<String, Object> map = cached.refreshable.call();
-                    cached.setMap(map);
-                    cached.renew();
-                    return map;
-                } catch (Exception e) {
-                    String msg = e.getCause().getMessage();
-                    LOGGER.error(msg);
-                    throw new ServerErrorException(msg);
-                }
             }
-        } else {
-            return cached.getMap();
+            revalidateCached(key, cached);
         }
+        return cached.getMap();
     }
 
     public boolean containsKey(String key) {
@@ -205,8 +294,8 @@ public class CacheOps extends Thread {
             return false;
         }
         Cached cached = cache.get(key);
-        if (cached.isTimeout() && !cached.isRefreshable()) {
-            cache.remove(key);
+        if (cached.isTimeout() && (!cached.isRefreshable() || cached.isStaleExpired())) {
+            removeCached(key);
             return false;
         } else {
             return true;
@@ -214,7 +303,50 @@ public class CacheOps extends Thread {
     }
 
     public void remove(String key) {
-        cache.remove(key);
+        removeCached(key);
+    }
+
+    // every write goes through the policy, so the cache never grows beyond
+    // maxCacheSize entries or maxCacheBytes estimated bytes
+    //
+    private void putCached(String key, Cached cached) {
+        Cached old = cache.put(key, cached);
+        if (old != null) old.release();
+        scheduleCached(key, cached);
+        weighCached(key, cached);
+    }
+
+    // (re)computes the weight of cached, evicts if it makes the cache overflow
+    //
+    private void weighCached(String key, Cached cached) {
+        long weight = cached.weigh(key);
+        for (String victim: policy.onPut(key, weight)) {
+            timingWheel.deschedule(victim);
+            Cached evicted = cache.remove(victim);
+            if (evicted != null) evicted.release();
+            LOGGER.trace("evict key: " + victim);
+        }
+    }
+
+    // refreshable entries are due for removal at the end of their grace period,
+    // others when they time out
+    //
+    private void scheduleCached(String key, Cached cached) {
+        if (cached.isRefreshable()) {
+            timingWheel.schedule(key, cached.getStaleUntil());
+        } else {
+            timingWheel.schedule(key, cached.getExpireAt());
+        }
+    }
+
+    // remove from the policy first, a concurrent put of the same key then
+    // leaves at most a stale key in the policy, never an untracked entry in the cache
+    //
+    private void removeCached(String key) {
+        policy.onRemove(key);
+        timingWheel.deschedule(key);
+        Cached cached = cache.remove(key);
+        if (cached != null) cached.release();
     }
 
     public KeyInfo putKeyInfo(KvIdType idType, KeyInfo keyInfo) {
@@ -246,7 +378,7 @@ public class CacheOps extends Thread {
 
     public void removeKeyInfo(KvIdType idType) {
         String hashKey = "keyInfo::"+ idType.getType() + ":" + idType.getId();
-        cache.remove(hashKey);
+        removeCached(hashKey);
     }
 
     public void removeKeyInfo(List<KvPair> pairs) {
@@ -262,7 +394,26 @@ public class CacheOps extends Thread {
         Long ttl = keyInfo.getExpireTTL();
         if (ttl > dataMaxCacheTLL) ttl = dataMaxCacheTLL;
         String hashKey = pair.getType() + "::" + pair.getId();
-        put(hashKey, pair.getDataClone(), ttl * 1000);
+        if (offHeapStore != null) {
+            Cached cached = new OffHeapCached(ttl * 1000);
+            try {
+                cached.setMap(pair.getData());
+            } catch (IllegalArgumentException e) {
+                // the codec would change the type of a value, keep it on heap
+                LOGGER.trace(e.getMessage() + ", keep " + hashKey + " on heap");
+                put(hashKey, pair.getDataClone(), ttl * 1000);
+                return;
+            }
+            if (!cached.isStored()) {
+                // the old data of the key is no longer valid
+                LOGGER.trace("off-heap store is full, skip " + hashKey);
+                removeCached(hashKey);
+                return;
+            }
+            putCached(hashKey, cached);
+        } else {
+            put(hashKey, pair.getDataClone(), ttl * 1000);
+        }
     }
 
     public void updateData(KvPair pair) {
@@ -287,7 +438,7 @@ public class CacheOps extends Thread {
 
     public void removeData(KvIdType idType) {
         String hashKey = idType.getType() + "::" + idType.getId();
-        cache.remove(hashKey);
+        removeCached(hashKey);
     }
 
     public void removeKeyAndData(KvPair pair) {
@@ -335,7 +486,7 @@ public class CacheOps extends Thread {
                         continue;
                     }
                 }
-                cache.remove(key);
+                removeCached(key);
             }
         }
     }
@@ -374,7 +525,7 @@ public class CacheOps extends Thread {
                     continue;
                 }
             }
-            cache.remove(key);
+            removeCached(key);
         }
     }
 
@@ -385,7 +536,7 @@ public class CacheOps extends Thread {
             if (key.startsWith("table")) {
                 continue;
             }
-            cache.remove(key);
+            removeCached(key);
         }
     }
 
@@ -411,23 +562,18 @@ public class CacheOps extends Thread {
             if (!key.startsWith("table")) {
                 continue;
             }
-            cache.remove(key);
+            removeCached(key);
         }
     }
 
     public void removeAll() {
-        cache.clear();
-    }
-
-    private List<String> refreshKeys = new ArrayList<String>();
-    private List<String> timeoutKeys = new ArrayList<String>();
-
-    private SortedSet<KeyLastAccess> lastAccessSortedKeys = new TreeSet<>(new Comparator<KeyLastAccess>(){
-        @Override
-        public int compare(KeyLastAccess o1, KeyLastAccess o2) {
-            return (int) (o1.lastAccess - o2.lastAccess);
+        policy.clear();
+        timingWheel.clear();
+        for (String key: cache.keySet()) {
+            Cached cached = cache.remove(key);
+            if (cached != null) cached.release();
         }
-    });
+    }
 
     private boolean isRunning = false;
 
@@ -453,85 +599,31 @@ public class CacheOps extends Thread {
             try {
 
                 try {
-                    Thread.sleep(recycleSecs * 1000L);
+                    Thread.sleep(EXPIRE_TICK_MILLIS);
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                 }
 
                 if (!isRunning) break;
 
-                timeoutKeys.clear();
-                refreshKeys.clear();
-                lastAccessSortedKeys.clear();
-
-                final AtomicInteger atomicInteger = new AtomicInteger(0);
-                cache.forEach(1, (key, cached) -> {
-                    if (key == null || cached == null) return;
-                    atomicInteger.incrementAndGet();
-                    if (cached.isRefreshable()) {
-                        if (cached.isAlmostTimeout()) refreshKeys.add(key);
-                    } else if (cached.isTimeout()) {
-                        timeoutKeys.add(key);
-                    } else {
-                        lastAccessSortedKeys.add(new KeyLastAccess(key, cached.lastAccessAt));
-                    }
-                });
-
-                int size = atomicInteger.intValue();
-                long almostMax = 3 * maxCacheSize / 4;
-
-                LOGGER.trace("recycle start -> cache size: " + size + ", max: " + maxCacheSize  + ", almostMax: " + almostMax);
+                // only the entries due in this tick are visited
+                //
+                List<String> dueKeys = timingWheel.advance(System.currentTimeMillis());
 
-                LOGGER.trace("timeoutKeys size: " + timeoutKeys.size());
+                if (dueKeys.size() == 0) continue;
 
-                for (String key: timeoutKeys) {
-                    size--;
-                    if (key == null) continue;
-                    cache.remove(key);
-                    LOGGER.trace("timeout key: " + key);
-                }
-                timeoutKeys.clear();
+                LOGGER.trace("dueKeys size: " + dueKeys.size() + ", cache size: " + cache.size());
 
-                LOGGER.trace("refreshKeys size: " + refreshKeys.size());
-
-                for (String key: refreshKeys) {
-                    if (key == null) continue;
+                for (String key: dueKeys) {
                     Cached cached = cache.get(key);
                     if (cached == null) continue;
-                    Cached clone = cached.clone();
-                    Utils.getExcutorService().submit(() -> {
-                        try {
-                            Map<String, Object> map = clone.refreshable.call();
-                            clone.setMap(map);
-                        } catch (Exception e) {
-                            String msg = e.getCause().getMessage();
-                            LOGGER.error(msg);
-                            e.printStackTrace();
-                        }
-                        cache.put(key, clone);
-                        LOGGER.trace("refresh key: " + key);
-                    });
-                }
-                refreshKeys.clear();
-
-                if (size <= almostMax) {
-                    continue;
-                }
-
-                LOGGER.trace("reduce cache size");
-
-                LOGGER.trace("lastAccessSortedKeys size: " + lastAccessSortedKeys.size());
-
-                for (KeyLastAccess keyLastAccess: lastAccessSortedKeys) {
-                    size--;
-                    if (keyLastAccess == null || keyLastAccess.key == null) continue;
-                    cache.remove(keyLastAccess.key);
-                    LOGGER.trace("remove key (" + keyLastAccess.lastAccess + "): " + keyLastAccess.key);
-                    if (size <= almostMax) {
-                        break;
+                    if (cached.isRefreshable() ? cached.isStaleExpired() : cached.isTimeout()) {
+                        removeCached(key);
+                        LOGGER.trace("timeout key: " + key);
+                    } else {
+                        scheduleCached(key, cached);
                     }
                 }
-                lastAccessSortedKeys.clear();
 
             } catch (Exception e) {
                 String msg = e.getCause().getMessage();
@@ -543,14 +635,44 @@ public class CacheOps extends Thread {
         isRunning = false;
     }
 
-    class KeyLastAccess {
-
-        String key;
-        long lastAccess;
+    // stale-while-revalidate: a timed out refreshable entry is still served while
+    // a single background task refreshes it, until its grace period ends
+    //
+    private void revalidateCached(String key, Cached cached) {
+        staleHitCount.incrementAndGet();
+        if (!cached.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Cached clone = cached.clone();
+        try {
+            AppCtx.getExecutorOps().getRefreshExecutor().execute(() -> refreshCached(key, cached, clone));
+        } catch (RejectedExecutionException e) {
+            // keep serving the stale value, a later get tries again
+            LOGGER.trace("refresh rejected, key: " + key);
+            cached.refreshing.set(false);
+        }
+    }
 
-        KeyLastAccess(String key, long lastAccess) {
-            this.key = key;
-            this.lastAccess = lastAccess;
+    private void refreshCached(String key, Cached cached, Cached clone) {
+        try {
+            Map<String, Object> map = clone.refreshable.call();
+            if (map == null) {
+                return;
+            }
+            clone.setMap(map);
+            clone.renew();
+            // the key may have been evicted, removed or replaced meanwhile, don't bring it back
+            if (cache.replace(key, cached, clone)) {
+                cached.release();
+                scheduleCached(key, clone);
+                weighCached(key, clone);
+            }
+            LOGGER.trace("refresh key: " + key);
+        } catch (Exception e) {
+            String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            LOGGER.error(msg);
+        } finally {
+            cached.refreshing.set(false);
         }
     }
 
@@ -566,6 +688,8 @@ public class CacheOps extends Thread {
 
         Callable<Map<String, Object>> refreshable;
 
+        AtomicBoolean refreshing = new AtomicBoolean(false);
+
         Cached() {
             createdAt = System.currentTimeMillis();
             lastAccessAt = System.nanoTime();
@@ -607,13 +731,18 @@ public class CacheOps extends Thread {
             }
         }
 
-        boolean isAlmostTimeout() {
-            long now = System.currentTimeMillis();
-            if (now > createdAt + timeToLive * 3 / 4) {
-                return true;
-            } else {
-                return false;
-            }
+        long getExpireAt() {
+            return createdAt + timeToLive;
+        }
+
+        // end of the grace period of a refreshable entry
+        //
+        long getStaleUntil() {
+            return createdAt + timeToLive + staleGraceSecs * 1000L;
+        }
+
+        boolean isStaleExpired() {
+            return System.currentTimeMillis() > getStaleUntil();
         }
 
         void renew() {
@@ -621,6 +750,19 @@ public class CacheOps extends Thread {
             createdAt = System.currentTimeMillis();
         }
 
+        boolean isStored() {
+            return true;
+        }
+
+        long weigh(String key) {
+            return MemoryWeigher.weigh(key, getMap());
+        }
+
+        // frees resources held outside of the heap
+        //
+        void release() {
+        }
+
         protected synchronized Cached clone() {
             Cached clone = new Cached();
             if (map != null) {
@@ -632,5 +774,53 @@ public class CacheOps extends Thread {
             return clone;
         }
     }
-}
 
+    // data entry kept in the off-heap store, the heap only holds its address
+    //
+    class OffHeapCached extends Cached {
+
+        private int address = -1;
+
+        private boolean released = false;
+
+        OffHeapCached(long timeToLive) {
+            super(null, timeToLive);
+        }
+
+        @Override
+        synchronized Map<String, Object> getMap() {
+            lastAccessAt = System.nanoTime();
+            if (address == -1) {
+                return null;
+            }
+            return CompactCodec.decode(offHeapStore.read(address));
+        }
+
+        @Override
+        synchronized void setMap(Map<String, Object> map) {
+            lastAccessAt = System.nanoTime();
+            offHeapStore.free(address);
+            address = -1;
+            if (map != null && !released) {
+                address = offHeapStore.write(CompactCodec.encode(map));
+            }
+        }
+
+        @Override
+        synchronized boolean isStored() {
+            return address != -1;
+        }
+
+        @Override
+        long weigh(String key) {
+            return MemoryWeigher.weigh(key, null);
+        }
+
+        @Override
+        synchronized void release() {
+            offHeapStore.free(address);
+            address = -1;
+            released = true;
+        }
+    }
+}
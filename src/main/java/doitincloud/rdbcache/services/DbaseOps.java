@@ -16,7 +16,8 @@ import doitincloud.rdbcache.models.*;
 import doitincloud.rdbcache.queries.QueryInfo;
 import doitincloud.rdbcache.repositories.KvPairRepo;
 import doitincloud.rdbcache.repositories.MonitorRepo;
-import doitincloud.rdbcache.supports.DbUtils;
+import doitincloud.rdbcache.repositories.TraceRepo;
+import doitincloud.rdbcache.supports.RowCodec;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
@@ -29,6 +30,11 @@ import org.springframework.util.Assert;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class DbaseOps {
@@ -46,6 +52,7 @@ public class DbaseOps {
     @EventListener
     public void handleEvent(ContextRefreshedEvent event) {
         tableInfoCacheTTL = PropCfg.getTableInfoCacheTTL();
+        setTraceBufferSize(PropCfg.getTraceBufferSize());
     }
 
     @EventListener
@@ -83,71 +90,74 @@ public class DbaseOps {
         this.databaseType = databaseType;
     }
 
-    private static List<String> timeTypes = Arrays.asList("timestamp", "datetime", "date", "time", "year(4)");
+    // row codecs by the identity of their columns map, cleared when table columns are refreshed
+    //
+    private ConcurrentHashMap<ColumnsKey, RowCodec> rowCodecs = new ConcurrentHashMap<>();
+
+    public RowCodec getRowCodec(Map<String, Object> columns) {
+
+        ColumnsKey columnsKey = new ColumnsKey(columns);
+        RowCodec codec = rowCodecs.get(columnsKey);
+        if (codec == null) {
+            codec = new RowCodec(columns, databaseType);
+            if (rowCodecs.size() >= 1024) {
+                // columns of stale key infos, keep it bounded
+                rowCodecs.clear();
+            }
+            rowCodecs.put(columnsKey, codec);
+        }
+        return codec;
+    }
 
     public Map<String, Object> convertDbMap(Map<String, Object> columns, Map<String, Object> dbMap) {
 
-        for (Map.Entry<String, Object> entry : columns.entrySet()) {
+        return getRowCodec(columns).convert(dbMap);
+    }
 
-            String key = entry.getKey();
-            Object value = null;
-            if (databaseType.equals("h2")) {
-                String keyUpperCase = key.toUpperCase();
-                if (!dbMap.containsKey(keyUpperCase)) {
-                    continue;
-                }
-                value = dbMap.get(keyUpperCase);
-                if (!key.equals(keyUpperCase)) {
-                    dbMap.remove(keyUpperCase);
-                    dbMap.put(key, value);
-                }
-            } else { //if (databaseType.equals("mysql")) {
-                if (!dbMap.containsKey(key)) {
-                    continue;
-                }
-                value = dbMap.get(key);
-
-            }
-            if (value == null) {
-                continue;
-            }
-            Map<String, Object> attributes = (Map<String, Object>) entry.getValue();
-            if (attributes == null) {
-                continue;
-            }
-            String type = (String) attributes.get("type");
-            if (type == null) {
-                continue;
-            }
-            if (timeTypes.contains(type)) {
-                Date dateValue = null;
-                if (value instanceof Date) {
-                    dateValue = (Date) value;
-                } else if (value instanceof Long) {
-                    dateValue = new Date((Long) value);
-                } else if (value instanceof String) {
-                    String strValue = (String) value;
-                    if (strValue.length() > 10 && strValue.matches("[0-9]+")) {
-                        dateValue = new Date(Long.valueOf(strValue));
-                    }
-                }
-                if (dateValue != null) {
-                    dbMap.put(key, DbUtils.formatDate(type, dateValue));
-                }
-            }
+
+    // trace messages are queued and appended to trace table in batches,
+    // logging a message takes no lock and does no database io. when the
+    // queue is full, messages are dropped and counted.
+    //
+    private ArrayBlockingQueue<Map<String, Object>> traceLogs = new ArrayBlockingQueue<>(PropCfg.getTraceBufferSize().intValue());
+
+    private AtomicBoolean traceFlushing = new AtomicBoolean(false);
+
+    // held while queued messages are written, so a reader sees them saved
+    private final Object traceFlushLock = new Object();
+
+    private AtomicLong droppedTraceCount = new AtomicLong(0L);
+
+    public int getTraceBufferSize() {
+        return traceLogs.size() + traceLogs.remainingCapacity();
+    }
+
+    // only before any message is logged
+    //
+    public void setTraceBufferSize(Long size) {
+        if (size == null || size < 1L || size.intValue() == getTraceBufferSize()) {
+            return;
         }
-        return dbMap;
+        traceLogs = new ArrayBlockingQueue<>(size.intValue());
+    }
+
+    public int getQueuedTraceSize() {
+        return traceLogs.size();
     }
 
+    public long getDroppedTraceCount() {
+        return droppedTraceCount.get();
+    }
 
-    synchronized public void logTraceMessage(String traceId, String message, StackTraceElement[] trace) {
+    public void logTraceMessage(String traceId, String message, StackTraceElement[] trace) {
 
         Map<String, Object> log = new LinkedHashMap<String, Object>();
+        log.put("trace_id", traceId);
         log.put("timestamp", System.currentTimeMillis());
         log.put("message", message);
 
         String simpleTrace = "";
-        for (int i = 2; i < 6; i++) {
+        for (int i = 2; i < 6 && i < trace.length; i++) {
             StackTraceElement target = trace[i];
             String methodName = target.getMethodName();
             String filename = target.getFileName();
@@ -160,16 +170,56 @@ public class DbaseOps {
         }
         log.put("trace", simpleTrace);
 
-        KvIdType idType = new KvIdType(traceId, "trace");
-        KvPair pair = AppCtx.getKvPairRepo().findById(idType);
-        if (pair == null) {
-            pair = new KvPair(idType);
+        if (!traceLogs.offer(log)) {
+            droppedTraceCount.incrementAndGet();
         }
 
-        Map<String, Object> map = pair.getData();
-        String logId = Long.toString(map.size());
-        map.put(logId, log);
-        AppCtx.getKvPairRepo().save(pair);
+        if (traceFlushing.compareAndSet(false, true)) {
+            ExecutorOps executorOps = AppCtx.getExecutorOps();
+            if (executorOps == null) {
+                traceFlushing.set(false);
+                flushTraceMessages();
+                return;
+            }
+            try {
+                executorOps.getTraceExecutor().execute(() -> {
+                    traceFlushing.set(false);
+                    flushTraceMessages();
+                });
+            } catch (RejectedExecutionException e) {
+                // shutting down, nothing else will flush
+                traceFlushing.set(false);
+                flushTraceMessages();
+            }
+        }
+    }
+
+    // writes all queued trace messages to database
+    //
+    public void flushTraceMessages() {
+
+        synchronized (traceFlushLock) {
+
+            List<Map<String, Object>> logs = new ArrayList<>();
+            traceLogs.drainTo(logs);
+            if (logs.size() == 0) {
+                return;
+            }
+
+            TraceRepo traceRepo = AppCtx.getTraceRepo();
+            if (traceRepo == null || !traceRepo.saveAll(logs)) {
+                droppedTraceCount.addAndGet(logs.size());
+                LOGGER.error("failed to save " + logs.size() + " trace message(s)");
+            }
+        }
+    }
+
+    // returns all messages of the trace, queued ones included, it waits for a
+    // flush in progress
+    //
+    public KvPair getTrace(String traceId) {
+        flushTraceMessages();
+        return AppCtx.getTraceRepo().findById(traceId);
     }
 
     public boolean saveMonitor(Context context) {
@@ -185,6 +235,11 @@ public class DbaseOps {
             monitor.setBuiltInfo(versionInfo.getBriefInfo());
         }
 
+        MonitorOps monitorOps = AppCtx.getMonitorOps();
+        if (monitorOps != null) {
+            return monitorOps.offer(monitor);
+        }
+
         MonitorRepo monitorRepo = AppCtx.getMonitorRepo();
         if (monitorRepo == null) {
             return false;
@@ -285,6 +340,7 @@ public class DbaseOps {
 
         columns = (Map<String, Object>) AppCtx.getCacheOps().put("tables_columns", tableInfoCacheTTL * 1000L, () -> {
             Map<String, Object> map = fetchTableColumns(context);
+            rowCodecs.clear();
             if (map == null) {
                 String msg = "failed to get table columns";
                 LOGGER.error(msg);
@@ -899,4 +955,25 @@ public class DbaseOps {
         }
         return false;
     }
+
+    private static class ColumnsKey {
+
+        private final Map<String, Object> columns;
+
+        ColumnsKey(Map<String, Object> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return columns == ((ColumnsKey) o).columns;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(columns);
+        }
+    }
 }
@@ -0,0 +1,179 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.services;
+
+import doitincloud.rdbcache.configs.PropCfg;
+import doitincloud.rdbcache.supports.BoundedExecutor;
+import doitincloud.rdbcache.supports.StripedExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// bounded executors, one per workload
+//
+//   async   - async operations, striped by key so they run in order per key
+//   redis   - redis key info write-backs
+//   dbase   - query info saves
+//   expire  - expire key scheduling
+//   event   - expire event workers, each runs for the life of the service
+//   monitor - the monitor record writer, runs for the life of the service
+//   trace   - trace message flushes, one at a time, it always aborts on rejection
+//   refresh - local cache refreshes, it always aborts on rejection
+//   write_behind - the write-behind flusher, runs for the life of the service
+//
+// they are created on first use, from the current configurations
+//
+@Service
+public class ExecutorOps {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutorOps.class);
+
+    private StripedExecutor asyncExecutor;
+
+    private BoundedExecutor redisExecutor;
+
+    private BoundedExecutor dbaseExecutor;
+
+    private BoundedExecutor expireExecutor;
+
+    private BoundedExecutor eventExecutor;
+
+    private BoundedExecutor monitorExecutor;
+
+    private BoundedExecutor traceExecutor;
+
+    private BoundedExecutor refreshExecutor;
+
+    private BoundedExecutor writeBehindExecutor;
+
+    @PostConstruct
+    public void init() {
+    }
+
+    @EventListener
+    public void handleEvent(ContextRefreshedEvent event) {
+    }
+
+    @EventListener
+    public void handleApplicationReadyEvent(ApplicationReadyEvent event) {
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (asyncExecutor != null) asyncExecutor.shutdown();
+        for (BoundedExecutor executor: new BoundedExecutor[] {redisExecutor, dbaseExecutor, expireExecutor, traceExecutor, refreshExecutor}) {
+            if (executor != null) executor.shutdown();
+        }
+        // event workers, the monitor writer and the write-behind flusher loop until interrupted
+        if (eventExecutor != null) eventExecutor.shutdownNow();
+        if (monitorExecutor != null) monitorExecutor.shutdownNow();
+        if (writeBehindExecutor != null) writeBehindExecutor.shutdownNow();
+    }
+
+    public synchronized StripedExecutor getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            Long stripes = PropCfg.getAsyncStripes();
+            Long queue = PropCfg.getAsyncStripeQueue();
+            LOGGER.debug("create executor async stripes: " + stripes + " queue: " + queue);
+            asyncExecutor = new StripedExecutor("async", stripes.intValue(), queue.intValue());
+        }
+        return asyncExecutor;
+    }
+
+    public synchronized BoundedExecutor getRedisExecutor() {
+        if (redisExecutor == null) {
+            redisExecutor = create("redis", PropCfg.getRedisExecutorThreads(), PropCfg.getRedisExecutorQueue());
+        }
+        return redisExecutor;
+    }
+
+    public synchronized BoundedExecutor getDbaseExecutor() {
+        if (dbaseExecutor == null) {
+            dbaseExecutor = create("dbase", PropCfg.getDbaseExecutorThreads(), PropCfg.getDbaseExecutorQueue());
+        }
+        return dbaseExecutor;
+    }
+
+    public synchronized BoundedExecutor getExpireExecutor() {
+        if (expireExecutor == null) {
+            expireExecutor = create("expire", PropCfg.getExpireExecutorThreads(), PropCfg.getExpireExecutorQueue());
+        }
+        return expireExecutor;
+    }
+
+    public synchronized BoundedExecutor getEventExecutor() {
+        if (eventExecutor == null) {
+            eventExecutor = create("event", PropCfg.getExpireConcurrency(), 1L);
+        }
+        return eventExecutor;
+    }
+
+    public synchronized BoundedExecutor getMonitorExecutor() {
+        if (monitorExecutor == null) {
+            monitorExecutor = create("monitor", 1L, 1L);
+        }
+        return monitorExecutor;
+    }
+
+    // callers handle a rejected flush themselves, whatever the configured policy
+    //
+    public synchronized BoundedExecutor getTraceExecutor() {
+        if (traceExecutor == null) {
+            LOGGER.debug("create executor trace threads: 1 queue: 1");
+            traceExecutor = new BoundedExecutor("trace", 1, 1, "abort");
+        }
+        return traceExecutor;
+    }
+
+    // a rejected refresh leaves the stale value in place, it must neither block
+    // nor run on the reader, and a dropped refresh would never clear its flag
+    //
+    public synchronized BoundedExecutor getRefreshExecutor() {
+        if (refreshExecutor == null) {
+            Long threads = PropCfg.getRefreshExecutorThreads();
+            Long queue = PropCfg.getRefreshExecutorQueue();
+            LOGGER.debug("create executor refresh threads: " + threads + " queue: " + queue);
+            refreshExecutor = new BoundedExecutor("refresh", threads.intValue(), queue.intValue(), "abort");
+        }
+        return refreshExecutor;
+    }
+
+    public synchronized BoundedExecutor getWriteBehindExecutor() {
+        if (writeBehindExecutor == null) {
+            writeBehindExecutor = create("write_behind", 1L, 1L);
+        }
+        return writeBehindExecutor;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("async", getAsyncExecutor().getMetrics());
+        map.put("redis", getRedisExecutor().getMetrics());
+        map.put("dbase", getDbaseExecutor().getMetrics());
+        map.put("expire", getExpireExecutor().getMetrics());
+        map.put("event", getEventExecutor().getMetrics());
+        map.put("monitor", getMonitorExecutor().getMetrics());
+        map.put("trace", getTraceExecutor().getMetrics());
+        map.put("refresh", getRefreshExecutor().getMetrics());
+        map.put("write_behind", getWriteBehindExecutor().getMetrics());
+        return map;
+    }
+
+    private BoundedExecutor create(String name, Long threads, Long queue) {
+        LOGGER.debug("create executor " + name + " threads: " + threads + " queue: " + queue);
+        return new BoundedExecutor(name, threads.intValue(), queue.intValue(), PropCfg.getExecutorRejectionPolicy());
+    }
+}
@@ -14,6 +14,7 @@ import doitincloud.rdbcache.models.KeyInfo;
 import doitincloud.rdbcache.models.KvPair;
 import doitincloud.rdbcache.models.StopWatch;
 import doitincloud.rdbcache.supports.AnyKey;
+import doitincloud.rdbcache.supports.BoundedExecutor;
 import doitincloud.rdbcache.supports.Context;
 import doitincloud.rdbcache.supports.ExpireDbOps;
 import doitincloud.rdbcache.supports.KvPairs;
@@ -33,7 +34,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
-import java.util.Collections;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
 
 @Service
 public class ExpireOps {
@@ -46,13 +48,28 @@ public class ExpireOps {
     
     private Long eventLockTimeout = PropCfg.getEventLockTimeout();
 
+    private String expireScheduler = PropCfg.getExpireScheduler();
+
+    private Long expireBatchSize = PropCfg.getExpireBatchSize();
+
+    private Long expireConcurrency = PropCfg.getExpireConcurrency();
+
+    private Long expireQueueDepth = PropCfg.getExpireQueueDepth();
+
+    // events waiting for the worker threads
+    private LinkedBlockingQueue<String> eventQueue = null;
+
     private ValueOperations valueOps;
 
     private static DefaultRedisScript<Long> set_expire_key_script;
 
-    private static DefaultRedisScript<String> expire_event_lock_script;
+    private static DefaultRedisScript<List> set_expire_keys_script;
+
+    private static DefaultRedisScript<List> claim_expire_events_script;
+
+    private static DefaultRedisScript<List> expire_events_lock_script;
 
-    private static DefaultRedisScript<Long> expire_event_unlock_script;
+    private static DefaultRedisScript<Long> expire_events_unlock_script;
 
     private ScriptExecutor<String> scriptExecutor;
 
@@ -65,6 +82,10 @@ public class ExpireOps {
         eventPrefix = PropCfg.getEventPrefix();
         enableMonitor = PropCfg.getEnableMonitor();
         eventLockTimeout = PropCfg.getEventLockTimeout();
+        expireScheduler = PropCfg.getExpireScheduler();
+        expireBatchSize = PropCfg.getExpireBatchSize();
+        expireConcurrency = PropCfg.getExpireConcurrency();
+        expireQueueDepth = PropCfg.getExpireQueueDepth();
     }
 
     @EventListener
@@ -85,15 +106,29 @@ public class ExpireOps {
         set_expire_key_script.setLocation(new ClassPathResource("scripts/set-expire-key.lua"));
         set_expire_key_script.setResultType(Long.class);
 
-        expire_event_lock_script = new DefaultRedisScript<>();
-        expire_event_lock_script.setLocation(new ClassPathResource("scripts/expire-event-lock.lua"));
-        expire_event_lock_script.setResultType(String.class);
+        set_expire_keys_script = new DefaultRedisScript<>();
+        set_expire_keys_script.setLocation(new ClassPathResource("scripts/set-expire-keys.lua"));
+        set_expire_keys_script.setResultType(List.class);
 
-        expire_event_unlock_script = new DefaultRedisScript<>();
-        expire_event_unlock_script.setLocation(new ClassPathResource("scripts/expire-event-unlock.lua"));
-        expire_event_unlock_script.setResultType(Long.class);
+        claim_expire_events_script = new DefaultRedisScript<>();
+        claim_expire_events_script.setLocation(new ClassPathResource("scripts/claim-expire-events.lua"));
+        claim_expire_events_script.setResultType(List.class);
+
+        expire_events_lock_script = new DefaultRedisScript<>();
+        expire_events_lock_script.setLocation(new ClassPathResource("scripts/expire-events-lock.lua"));
+        expire_events_lock_script.setResultType(List.class);
+
+        expire_events_unlock_script = new DefaultRedisScript<>();
+        expire_events_unlock_script.setLocation(new ClassPathResource("scripts/expire-events-unlock.lua"));
+        expire_events_unlock_script.setResultType(Long.class);
 
         scriptExecutor = new DefaultScriptExecutor<String>(stringRedisTemplate);
+
+        eventQueue = new LinkedBlockingQueue<>(expireQueueDepth.intValue());
+        BoundedExecutor executor = AppCtx.getExecutorOps().getEventExecutor();
+        for (int i = 0; i < expireConcurrency; i++) {
+            executor.execute(this::runWorker);
+        }
     }
 
     public String getEventPrefix() {
@@ -120,6 +155,70 @@ public class ExpireOps {
         this.eventLockTimeout = eventLockTimeout;
     }
 
+    public String getExpireScheduler() {
+        return expireScheduler;
+    }
+
+    public void setExpireScheduler(String expireScheduler) {
+        this.expireScheduler = expireScheduler;
+    }
+
+    public Long getExpireBatchSize() {
+        return expireBatchSize;
+    }
+
+    public Long getExpireConcurrency() {
+        return expireConcurrency;
+    }
+
+    public Long getExpireQueueDepth() {
+        return expireQueueDepth;
+    }
+
+    public void setScriptExecutor(ScriptExecutor<String> scriptExecutor) {
+        this.scriptExecutor = scriptExecutor;
+    }
+
+    public int getEventQueueSize() {
+        if (eventQueue == null) {
+            return 0;
+        }
+        return eventQueue.size();
+    }
+
+    // true when more than a batch per worker is waiting
+    //
+    // claimed events are leased for eventLockTimeout seconds, the scheduler stops
+    // claiming until the workers catch up, so queued events are not claimed twice
+    //
+    public boolean isEventQueueBackedUp() {
+        if (eventQueue == null) {
+            return false;
+        }
+        return eventQueue.size() >= expireBatchSize * expireConcurrency;
+    }
+
+    // sorted set of pending events scored by due time, used when expireScheduler is zset
+    //
+    // the hash tag keeps it in the same cluster slot as the in-flight set
+    //
+    public String getScheduleKey() {
+        if (!"zset".equals(expireScheduler)) {
+            return "";
+        }
+        return "{" + eventPrefix + "::schedule}";
+    }
+
+    // sorted set of claimed events scored by the end of their lease
+    //
+    public String getInFlightKey() {
+        String scheduleKey = getScheduleKey();
+        if (scheduleKey.length() == 0) {
+            return "";
+        }
+        return scheduleKey + "::inflight";
+    }
+
     // set up expire key
     //
     // expire = X,  it schedules an event in X seconds, only if not such event exists.
@@ -143,9 +242,16 @@ public class ExpireOps {
             String expire = keyInfo.getExpire();
             String expKey = eventPrefix + "::" + type + ":" + key;
 
+            List<String> keys = new ArrayList<>();
+            keys.add(expKey);
+            String scheduleKey = getScheduleKey();
+            if (scheduleKey.length() > 0) {
+                keys.add(scheduleKey);
+            }
+
             StopWatch stopWatch = context.startStopWatch("redis", "scriptExecutor.execute");
-            Long result = scriptExecutor.execute(set_expire_key_script,
-                    Collections.singletonList(expKey), context.getTraceId(), expire);
+            Long result = scriptExecutor.execute(set_expire_key_script, keys,
+                    context.getTraceId(), expire, Long.toString(System.currentTimeMillis()));
             if (stopWatch != null) stopWatch.stopNow();
 
             if (result != 1) {
@@ -161,145 +267,479 @@ public class ExpireOps {
         }
     }
 
+    // sets up expire keys of all pairs in one script call, new keyInfos are
+    // saved in one call as well
+    //
     public void setExpireKey(Context context, KvPairs pairs, AnyKey anyKey) {
 
-        for (int i = 0; i < pairs.size(); i++) {
-            KvPair pair = pairs.get(i);
-            KeyInfo keyInfo = anyKey.getAny(i);
-            setExpireKey(context, pair, keyInfo);
+        if (pairs.size() == 0) {
+            return;
+        }
+        if (pairs.size() == 1) {
+            setExpireKey(context, pairs.getPair(), anyKey.getAny());
+            return;
+        }
+
+        try {
+            LOGGER.trace("setExpireKey pairs(" + pairs.size() + "): " + pairs.printKey());
+
+            List<String> expKeys = new ArrayList<>();
+            Object[] args = new Object[pairs.size() + 2];
+            args[0] = context.getTraceId();
+            args[1] = Long.toString(System.currentTimeMillis());
+
+            for (int i = 0; i < pairs.size(); i++) {
+                KvPair pair = pairs.get(i);
+                expKeys.add(eventPrefix + "::" + pair.getType() + ":" + pair.getId());
+                args[i + 2] = anyKey.getAny(i).getExpire();
+            }
+            String scheduleKey = getScheduleKey();
+            if (scheduleKey.length() > 0) {
+                expKeys.add(scheduleKey);
+            }
+
+            StopWatch stopWatch = context.startStopWatch("redis", "scriptExecutor.execute");
+            List<Object> results = scriptExecutor.execute(set_expire_keys_script, expKeys, args);
+            if (stopWatch != null) stopWatch.stopNow();
+
+            KvPairs newPairs = new KvPairs();
+            AnyKey newAnyKey = new AnyKey();
+
+            for (int i = 0; i < pairs.size(); i++) {
+                KeyInfo keyInfo = anyKey.getAny(i);
+                Object result = results.get(i);
+                if (!(result instanceof Long) || (Long) result != 1L) {
+                    keyInfo.restoreExpire();
+                }
+                if (keyInfo.getIsNew()) {
+                    newPairs.add(pairs.get(i));
+                    newAnyKey.add(keyInfo);
+                }
+            }
+
+            if (newPairs.size() > 0) {
+                AppCtx.getKeyInfoRepo().save(context, newPairs, newAnyKey);
+            }
+        } catch (Exception e) {
+            String msg = e.getCause().getMessage();
+            LOGGER.error(msg);
+            context.logTraceMessage(msg);
+        }
+    }
+
+    // claims up to limit events due by now from the schedule sorted set
+    //
+    // claimed events are held in the in-flight set for eventLockTimeout seconds,
+    // until ackEvents removes them. events not acked in time are claimed again.
+    //
+    public List<String> claimDueEvents(long limit) {
+
+        String scheduleKey = getScheduleKey();
+        if (scheduleKey.length() == 0 || scriptExecutor == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> events = scriptExecutor.execute(claim_expire_events_script,
+                Arrays.asList(scheduleKey, getInFlightKey()),
+                Long.toString(System.currentTimeMillis()), Long.toString(limit),
+                Long.toString(eventLockTimeout * 1000L));
+
+        if (events == null) {
+            return Collections.emptyList();
+        }
+        return events;
+    }
+
+    // removes written back events from the in-flight set
+    //
+    public void ackEvents(List<String> events) {
+
+        String inFlightKey = getInFlightKey();
+        if (inFlightKey.length() == 0 || events.size() == 0) {
+            return;
         }
+        AppCtx.getStringRedisTemplate().opsForZSet().remove(inFlightKey, events.toArray());
     }
 
     /**
      * To process key expired event
      *
+     * events are queued and processed in batches by the worker threads, when the
+     * queue is full the event is processed on the caller thread
+     *
      * @param event key expired event
      */
     public void onExpireEvent(String event) {
 
         LOGGER.debug("Received: " + event);
 
-        if (!event.startsWith(eventPrefix)) {
+        if (eventQueue != null && eventQueue.offer(event)) {
             return;
         }
+        onExpireEvents(Collections.singletonList(event));
+    }
 
-        String[] parts = event.split("::");
+    /**
+     * To process a batch of key expired events
+     *
+     * events are grouped by type and table, each group is locked, looked up,
+     * written back and unlocked with batch calls
+     *
+     * @param events key expired events
+     */
+    public void onExpireEvents(List<String> events) {
 
-        if (parts.length < 3) {
-            LOGGER.error("invalid event format");
-            return;
-        }
+        Map<String, List<ExpireEvent>> groups = new LinkedHashMap<>();
 
-        String hashKey = parts[1];
-        int index = hashKey.indexOf(":");
-        if (index < 0) {
-            LOGGER.error("invalid event format, failed to figure out type and key");
-            return;
-        }
-        String type = hashKey.substring(0, index);
-        String key = hashKey.substring(index+1);
+        // events written back or not worth retrying, acked at the end
+        List<String> doneEvents = new ArrayList<>();
+
+        for (String event: events) {
+
+            if (!event.startsWith(eventPrefix)) {
+                continue;
+            }
+
+            String[] parts = event.split("::");
+
+            // expired index key of set-expire-key.lua, nothing to do
+            if (parts.length == 2) {
+                continue;
+            }
+
+            if (parts.length < 3) {
+                LOGGER.error("invalid event format");
+                doneEvents.add(event);
+                continue;
+            }
+
+            String hashKey = parts[1];
+            int index = hashKey.indexOf(":");
+            if (index < 0) {
+                LOGGER.error("invalid event format, failed to figure out type and key");
+                doneEvents.add(event);
+                continue;
+            }
+            String type = hashKey.substring(0, index);
+
+            ExpireEvent expireEvent = new ExpireEvent(event, hashKey, type, hashKey.substring(index+1), parts[2]);
 
-        String traceId = parts[2];
+            List<ExpireEvent> group = groups.get(type);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(type, group);
+            }
+            group.add(expireEvent);
+        }
 
-        Context context = new Context(traceId);
-        KvPair pair = new KvPair(key, type);
+        for (Map.Entry<String, List<ExpireEvent>> entry: groups.entrySet()) {
+            try {
+                doneEvents.addAll(onExpireEvents(entry.getKey(), entry.getValue()));
+            } catch (Exception e) {
+                e.printStackTrace();
+                String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                LOGGER.error(msg);
+            }
+        }
 
-        if (enableMonitor) context.enableMonitor(event, "event", key);
+        try {
+            ackEvents(doneEvents);
+        } catch (Exception e) {
+            String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            LOGGER.error(msg);
+        }
+    }
 
-        String lockKey = "lock_" + eventPrefix + "::" + hashKey + "::" + traceId;
-        String signature = Utils.generateId();
+    // returns the events written back or stale, events locked by others or failed
+    // are left to their lock holder or to the next claim
+    //
+    // an event is stale when the index key of its key no longer holds its trace id,
+    // it is a duplicate or a newer event has been set up since. it is not written back.
+    //
+    private List<String> onExpireEvents(String type, List<ExpireEvent> events) {
+
+        // events set up in one call share their trace id, the group is traced
+        // under the first one and messages about an event go to its own
+        //
+        Context context = new Context(events.get(0).traceId);
+
+        if (enableMonitor) context.enableMonitor(eventPrefix + "::" + type, "event", Integer.toString(events.size()));
+
+        List<String> lockKeys = new ArrayList<>();
+        List<String> scriptKeys = new ArrayList<>();
+        Object[] args = new Object[events.size() + 2];
+        args[0] = Utils.generateId();
+        args[1] = eventLockTimeout.toString();
+        for (int i = 0; i < events.size(); i++) {
+            ExpireEvent event = events.get(i);
+            lockKeys.add("lock_" + eventPrefix + "::" + event.hashKey + "::" + event.traceId);
+            args[i + 2] = event.traceId;
+        }
+        scriptKeys.addAll(lockKeys);
+        for (ExpireEvent event: events) {
+            scriptKeys.add(eventPrefix + "::" + event.hashKey);
+        }
+        String signature = (String) args[0];
 
         StopWatch stopWatch = context.startStopWatch("redis", "scriptExecutor.execute");
-        String result = scriptExecutor.execute(expire_event_lock_script,
-                Collections.singletonList(lockKey), signature, eventLockTimeout.toString());
+        List<Object> results = scriptExecutor.execute(expire_events_lock_script, scriptKeys, args);
         if (stopWatch != null) stopWatch.stopNow();
 
-        if (!result.equals("OK")) {
-            String msg = "unable to lock key: " + lockKey;
-            LOGGER.trace(msg);
+        KvPairs pairs = new KvPairs();
+        List<String> lockedKeys = new ArrayList<>();
+        List<ExpireEvent> lockedEvents = new ArrayList<>();
+        List<String> staleEvents = new ArrayList<>();
+
+        for (int i = 0; i < events.size(); i++) {
+            Object result = results.get(i);
+            if (result instanceof Long && (Long) result == -1L) {
+                LOGGER.trace("stale event: " + events.get(i).event);
+                staleEvents.add(events.get(i).event);
+                continue;
+            }
+            if (!(result instanceof Long) || (Long) result != 1L) {
+                LOGGER.trace("unable to lock key: " + lockKeys.get(i));
+                continue;
+            }
+            ExpireEvent event = events.get(i);
+            pairs.add(new KvPair(event.key, event.type));
+            lockedKeys.add(lockKeys.get(i));
+            lockedEvents.add(event);
+        }
+
+        if (pairs.size() == 0) {
             context.closeMonitor();
-            return;
+            return staleEvents;
         }
 
         try {
 
-            KvPairs pairs = new KvPairs(pair);
             AnyKey anyKey = new AnyKey();
+            AppCtx.getKeyInfoRepo().find(context, pairs, anyKey);
 
-            if (!AppCtx.getKeyInfoRepo().find(context, pairs, anyKey)) {
+            // group by table, database operations take the table of the first keyInfo
+            //
+            Map<String, KvPairs> tablePairs = new LinkedHashMap<>();
+            Map<String, AnyKey> tableAnyKeys = new LinkedHashMap<>();
+            Map<String, List<String>> tableEvents = new LinkedHashMap<>();
 
-                String msg = "keyInfo not found";
-                LOGGER.error(msg);
-                context.logTraceMessage(msg);
-                return;
+            List<String> doneEvents = new ArrayList<>(staleEvents);
+
+            for (int i = 0; i < pairs.size(); i++) {
+
+                KvPair pair = pairs.get(i);
+                KeyInfo keyInfo = anyKey.getAny(i);
+
+                if (keyInfo.getIsNew()) {
+                    String msg = "keyInfo not found for " + pair.getId();
+                    LOGGER.error(msg);
+                    logTraceMessage(lockedEvents.get(i).traceId, msg);
+                    doneEvents.add(lockedEvents.get(i).event);
+                    continue;
+                }
+
+                LOGGER.trace(keyInfo.toString());
+
+                String table = String.valueOf(keyInfo.getTable());
+                if (!tablePairs.containsKey(table)) {
+                    tablePairs.put(table, new KvPairs());
+                    tableAnyKeys.put(table, new AnyKey());
+                    tableEvents.put(table, new ArrayList<>());
+                }
+                tablePairs.get(table).add(pair);
+                tableAnyKeys.get(table).add(keyInfo);
+                tableEvents.get(table).add(lockedEvents.get(i).event);
             }
 
-            KeyInfo keyInfo = anyKey.getKeyInfo();
+            for (String table: tablePairs.keySet()) {
+                if (onExpireEvents(context, tablePairs.get(table), tableAnyKeys.get(table))) {
+                    doneEvents.addAll(tableEvents.get(table));
+                }
+            }
 
-            LOGGER.trace(keyInfo.toString());
+            return doneEvents;
 
-            Long expire = Long.valueOf(keyInfo.getExpire());
+        } catch (Exception e) {
+
+            e.printStackTrace();
+            String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            LOGGER.error(msg);
+            Set<String> traceIds = new LinkedHashSet<>();
+            for (ExpireEvent event: lockedEvents) {
+                traceIds.add(event.traceId);
+            }
+            for (String traceId: traceIds) {
+                logTraceMessage(traceId, msg);
+            }
+
+            return staleEvents;
+
+        } finally {
+
+            stopWatch = context.startStopWatch("redis", "scriptExecutor.execute");
+            scriptExecutor.execute(expire_events_unlock_script, lockedKeys, signature);
+            if (stopWatch != null) stopWatch.stopNow();
 
+            context.closeMonitor();
+        }
+    }
+
+    // pairs of the same table, false if they are not saved to database
+    //
+    private boolean onExpireEvents(Context context, KvPairs pairs, AnyKey anyKey) {
+
+        KvPairs savePairs = new KvPairs();
+        AnyKey saveAnyKey = new AnyKey();
+
+        KvPairs repeatPairs = new KvPairs();
+        AnyKey repeatAnyKey = new AnyKey();
+
+        for (int i = 0; i < pairs.size(); i++) {
+            KeyInfo keyInfo = anyKey.get(i);
+            Long expire = Long.valueOf(keyInfo.getExpire());
             if (expire > 0) {
-                if (AppCtx.getRedisRepo().find(context, pairs, anyKey)) {
-
-                    String qkey = keyInfo.getQueryKey();
-                    if (qkey == null || !qkey.equals("NOOPS")) {
-                        AppCtx.getDbaseRepo().save(context, pairs, anyKey);
-                    } else if (qkey != null && qkey.startsWith("ExpireDbOps::")) {
-                        String beanName = qkey.substring(13);
-                        ApplicationContext ctx = AppCtx.getApplicationContext();
-                        if (ctx != null) {
-                            try {
-                                ExpireDbOps ops = (ExpireDbOps) ctx.getBean(beanName);
-                                if (ops != null) {
-                                    ops.save(context, pairs, anyKey);
-                                } else {
-                                    LOGGER.error("failed to get bean: " + beanName);
-                                }
-                            } catch (Exception e) {
-                                e.printStackTrace();
+                savePairs.add(pairs.get(i));
+                saveAnyKey.add(keyInfo);
+            } else if (expire < 0) {
+                repeatPairs.add(pairs.get(i));
+                repeatAnyKey.add(keyInfo);
+            }
+        }
+
+        if (savePairs.size() > 0) {
+
+            AppCtx.getRedisRepo().find(context, savePairs, saveAnyKey);
+
+            KvPairs foundPairs = new KvPairs();
+            AnyKey foundAnyKey = new AnyKey();
+
+            KvPairs dbPairs = new KvPairs();
+            AnyKey dbAnyKey = new AnyKey();
+
+            for (int i = 0; i < savePairs.size(); i++) {
+
+                KvPair pair = savePairs.get(i);
+                KeyInfo keyInfo = saveAnyKey.get(i);
+
+                if (!pair.hasContent()) {
+                    String msg = "failed to find key from redis for " + pair.getId();
+                    LOGGER.error(msg);
+                    context.logTraceMessage(msg);
+                    continue;
+                }
+
+                foundPairs.add(pair);
+                foundAnyKey.add(keyInfo);
+
+                String qkey = keyInfo.getQueryKey();
+                if (qkey == null || !qkey.equals("NOOPS")) {
+                    dbPairs.add(pair);
+                    dbAnyKey.add(keyInfo);
+                } else if (qkey != null && qkey.startsWith("ExpireDbOps::")) {
+                    String beanName = qkey.substring(13);
+                    ApplicationContext ctx = AppCtx.getApplicationContext();
+                    if (ctx != null) {
+                        try {
+                            ExpireDbOps ops = (ExpireDbOps) ctx.getBean(beanName);
+                            if (ops != null) {
+                                ops.save(context, new KvPairs(pair), new AnyKey(keyInfo));
+                            } else {
+                                LOGGER.error("failed to get bean: " + beanName);
                             }
+                        } catch (Exception e) {
+                            e.printStackTrace();
                         }
-                    } else {
-                        LOGGER.trace("queryKey = " + keyInfo.getQueryKey());
                     }
-                    AppCtx.getRedisRepo().delete(context, pairs, anyKey);
-                    AppCtx.getKeyInfoRepo().delete(context, pairs);
-
                 } else {
-                    String msg = "failed to find key from redis for " + key;
-                    LOGGER.error(msg);
-                    context.logTraceMessage(msg);
+                    LOGGER.trace("queryKey = " + keyInfo.getQueryKey());
                 }
             }
 
-            if (expire < 0) {
-                if (AppCtx.getDbaseRepo().find(context, pairs, anyKey)) {
+            if (dbPairs.size() > 0 && !AppCtx.getDbaseRepo().save(context, dbPairs, dbAnyKey)) {
+                return false;
+            }
 
-                    AppCtx.getRedisRepo().save(context, pairs, anyKey);
-                    setExpireKey(context, pairs, anyKey);
+            if (foundPairs.size() > 0) {
+                AppCtx.getRedisRepo().delete(context, foundPairs, foundAnyKey);
+                AppCtx.getKeyInfoRepo().delete(context, foundPairs);
+            }
+        }
 
-                } else {
-                    String msg = "failed to find key from database for " + key;
+        if (repeatPairs.size() > 0) {
+
+            AppCtx.getDbaseRepo().find(context, repeatPairs, repeatAnyKey);
+
+            KvPairs foundPairs = new KvPairs();
+            AnyKey foundAnyKey = new AnyKey();
+
+            for (int i = 0; i < repeatPairs.size(); i++) {
+
+                KvPair pair = repeatPairs.get(i);
+
+                if (!pair.hasContent()) {
+                    String msg = "failed to find key from database for " + pair.getId();
                     LOGGER.error(msg);
                     context.logTraceMessage(msg);
+                    continue;
                 }
+
+                foundPairs.add(pair);
+                foundAnyKey.add(repeatAnyKey.get(i));
             }
-        } catch (Exception e) {
 
-            e.printStackTrace();
-            String msg = e.getCause().getMessage();
-            LOGGER.error(msg);
-            context.logTraceMessage(msg);
+            if (foundPairs.size() > 0) {
+                AppCtx.getRedisRepo().save(context, foundPairs, foundAnyKey);
+                setExpireKey(context, foundPairs, foundAnyKey);
+            }
+        }
 
-        } finally {
+        return true;
+    }
 
-            stopWatch = context.startStopWatch("redis", "scriptExecutor.execute");
-            scriptExecutor.execute(expire_event_unlock_script, Collections.singletonList(lockKey), signature);
-            if (stopWatch != null) stopWatch.stopNow();
+    private static void logTraceMessage(String traceId, String msg) {
+        AppCtx.getDbaseOps().logTraceMessage(traceId, msg, Thread.currentThread().getStackTrace());
+    }
 
-            context.closeMonitor();
+    // takes queued events in batches of up to expireBatchSize
+    //
+    private void runWorker() {
+
+        LOGGER.debug("expire worker is running on thread " + Thread.currentThread().getName());
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<String> events = new ArrayList<>();
+                events.add(eventQueue.take());
+                eventQueue.drainTo(events, expireBatchSize.intValue() - 1);
+                onExpireEvents(events);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                e.printStackTrace();
+                String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                LOGGER.error(msg);
+            }
+        }
+    }
+
+    static class ExpireEvent {
+
+        final String event;
+
+        final String hashKey;
+
+        final String type;
+
+        final String key;
+
+        final String traceId;
+
+        ExpireEvent(String event, String hashKey, String type, String key, String traceId) {
+            this.event = event;
+            this.hashKey = hashKey;
+            this.type = type;
+            this.key = key;
+            this.traceId = traceId;
         }
     }
 }
@@ -0,0 +1,277 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.services;
+
+import doitincloud.commons.exceptions.ServerErrorException;
+import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.configs.PropCfg;
+import doitincloud.rdbcache.models.KeyInfo;
+import doitincloud.rdbcache.models.KvIdType;
+import doitincloud.rdbcache.models.KvPair;
+import doitincloud.rdbcache.models.StopWatch;
+import doitincloud.rdbcache.supports.AnyKey;
+import doitincloud.rdbcache.supports.Context;
+import doitincloud.rdbcache.supports.KvPairs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// loads data missed in redis from database
+//
+// concurrent misses of the same key are coalesced: the first caller loads from
+// database and saves to redis, the others wait for its result. a waiter gives up
+// after waitTimeoutMillis and loads the key itself, so a hung load does not block
+// all of them.
+//
+@Service
+public class LoadOps {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadOps.class);
+
+    private ConcurrentHashMap<KvIdType, CompletableFuture<Map<String, Object>>> inFlightLoads = new ConcurrentHashMap<>();
+
+    private AtomicLong loadCount = new AtomicLong(0L);
+
+    private AtomicLong coalescedCount = new AtomicLong(0L);
+
+    private AtomicLong timeoutCount = new AtomicLong(0L);
+
+    private Long waitTimeoutMillis = PropCfg.getLoadWaitTimeout();
+
+    @PostConstruct
+    public void init() {
+    }
+
+    @EventListener
+    public void handleEvent(ContextRefreshedEvent event) {
+        waitTimeoutMillis = PropCfg.getLoadWaitTimeout();
+    }
+
+    @EventListener
+    public void handleApplicationReadyEvent(ApplicationReadyEvent event) {
+    }
+
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public int getInFlightSize() {
+        return inFlightLoads.size();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public Long getWaitTimeoutMillis() {
+        return waitTimeoutMillis;
+    }
+
+    public void setWaitTimeoutMillis(Long waitTimeoutMillis) {
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    // find pair from database and save it to redis
+    //
+    public boolean findAndSave(Context context, KvPair pair, KeyInfo keyInfo) {
+
+        // find may change the type of pair, keep a copy as key
+        KvIdType idType = pair.getIdType().clone();
+
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> inFlight = inFlightLoads.putIfAbsent(idType, future);
+
+        if (inFlight != null) {
+            LOGGER.trace("findAndSave coalesced: " + pair.printKey());
+            coalescedCount.incrementAndGet();
+            return waitFor(context, pair, keyInfo, inFlight);
+        }
+
+        loadCount.incrementAndGet();
+        try {
+            KvPairs pairs = new KvPairs(pair);
+            AnyKey anyKey = new AnyKey(keyInfo);
+            if (AppCtx.getDbaseRepo().find(context, pairs, anyKey)) {
+                AppCtx.getAsyncOps().doSaveToRedis(context, pairs, anyKey);
+                future.complete(pair.getDataClone());
+                return true;
+            }
+            future.complete(null);
+            return false;
+        } finally {
+            if (!future.isDone()) {
+                future.completeExceptionally(new ServerErrorException("failed to load " + pair.printKey()));
+            }
+            inFlightLoads.remove(idType, future);
+        }
+    }
+
+    // find pairs without content from database and save them to redis
+    //
+    // returns true if all pairs have content
+    //
+    public boolean findAndSave(Context context, KvPairs pairs, AnyKey anyKey) {
+
+        KvPairs loadPairs = new KvPairs();
+        AnyKey loadAnyKey = new AnyKey();
+        List<CompletableFuture<Map<String, Object>>> loadFutures = new ArrayList<>();
+        List<KvIdType> loadIdTypes = new ArrayList<>();
+
+        KvPairs waitPairs = new KvPairs();
+        AnyKey waitAnyKey = new AnyKey();
+        List<CompletableFuture<Map<String, Object>>> waitFutures = new ArrayList<>();
+
+        for (int i = 0; i < pairs.size(); i++) {
+
+            KvPair pair = pairs.get(i);
+            if (pair.hasContent()) continue;
+
+            CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+            KvIdType idType = pair.getIdType().clone();
+            CompletableFuture<Map<String, Object>> inFlight = inFlightLoads.putIfAbsent(idType, future);
+
+            if (inFlight != null) {
+                coalescedCount.incrementAndGet();
+                waitPairs.add(pair);
+                waitAnyKey.add(anyKey.getAny(i));
+                waitFutures.add(inFlight);
+            } else {
+                loadCount.incrementAndGet();
+                loadPairs.add(pair);
+                loadAnyKey.add(anyKey.getAny(i));
+                loadFutures.add(future);
+                loadIdTypes.add(idType);
+            }
+        }
+
+        LOGGER.trace("findAndSave load: " + loadPairs.size() + " coalesced: " + waitPairs.size());
+
+        boolean allFound = true;
+
+        try {
+            KvPairs dbPairs = new KvPairs();
+            AnyKey dbAnyKey = new AnyKey();
+
+            // table keys are found together, so keys of a table can share queries
+            KvPairs tablePairs = new KvPairs();
+            AnyKey tableAnyKey = new AnyKey();
+            for (int i = 0; i < loadPairs.size(); i++) {
+                KeyInfo keyInfo = loadAnyKey.get(i);
+                if (keyInfo.getTable() != null) {
+                    tablePairs.add(loadPairs.get(i));
+                    tableAnyKey.add(keyInfo);
+                }
+            }
+            if (tablePairs.size() > 0) {
+                AppCtx.getDbaseRepo().find(context, tablePairs, tableAnyKey);
+            }
+
+            for (int i = 0; i < loadPairs.size(); i++) {
+
+                KvPair pair = loadPairs.get(i);
+                KeyInfo keyInfo = loadAnyKey.get(i);
+
+                if (keyInfo.getTable() == null) {
+                    AppCtx.getDbaseRepo().find(context, new KvPairs(pair), new AnyKey(keyInfo));
+                }
+
+                if (pair.hasContent()) {
+                    dbPairs.add(pair);
+                    dbAnyKey.add(keyInfo);
+                    loadFutures.get(i).complete(pair.getDataClone());
+                } else {
+                    allFound = false;
+                    loadFutures.get(i).complete(null);
+                }
+            }
+
+            if (dbPairs.size() > 0) {
+                AppCtx.getAsyncOps().doSaveToRedis(context, dbPairs, dbAnyKey);
+            }
+
+        } finally {
+            for (int i = 0; i < loadPairs.size(); i++) {
+                CompletableFuture<Map<String, Object>> future = loadFutures.get(i);
+                if (!future.isDone()) {
+                    future.completeExceptionally(new ServerErrorException("failed to load " + loadPairs.get(i).printKey()));
+                }
+                inFlightLoads.remove(loadIdTypes.get(i), future);
+            }
+        }
+
+        for (int i = 0; i < waitPairs.size(); i++) {
+            if (!waitFor(context, waitPairs.get(i), waitAnyKey.get(i), waitFutures.get(i))) {
+                allFound = false;
+            }
+        }
+
+        return allFound;
+    }
+
+    private boolean waitFor(Context context, KvPair pair, KeyInfo keyInfo, CompletableFuture<Map<String, Object>> future) {
+
+        StopWatch stopWatch = context.startStopWatch("dbase", "loadOps.waitFor");
+        try {
+            Map<String, Object> map = future.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (stopWatch != null) stopWatch.stopNow();
+            if (map == null) {
+                return false;
+            }
+            pair.setData(new LinkedHashMap<>(map));
+            return true;
+        } catch (TimeoutException e) {
+            if (stopWatch != null) stopWatch.stopNow();
+            timeoutCount.incrementAndGet();
+            String msg = "timed out waiting for the load of " + pair.printKey() + ", load it directly";
+            LOGGER.warn(msg);
+            context.logTraceMessage(msg);
+            return load(context, pair, keyInfo);
+        } catch (InterruptedException e) {
+            if (stopWatch != null) stopWatch.stopNow();
+            Thread.currentThread().interrupt();
+            throw new ServerErrorException(e.getMessage());
+        } catch (ExecutionException e) {
+            if (stopWatch != null) stopWatch.stopNow();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            String msg = e.getCause().getMessage();
+            LOGGER.error(msg);
+            throw new ServerErrorException(msg);
+        }
+    }
+
+    // loads pair without coalescing
+    //
+    private boolean load(Context context, KvPair pair, KeyInfo keyInfo) {
+
+        KvPairs pairs = new KvPairs(pair);
+        AnyKey anyKey = new AnyKey(keyInfo);
+        if (!AppCtx.getDbaseRepo().find(context, pairs, anyKey)) {
+            return false;
+        }
+        AppCtx.getAsyncOps().doSaveToRedis(context, pairs, anyKey);
+        return true;
+    }
+}
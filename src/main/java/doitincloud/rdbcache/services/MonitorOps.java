@@ -0,0 +1,222 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.services;
+
+import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.configs.PropCfg;
+import doitincloud.rdbcache.models.Monitor;
+import doitincloud.rdbcache.repositories.MonitorRepo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// saves monitor records to database in the background
+//
+// records are sampled, 1 in monitorSampleRate, plus all the ones taking at least
+// monitorMinDuration milliseconds. sampled records wait in a bounded buffer for the
+// writer, which runs on the monitor executor and saves them in jdbc batches. when
+// the buffer is full or a batch fails to save, records are dropped and counted,
+// requests never wait for it.
+//
+@Service
+public class MonitorOps {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MonitorOps.class);
+
+    private Long sampleRate = PropCfg.getMonitorSampleRate();
+
+    private Long minDuration = PropCfg.getMonitorMinDuration();
+
+    private ArrayBlockingQueue<Monitor> buffer = new ArrayBlockingQueue<>(PropCfg.getMonitorBufferSize().intValue());
+
+    private AtomicLong sequence = new AtomicLong(0L);
+
+    private AtomicLong savedCount = new AtomicLong(0L);
+
+    private AtomicLong droppedCount = new AtomicLong(0L);
+
+    private AtomicLong skippedCount = new AtomicLong(0L);
+
+    private AtomicBoolean started = new AtomicBoolean(false);
+
+    @PostConstruct
+    public void init() {
+    }
+
+    @EventListener
+    public void handleEvent(ContextRefreshedEvent event) {
+        sampleRate = PropCfg.getMonitorSampleRate();
+        minDuration = PropCfg.getMonitorMinDuration();
+        setBufferSize(PropCfg.getMonitorBufferSize());
+    }
+
+    @EventListener
+    public void handleApplicationReadyEvent(ApplicationReadyEvent event) {
+        start();
+    }
+
+    // the writer is interrupted by ExecutorOps
+    //
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public Long getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(Long sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public Long getMinDuration() {
+        return minDuration;
+    }
+
+    public void setMinDuration(Long minDuration) {
+        this.minDuration = minDuration;
+    }
+
+    public int getBufferSize() {
+        return buffer.size() + buffer.remainingCapacity();
+    }
+
+    // only before any record is offered
+    //
+    public void setBufferSize(Long size) {
+        if (size == null || size < 1L || size.intValue() == getBufferSize()) {
+            return;
+        }
+        buffer = new ArrayBlockingQueue<>(size.intValue());
+    }
+
+    public int getQueuedSize() {
+        return buffer.size();
+    }
+
+    public long getSavedCount() {
+        return savedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        AppCtx.getExecutorOps().getMonitorExecutor().execute(this::runWriter);
+    }
+
+    private void runWriter() {
+
+        LOGGER.debug("monitor writer is running on thread " + Thread.currentThread().getName());
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Monitor monitor = buffer.poll(1L, TimeUnit.SECONDS);
+                if (monitor == null) continue;
+                List<Monitor> monitors = new ArrayList<>();
+                monitors.add(monitor);
+                buffer.drainTo(monitors, batchSize() - 1);
+                save(monitors);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                LOGGER.error(msg);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // returns true if the monitor is queued to save
+    //
+    public boolean offer(Monitor monitor) {
+
+        if (!isSampled(monitor)) {
+            skippedCount.incrementAndGet();
+            return false;
+        }
+        if (!buffer.offer(monitor)) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    // saves all queued monitors
+    //
+    public void flush() {
+        List<Monitor> monitors = new ArrayList<>();
+        while (buffer.drainTo(monitors, batchSize()) > 0) {
+            save(monitors);
+            monitors = new ArrayList<>();
+        }
+    }
+
+    private boolean isSampled(Monitor monitor) {
+
+        Long duration = monitor.getDuration();
+        if (minDuration != null && minDuration > 0L && duration != null &&
+                duration >= minDuration * 1000000L) {
+            return true;
+        }
+        if (sampleRate == null || sampleRate < 1L) {
+            return false;
+        }
+        return sequence.getAndIncrement() % sampleRate == 0L;
+    }
+
+    private void save(List<Monitor> monitors) {
+
+        MonitorRepo monitorRepo = AppCtx.getMonitorRepo();
+        if (monitorRepo == null) {
+            droppedCount.addAndGet(monitors.size());
+            return;
+        }
+
+        LOGGER.trace("save " + monitors.size() + " monitor(s)");
+
+        try {
+            if (monitorRepo.saveAll(monitors)) {
+                savedCount.addAndGet(monitors.size());
+            } else {
+                droppedCount.addAndGet(monitors.size());
+                LOGGER.error("failed to save " + monitors.size() + " monitor(s)");
+            }
+        } catch (Exception e) {
+            droppedCount.addAndGet(monitors.size());
+            String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            LOGGER.error("failed to save " + monitors.size() + " monitor(s) " + msg);
+        }
+    }
+
+    private int batchSize() {
+        Long size = PropCfg.getInsertBatchSize();
+        return size == null || size < 1L ? 1 : size.intValue();
+    }
+}
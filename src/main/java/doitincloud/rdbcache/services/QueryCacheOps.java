@@ -0,0 +1,234 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.services;
+
+import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.configs.PropCfg;
+import doitincloud.rdbcache.models.KeyInfo;
+import doitincloud.rdbcache.models.KvPair;
+import doitincloud.rdbcache.queries.QueryInfo;
+import doitincloud.rdbcache.supports.AnyKey;
+import doitincloud.rdbcache.supports.Context;
+import doitincloud.rdbcache.supports.KvPairs;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// caches the row keys of selects, the rows themselves are found from redis
+//
+// an entry is keyed by the query key, the cursor and the requested keys, and remembers the
+// version of its table when the select started. every insert, update and delete
+// of a table bumps its version, so entries of the table are no longer used.
+// if any row is gone from redis, the select goes to database again.
+//
+// table versions are counters in redis, so a write on any node invalidates the
+// entries of all nodes. if redis fails to bump, a local counter is bumped instead,
+// which only invalidates the entries of this node.
+//
+@Service
+public class QueryCacheOps {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryCacheOps.class);
+
+    private Long cacheTTL = PropCfg.getSelectCacheTTL();
+
+    private String versionPrefix = PropCfg.getHdataPrefix() + "::select_version::";
+
+    private ConcurrentHashMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+
+    private AtomicLong hitCount = new AtomicLong(0L);
+
+    private AtomicLong missCount = new AtomicLong(0L);
+
+    @PostConstruct
+    public void init() {
+    }
+
+    @EventListener
+    public void handleEvent(ContextRefreshedEvent event) {
+        cacheTTL = PropCfg.getSelectCacheTTL();
+        versionPrefix = PropCfg.getHdataPrefix() + "::select_version::";
+    }
+
+    @EventListener
+    public void handleApplicationReadyEvent(ApplicationReadyEvent event) {
+    }
+
+    public Long getCacheTTL() {
+        return cacheTTL;
+    }
+
+    public void setCacheTTL(Long cacheTTL) {
+        this.cacheTTL = cacheTTL;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    // -1 if the version is not available from redis
+    //
+    public long getTableVersion(String table) {
+        AtomicLong localVersion = tableVersions.get(table);
+        long version = localVersion == null ? 0L : localVersion.get();
+        try {
+            String value = AppCtx.getStringRedisTemplate().opsForValue().get(versionPrefix + table);
+            if (value != null) {
+                version += Long.parseLong(value);
+            }
+        } catch (Exception e) {
+            String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            LOGGER.error("failed to get version of table " + table + ": " + msg);
+            return -1L;
+        }
+        return version;
+    }
+
+    public void bumpTableVersion(String table) {
+        if (table == null) {
+            return;
+        }
+        try {
+            AppCtx.getStringRedisTemplate().opsForValue().increment(versionPrefix + table, 1L);
+        } catch (Exception e) {
+            String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            LOGGER.error("failed to bump version of table " + table + " in redis: " + msg);
+            tableVersions.computeIfAbsent(table, k -> new AtomicLong(0L)).incrementAndGet();
+        }
+    }
+
+    // select pairs from cache or database, rows from database are saved to redis
+    //
+    public boolean select(Context context, KvPairs pairs, AnyKey anyKey) {
+
+        String cacheKey = getCacheKey(context, pairs, anyKey);
+        if (cacheKey == null) {
+            return findAndSave(context, pairs, anyKey);
+        }
+
+        String table = anyKey.getKeyInfo().getTable();
+
+        // read before the query, a write after it makes the entry stale
+        long version = getTableVersion(table);
+        if (version < 0L) {
+            return findAndSave(context, pairs, anyKey);
+        }
+
+        if (findFromCache(context, cacheKey, version, pairs, anyKey)) {
+            hitCount.incrementAndGet();
+            return true;
+        }
+        missCount.incrementAndGet();
+
+        if (!findAndSave(context, pairs, anyKey)) {
+            return false;
+        }
+
+        List<String> ids = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        for (KvPair pair: pairs) {
+            ids.add(pair.getId());
+            types.add(pair.getType());
+        }
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("version", version);
+        entry.put("ids", ids);
+        entry.put("types", types);
+        if (context.getNextCursor() != null) {
+            entry.put("cursor", context.getNextCursor());
+        }
+        AppCtx.getCacheOps().put(cacheKey, entry, cacheTTL * 1000L);
+
+        return true;
+    }
+
+    private boolean findAndSave(Context context, KvPairs pairs, AnyKey anyKey) {
+
+        if (!AppCtx.getDbaseRepo().find(context, pairs, anyKey)) {
+            return false;
+        }
+        AppCtx.getAsyncOps().doSaveToRedis(context, pairs, anyKey);
+        return true;
+    }
+
+    private boolean findFromCache(Context context, String cacheKey, long version, KvPairs pairs, AnyKey anyKey) {
+
+        Map<String, Object> entry = AppCtx.getCacheOps().get(cacheKey);
+        if (entry == null) {
+            return false;
+        }
+        Number entryVersion = (Number) entry.get("version");
+        if (entryVersion == null || entryVersion.longValue() != version) {
+            LOGGER.trace("stale select cache entry " + cacheKey);
+            AppCtx.getCacheOps().remove(cacheKey);
+            return false;
+        }
+
+        List<String> ids = (List<String>) entry.get("ids");
+        List<String> types = (List<String>) entry.get("types");
+        KvPairs cachedPairs = new KvPairs();
+        for (int i = 0; i < ids.size(); i++) {
+            cachedPairs.add(new KvPair(ids.get(i), types.get(i)));
+        }
+
+        // find adds key infos for the rows, keep anyKey as is for database
+        AnyKey cachedAnyKey = anyKey.clone();
+        if (!AppCtx.getRedisRepo().find(context, cachedPairs, cachedAnyKey)) {
+            LOGGER.trace("select cache entry " + cacheKey + " has row(s) not in redis");
+            return false;
+        }
+
+        pairs.clear();
+        pairs.addAll(cachedPairs);
+        anyKey.clear();
+        anyKey.addAll(cachedAnyKey);
+        String nextCursor = (String) entry.get("cursor");
+        if (nextCursor != null) {
+            context.setNextCursor(nextCursor);
+        }
+
+        LOGGER.debug("select - found from cache " + pairs.size() + " record(s)");
+        return true;
+    }
+
+    // null if the select is not cacheable
+    //
+    private String getCacheKey(Context context, KvPairs pairs, AnyKey anyKey) {
+
+        if (cacheTTL == null || cacheTTL <= 0L || anyKey.size() != 1) {
+            return null;
+        }
+        KeyInfo keyInfo = anyKey.getKeyInfo();
+        QueryInfo queryInfo = keyInfo.getQuery();
+        if (keyInfo.getTable() == null || queryInfo == null) {
+            return null;
+        }
+        String cacheKey = "select::" + queryInfo.getKey();
+        if (context.getCursor() != null) {
+            // each page of the query is an entry of its own
+            cacheKey += ":" + DigestUtils.md5Hex("cursor:" + context.getCursor());
+        }
+        if (pairs.size() > 0) {
+            cacheKey += ":" + DigestUtils.md5Hex(String.join(",", pairs.getKeys()));
+        }
+        return cacheKey;
+    }
+}
@@ -106,7 +106,9 @@ public class QueueOps extends Thread {
             try {
 
                 if (freshConnection) {
-                    AppCtx.getRedisOps().ensureNotifyKeySpaceEventsEx();
+                    if (!"zset".equals(PropCfg.getExpireScheduler())) {
+                        AppCtx.getRedisOps().ensureNotifyKeySpaceEventsEx();
+                    }
                     freshConnection = false;
                 }
 
@@ -0,0 +1,165 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.services;
+
+import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.configs.PropCfg;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.stereotype.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+// polls due expire events from the schedule sorted set, when expireScheduler is zset
+//
+// it replaces keyspace notifications: events are processed close to their due time,
+// in batches of up to expireBatchSize, and notify-keyspace-events is not needed.
+// it does not claim while the event queue is backed up, claimed events are leased
+// and would be claimed again if they waited too long.
+//
+@Service
+public class ScheduleOps extends Thread {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScheduleOps.class);
+
+    private String expireScheduler = PropCfg.getExpireScheduler();
+
+    private Long expireBatchSize = PropCfg.getExpireBatchSize();
+
+    private volatile long claimedCount = 0L;
+
+    // how long to wait when no event is due
+    private static final long POLL_MILLIS = 500L;
+
+    @PostConstruct
+    public void init() {
+    }
+
+    @EventListener
+    public void handleEvent(ContextRefreshedEvent event) {
+        expireScheduler = PropCfg.getExpireScheduler();
+        expireBatchSize = PropCfg.getExpireBatchSize();
+    }
+
+    @EventListener
+    public void handleApplicationReadyEvent(ApplicationReadyEvent event) {
+
+        if (!"zset".equals(expireScheduler)) {
+            return;
+        }
+        StringRedisTemplate stringRedisTemplate = AppCtx.getStringRedisTemplate();
+        if (stringRedisTemplate == null) {
+            LOGGER.error("failed to get redis template");
+            return;
+        }
+        ValueOperations valueOps = stringRedisTemplate.opsForValue();
+        // setup for test
+        if (valueOps == null || "__TRUE__".equals(valueOps.get("__is_mock_test__"))) {
+            return;
+        }
+        start();
+    }
+
+    public String getExpireScheduler() {
+        return expireScheduler;
+    }
+
+    public void setExpireScheduler(String expireScheduler) {
+        this.expireScheduler = expireScheduler;
+    }
+
+    public Long getExpireBatchSize() {
+        return expireBatchSize;
+    }
+
+    public void setExpireBatchSize(Long expireBatchSize) {
+        this.expireBatchSize = expireBatchSize;
+    }
+
+    public long getClaimedCount() {
+        return claimedCount;
+    }
+
+    private boolean isRunning = false;
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    @Override
+    public void interrupt() {
+        isRunning = false;
+        super.interrupt();
+    }
+
+    @Override
+    public void run() {
+
+        isRunning = true;
+
+        LOGGER.debug("ScheduleOps is running on thread " + getName());
+
+        while (isRunning) {
+
+            try {
+
+                if (AppCtx.getExpireOps().isEventQueueBackedUp()) {
+                    Thread.sleep(POLL_MILLIS);
+                    continue;
+                }
+
+                List<String> events = AppCtx.getExpireOps().claimDueEvents(expireBatchSize);
+
+                if (!isRunning) break;
+
+                if (events.size() == 0) {
+                    Thread.sleep(POLL_MILLIS);
+                    continue;
+                }
+
+                LOGGER.trace("claimed events: " + events.size());
+
+                claimedCount += events.size();
+
+                for (String event: events) {
+                    AppCtx.getExpireOps().onExpireEvent(event);
+                }
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+
+            } catch (RedisConnectionFailureException e) {
+
+                LOGGER.warn("Connection failure occurred. Restarting schedule polling after 5000 ms");
+
+                e.printStackTrace();
+
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+
+            } catch (Exception e) {
+                String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                LOGGER.error(msg);
+                e.printStackTrace();
+            }
+        }
+
+        isRunning = false;
+    }
+}
@@ -0,0 +1,310 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.services;
+
+import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.configs.PropCfg;
+import doitincloud.rdbcache.models.KeyInfo;
+import doitincloud.rdbcache.models.KvIdType;
+import doitincloud.rdbcache.models.KvPair;
+import doitincloud.rdbcache.supports.AnyKey;
+import doitincloud.rdbcache.supports.Context;
+import doitincloud.rdbcache.supports.KvPairs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// write-behind stage for asynchronous database writes, when writeBehindMillis > 0
+//
+// pending writes are coalesced per key: a save replaces the pending data, an update
+// merges its fields into it. every writeBehindMillis the pending writes are flushed
+// to database in batches per table.
+//
+// a failed batch is offered again under any newer write of the same key, up to
+// MAX_ATTEMPTS flushes, then it is dropped and counted. a delete removes the pending
+// write of its key, after a flush in progress of the same key.
+//
+// the flusher runs on the write_behind executor of ExecutorOps. pending writes are
+// taken under the lock, database writes are done outside of it.
+//
+@Service
+public class WriteBehindOps {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindOps.class);
+
+    private Long writeBehindMillis = PropCfg.getWriteBehindMillis();
+
+    private ConcurrentHashMap<KvIdType, Pending> pendings = new ConcurrentHashMap<>();
+
+    // keys being written by a flush, guarded by this
+    //
+    private Set<KvIdType> flushing = new HashSet<>();
+
+    private AtomicLong writeCount = new AtomicLong(0L);
+
+    private AtomicLong flushCount = new AtomicLong(0L);
+
+    private AtomicLong droppedCount = new AtomicLong(0L);
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private AtomicBoolean started = new AtomicBoolean(false);
+
+    private Future<?> flusher;
+
+    @PostConstruct
+    public void init() {
+    }
+
+    @EventListener
+    public void handleEvent(ContextRefreshedEvent event) {
+        writeBehindMillis = PropCfg.getWriteBehindMillis();
+    }
+
+    @EventListener
+    public void handleApplicationReadyEvent(ApplicationReadyEvent event) {
+        if (isEnabled()) {
+            start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.cancel(true);
+            flusher = null;
+        }
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return writeBehindMillis != null && writeBehindMillis > 0L;
+    }
+
+    public Long getWriteBehindMillis() {
+        return writeBehindMillis;
+    }
+
+    public void setWriteBehindMillis(Long writeBehindMillis) {
+        this.writeBehindMillis = writeBehindMillis;
+    }
+
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public int getPendingSize() {
+        return pendings.size();
+    }
+
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        flusher = AppCtx.getExecutorOps().getWriteBehindExecutor().submit(this::runFlusher);
+    }
+
+    private void runFlusher() {
+
+        LOGGER.debug("write-behind is running on thread " + Thread.currentThread().getName());
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(writeBehindMillis);
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                String msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                LOGGER.error(msg);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public void save(Context context, KvPairs pairs, AnyKey anyKey) {
+        for (int i = 0; i < pairs.size(); i++) {
+            offer(pairs.get(i), anyKey.getAny(i), false);
+        }
+    }
+
+    public void update(Context context, KvPairs pairs, AnyKey anyKey) {
+        for (int i = 0; i < pairs.size(); i++) {
+            offer(pairs.get(i), anyKey.getAny(i), true);
+        }
+    }
+
+    private void offer(KvPair pair, KeyInfo keyInfo, boolean isUpdate) {
+
+        writeCount.incrementAndGet();
+
+        KvPair clone = pair.clone();
+
+        pendings.compute(clone.getIdType(), (idType, pending) -> {
+            if (pending == null || !isUpdate || clone.getData() == null || pending.pair.getData() == null) {
+                // last value wins
+                return new Pending(clone, keyInfo, isUpdate);
+            }
+            // fields merge, a pending save stays a save
+            pending.pair.getData().putAll(clone.getData());
+            pending.keyInfo = keyInfo;
+            return pending;
+        });
+    }
+
+    // drops the pending write of a deleted key, a flush in progress of the key
+    // finishes first so it does not write the key after the delete
+    //
+    public synchronized void remove(KvIdType idType) {
+        try {
+            while (flushing.contains(idType)) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pendings.remove(idType);
+    }
+
+    public void remove(KvPairs pairs) {
+        for (KvPair pair: pairs) {
+            remove(pair.getIdType());
+        }
+    }
+
+    // writes all pending data to database
+    //
+    public void flush() {
+
+        if (pendings.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<Pending>> groups = new LinkedHashMap<>();
+
+        synchronized (this) {
+            for (KvIdType idType: new ArrayList<>(pendings.keySet())) {
+                Pending pending = pendings.remove(idType);
+                if (pending == null) continue;
+                flushing.add(idType);
+                String table = pending.keyInfo.getTable();
+                String group = (pending.isUpdate ? "update:" : "save:") + (table == null ? "" : table);
+                groups.computeIfAbsent(group, k -> new ArrayList<>()).add(pending);
+            }
+        }
+
+        for (Map.Entry<String, List<Pending>> entry: groups.entrySet()) {
+
+            String group = entry.getKey();
+            List<Pending> pendingList = entry.getValue();
+
+            KvPairs pairs = new KvPairs();
+            AnyKey anyKey = new AnyKey();
+            for (Pending pending: pendingList) {
+                pairs.add(pending.pair);
+                anyKey.add(pending.keyInfo);
+            }
+
+            LOGGER.trace("flush " + group + " " + pairs.size());
+
+            Context context = new Context();
+            String msg = null;
+            try {
+                boolean done;
+                if (group.startsWith("update:")) {
+                    done = AppCtx.getDbaseRepo().update(context, pairs, anyKey);
+                } else {
+                    done = AppCtx.getDbaseRepo().save(context, pairs, anyKey);
+                }
+                if (done) {
+                    flushCount.addAndGet(pairs.size());
+                } else {
+                    msg = "not written";
+                }
+            } catch (Exception e) {
+                msg = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            }
+            if (msg != null) {
+                LOGGER.error("failed to flush " + pairs.printKey() + " " + msg);
+                for (Pending pending: pendingList) {
+                    retry(context, pending, msg);
+                }
+            }
+            context.closeMonitor();
+
+            synchronized (this) {
+                for (Pending pending: pendingList) {
+                    flushing.remove(pending.pair.getIdType());
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    // a newer save replaces the failed write, a newer update merges into it
+    //
+    private void retry(Context context, Pending failed, String msg) {
+
+        if (++failed.attempts >= MAX_ATTEMPTS) {
+            droppedCount.incrementAndGet();
+            String dropMsg = "write-behind dropped " + failed.pair.printKey() + " after " +
+                    failed.attempts + " attempts: " + msg;
+            LOGGER.error(dropMsg);
+            context.logTraceMessage(dropMsg);
+            return;
+        }
+
+        pendings.compute(failed.pair.getIdType(), (idType, pending) -> {
+            if (pending == null) {
+                return failed;
+            }
+            if (!pending.isUpdate || pending.pair.getData() == null || failed.pair.getData() == null) {
+                return pending;
+            }
+            failed.pair.getData().putAll(pending.pair.getData());
+            failed.keyInfo = pending.keyInfo;
+            return failed;
+        });
+    }
+
+    private static class Pending {
+
+        KvPair pair;
+
+        KeyInfo keyInfo;
+
+        boolean isUpdate;
+
+        int attempts = 0;
+
+        Pending(KvPair pair, KeyInfo keyInfo, boolean isUpdate) {
+            this.pair = pair;
+            this.keyInfo = keyInfo;
+            this.isUpdate = isUpdate;
+        }
+    }
+}
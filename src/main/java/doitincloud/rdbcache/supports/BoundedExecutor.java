@@ -0,0 +1,136 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.supports;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// named thread pool with a fixed number of threads and a bounded queue
+//
+// when the queue is full a task is, depending on the rejection policy:
+//   caller_runs - run on the submitting thread, slowing the producer down
+//   abort       - rejected with RejectedExecutionException
+//   discard     - dropped
+//   block       - queued once there is room, blocking the producer
+// rejections are counted under all policies.
+//
+public class BoundedExecutor extends ThreadPoolExecutor {
+
+    private final String name;
+
+    private final String rejectionPolicy;
+
+    private final int queueCapacity;
+
+    private final AtomicLong rejectedCount = new AtomicLong(0L);
+
+    public BoundedExecutor(String name, int threads, int queueCapacity, String rejectionPolicy) {
+        super(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueCapacity));
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        this.rejectionPolicy = rejectionPolicy;
+        allowCoreThreadTimeOut(true);
+        setThreadFactory(new NamedThreadFactory(name));
+        setRejectedExecutionHandler(new CountingHandler(policyHandler(rejectionPolicy)));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    public int getQueueSize() {
+        return getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("threads", getMaximumPoolSize());
+        map.put("poolSize", getPoolSize());
+        map.put("activeCount", getActiveCount());
+        map.put("queueSize", getQueueSize());
+        map.put("queueCapacity", queueCapacity);
+        map.put("completedCount", getCompletedTaskCount());
+        map.put("rejectedCount", getRejectedCount());
+        map.put("rejectionPolicy", rejectionPolicy);
+        return map;
+    }
+
+    private static RejectedExecutionHandler policyHandler(String policy) {
+        if ("abort".equals(policy)) {
+            return new AbortPolicy();
+        } else if ("discard".equals(policy)) {
+            return new DiscardPolicy();
+        } else if ("block".equals(policy)) {
+            return new BlockPolicy();
+        }
+        return new CallerRunsPolicy();
+    }
+
+    private static class BlockPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("executor is shut down");
+            }
+            try {
+                executor.getQueue().put(runnable);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("interrupted while waiting for queue", e);
+            }
+        }
+    }
+
+    private class CountingHandler implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler handler;
+
+        CountingHandler(RejectedExecutionHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            rejectedCount.incrementAndGet();
+            handler.rejectedExecution(runnable, executor);
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        NamedThreadFactory(String name) {
+            prefix = name + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
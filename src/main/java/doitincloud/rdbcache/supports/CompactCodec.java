@@ -0,0 +1,234 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.supports;
+
+import doitincloud.commons.exceptions.ServerErrorException;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// compact binary encoding of a data map, for the off-heap store
+//
+// each value is a one byte tag followed by its payload, strings and sizes are
+// varint length prefixed. a value is decoded to the type it is encoded from,
+// values of other types are rejected with IllegalArgumentException.
+//
+public class CompactCodec {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+    private static final byte MAP = 7;
+    private static final byte LIST = 8;
+    private static final byte FLOAT = 9;
+    private static final byte SHORT = 10;
+    private static final byte BYTE = 11;
+    private static final byte BIG_INTEGER = 12;
+    private static final byte BIG_DECIMAL = 13;
+    private static final byte BYTES = 14;
+
+    public static byte[] encode(Map<String, Object> map) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        writeMap(out, map);
+        return out.toByteArray();
+    }
+
+    public static Map<String, Object> decode(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        return readMap(in);
+    }
+
+    private static void writeMap(ByteArrayOutputStream out, Map<?, ?> map) {
+        writeVarInt(out, map.size());
+        for (Map.Entry<?, ?> entry: map.entrySet()) {
+            writeString(out, entry.getKey().toString());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, Object> readMap(ByteBuffer in) {
+        int size = readVarInt(in);
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String) {
+            out.write(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.write(INTEGER);
+            writeVarLong(out, (Integer) value);
+        } else if (value instanceof Long) {
+            out.write(LONG);
+            writeVarLong(out, (Long) value);
+        } else if (value instanceof Double) {
+            out.write(DOUBLE);
+            long bits = Double.doubleToLongBits((Double) value);
+            for (int i = 56; i >= 0; i -= 8) {
+                out.write((int) (bits >>> i));
+            }
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Map) {
+            out.write(MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.write(LIST);
+            writeVarInt(out, list.size());
+            for (Object item: list) {
+                writeValue(out, item);
+            }
+        } else if (value instanceof Float) {
+            out.write(FLOAT);
+            int bits = Float.floatToIntBits((Float) value);
+            for (int i = 24; i >= 0; i -= 8) {
+                out.write(bits >>> i);
+            }
+        } else if (value instanceof Short) {
+            out.write(SHORT);
+            writeVarLong(out, (Short) value);
+        } else if (value instanceof Byte) {
+            out.write(BYTE);
+            writeVarLong(out, (Byte) value);
+        } else if (value instanceof BigInteger) {
+            out.write(BIG_INTEGER);
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        } else if (value instanceof BigDecimal) {
+            // the string keeps the scale
+            out.write(BIG_DECIMAL);
+            writeString(out, value.toString());
+        } else if (value instanceof byte[]) {
+            out.write(BYTES);
+            writeBytes(out, (byte[]) value);
+        } else {
+            throw new IllegalArgumentException("can not encode " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(ByteBuffer in) {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case INTEGER:
+                return (int) readVarLong(in);
+            case LONG:
+                return readVarLong(in);
+            case DOUBLE:
+                return in.getDouble();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case MAP:
+                return readMap(in);
+            case LIST: {
+                int size = readVarInt(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case FLOAT:
+                return in.getFloat();
+            case SHORT:
+                return (short) readVarLong(in);
+            case BYTE:
+                return (byte) readVarLong(in);
+            case BIG_INTEGER:
+                return new BigInteger(readBytes(in));
+            case BIG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case BYTES:
+                return readBytes(in);
+            default:
+                throw new ServerErrorException("unknown tag " + tag);
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        writeBytes(out, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    // zigzag, so small negative numbers stay short
+    //
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7fL) != 0L) {
+            out.write((int) ((zigzag & 0x7f) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long zigzag = 0L;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            zigzag |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
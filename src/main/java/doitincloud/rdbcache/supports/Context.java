@@ -33,6 +33,10 @@ public class Context {
 
     private Long duration;
 
+    private String cursor;
+
+    private String nextCursor;
+
     public Context(Boolean sendValue) {
         this.sendValue = sendValue;
         traceId = Utils.generateId();
@@ -194,6 +198,22 @@ public class Context {
         monitor = null;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     public void logTraceMessage(String message) {
         if (traceId == null) {
             return;
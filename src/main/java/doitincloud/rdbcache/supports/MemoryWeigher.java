@@ -0,0 +1,91 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.supports;
+
+import java.util.*;
+
+// estimates the retained heap size in bytes of a cached map
+//
+// the numbers are for a 64-bit jvm with compressed oops, good enough to size
+// the local cache, not meant to be exact
+//
+public class MemoryWeigher {
+
+    // Cached object, ConcurrentHashMap node and the policy/timing wheel bookkeeping per entry
+    private static final long ENTRY_OVERHEAD = 200L;
+
+    private static final long MAP_OVERHEAD = 64L;
+
+    private static final long MAP_ENTRY = 40L;
+
+    private static final long LIST_OVERHEAD = 40L;
+
+    private static final long REFERENCE = 4L;
+
+    private static final long OBJECT = 16L;
+
+    public static long weigh(String key, Map<String, Object> map) {
+        return ENTRY_OVERHEAD + weighString(key) + weighObject(map);
+    }
+
+    public static long weighObject(Object object) {
+        if (object == null) {
+            return 0L;
+        }
+        if (object instanceof String) {
+            return weighString((String) object);
+        }
+        if (object instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            long size = MAP_OVERHEAD + REFERENCE * tableSize(map.size());
+            for (Map.Entry<?, ?> entry: map.entrySet()) {
+                size += MAP_ENTRY + weighObject(entry.getKey()) + weighObject(entry.getValue());
+            }
+            return size;
+        }
+        if (object instanceof Collection) {
+            Collection<?> list = (Collection<?>) object;
+            long size = LIST_OVERHEAD + REFERENCE * list.size();
+            for (Object item: list) {
+                size += weighObject(item);
+            }
+            return size;
+        }
+        if (object instanceof Long || object instanceof Double) {
+            return OBJECT + 8L;
+        }
+        if (object instanceof Number || object instanceof Boolean || object instanceof Character) {
+            return OBJECT;
+        }
+        if (object instanceof byte[]) {
+            return align(OBJECT + ((byte[]) object).length);
+        }
+        // dates, big decimals and others
+        return OBJECT + 32L;
+    }
+
+    // String object plus its char array
+    //
+    private static long weighString(String s) {
+        if (s == null) {
+            return 0L;
+        }
+        return 24L + align(OBJECT + 2L * s.length());
+    }
+
+    private static long tableSize(int size) {
+        long capacity = 16L;
+        while (capacity * 3 / 4 < size) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static long align(long size) {
+        return (size + 7L) & ~7L;
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.supports;
+
+import java.nio.ByteBuffer;
+
+// byte records kept in direct memory, outside of the java heap
+//
+// memory is allocated on demand in slabs of 16MB, up to capacity, and cut into
+// blocks of 256 bytes. a record is a chain of blocks, each block starts with the
+// index of the next block, the first one also holds the record length. freed
+// blocks are chained into a free list and reused.
+//
+// a record is addressed by the index of its first block, -1 means no record
+//
+public class OffHeapStore {
+
+    private static final int BLOCK_SIZE = 256;
+
+    private static final int SLAB_SIZE = 16 * 1024 * 1024;
+
+    private static final int BLOCKS_PER_SLAB = SLAB_SIZE / BLOCK_SIZE;
+
+    private static final int NEXT_SIZE = 4;
+
+    private static final int LENGTH_SIZE = 4;
+
+    private final ByteBuffer[] slabs;
+
+    private final int maxBlocks;
+
+    private int nextBlock = 0;
+
+    private int freeHead = -1;
+
+    private int usedBlocks = 0;
+
+    public OffHeapStore(long capacity) {
+        long blocks = Math.max(capacity / BLOCK_SIZE, BLOCKS_PER_SLAB);
+        maxBlocks = (int) Math.min(blocks, Integer.MAX_VALUE - BLOCKS_PER_SLAB);
+        slabs = new ByteBuffer[(maxBlocks + BLOCKS_PER_SLAB - 1) / BLOCKS_PER_SLAB];
+    }
+
+    public long getCapacity() {
+        return (long) maxBlocks * BLOCK_SIZE;
+    }
+
+    public synchronized long getAllocatedBytes() {
+        return (long) nextBlock * BLOCK_SIZE;
+    }
+
+    public synchronized long getUsedBytes() {
+        return (long) usedBlocks * BLOCK_SIZE;
+    }
+
+    // returns the address of the record, or -1 if there is not enough room
+    //
+    public int write(byte[] data) {
+
+        int total = LENGTH_SIZE + data.length;
+        int payload = BLOCK_SIZE - NEXT_SIZE;
+        int count = (total + payload - 1) / payload;
+
+        int[] blocks = allocate(count);
+        if (blocks == null) {
+            return -1;
+        }
+
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buffer = blockBuffer(blocks[i]);
+            buffer.putInt(i + 1 < count ? blocks[i + 1] : -1);
+            int room = payload;
+            if (i == 0) {
+                buffer.putInt(data.length);
+                room -= LENGTH_SIZE;
+            }
+            int length = Math.min(room, data.length - position);
+            buffer.put(data, position, length);
+            position += length;
+        }
+
+        return blocks[0];
+    }
+
+    public byte[] read(int address) {
+
+        ByteBuffer buffer = blockBuffer(address);
+        int next = buffer.getInt();
+        byte[] data = new byte[buffer.getInt()];
+
+        int position = 0;
+        int length = Math.min(BLOCK_SIZE - NEXT_SIZE - LENGTH_SIZE, data.length);
+        buffer.get(data, 0, length);
+        position += length;
+
+        while (next != -1 && position < data.length) {
+            buffer = blockBuffer(next);
+            next = buffer.getInt();
+            length = Math.min(BLOCK_SIZE - NEXT_SIZE, data.length - position);
+            buffer.get(data, position, length);
+            position += length;
+        }
+
+        return data;
+    }
+
+    public synchronized void free(int address) {
+        if (address < 0) {
+            return;
+        }
+        int tail = address;
+        usedBlocks--;
+        int next = nextOf(tail);
+        while (next != -1) {
+            tail = next;
+            usedBlocks--;
+            next = nextOf(tail);
+        }
+        slabOf(tail).putInt(offsetOf(tail), freeHead);
+        freeHead = address;
+    }
+
+    private synchronized int[] allocate(int count) {
+
+        int[] blocks = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (freeHead != -1) {
+                blocks[i] = freeHead;
+                freeHead = nextOf(freeHead);
+            } else if (nextBlock < maxBlocks) {
+                int slab = nextBlock / BLOCKS_PER_SLAB;
+                if (slabs[slab] == null) {
+                    slabs[slab] = ByteBuffer.allocateDirect(SLAB_SIZE);
+                }
+                blocks[i] = nextBlock++;
+            } else {
+                // not enough room, give back what we got so far
+                for (int j = i - 1; j >= 0; j--) {
+                    slabOf(blocks[j]).putInt(offsetOf(blocks[j]), freeHead);
+                    freeHead = blocks[j];
+                }
+                return null;
+            }
+        }
+        usedBlocks += count;
+        return blocks;
+    }
+
+    private int nextOf(int block) {
+        return slabOf(block).getInt(offsetOf(block));
+    }
+
+    private ByteBuffer slabOf(int block) {
+        return slabs[block / BLOCKS_PER_SLAB];
+    }
+
+    private int offsetOf(int block) {
+        return (block % BLOCKS_PER_SLAB) * BLOCK_SIZE;
+    }
+
+    private ByteBuffer blockBuffer(int block) {
+        ByteBuffer buffer = slabOf(block).duplicate();
+        buffer.position(offsetOf(block));
+        return buffer;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.supports;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Function;
+
+// converts a row map between database and rdbcache, compiled once from the
+// columns of a table
+//
+// each column gets the key found in the row, the key to keep and a converter
+// for its type. converting a row only visits the fields present in it. time
+// values are formatted with java.time formatters, they are thread safe and
+// shared by all rows.
+//
+public class RowCodec {
+
+    private static final DateTimeFormatter yearFormatter = DateTimeFormatter.ofPattern("yyyy");
+
+    private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final Map<String, Object> columns;
+
+    private final Map<String, Field> fields;
+
+    // h2 returns upper case column labels
+    //
+    public RowCodec(Map<String, Object> columns, String databaseType) {
+
+        this.columns = columns;
+
+        boolean upperCase = "h2".equals(databaseType);
+        ZoneId zoneId = ZoneId.systemDefault();
+
+        fields = new HashMap<>(columns.size() * 2);
+        for (Map.Entry<String, Object> entry : columns.entrySet()) {
+            String key = entry.getKey();
+            String dbKey = upperCase ? key.toUpperCase() : key;
+            Function<Object, Object> converter = null;
+            Map<String, Object> attributes = (Map<String, Object>) entry.getValue();
+            if (attributes != null) {
+                converter = getTimeConverter((String) attributes.get("type"), zoneId);
+            }
+            fields.put(dbKey, new Field(key, !key.equals(dbKey), converter));
+        }
+    }
+
+    public Map<String, Object> getColumns() {
+        return columns;
+    }
+
+    public Map<String, Object> convert(Map<String, Object> dbMap) {
+
+        if (dbMap.size() == 0) {
+            return dbMap;
+        }
+        // keys are renamed in place, iterate over a copy
+        Object[] keys = dbMap.keySet().toArray();
+        for (Object dbKey : keys) {
+            Field field = fields.get(dbKey);
+            if (field == null) {
+                continue;
+            }
+            Object value = dbMap.get(dbKey);
+            if (value != null && field.converter != null) {
+                Object converted = field.converter.apply(value);
+                if (converted != value) {
+                    value = converted;
+                    if (!field.rename) dbMap.put(field.key, value);
+                }
+            }
+            if (field.rename) {
+                dbMap.remove(dbKey);
+                dbMap.put(field.key, value);
+            }
+        }
+        return dbMap;
+    }
+
+    private static Function<Object, Object> getTimeConverter(String type, ZoneId zoneId) {
+
+        if (type == null) {
+            return null;
+        }
+        DateTimeFormatter formatter;
+        switch (type) {
+            case "year(4)":
+                formatter = yearFormatter;
+                break;
+            case "time":
+                formatter = timeFormatter;
+                break;
+            case "date":
+                formatter = dateFormatter;
+                break;
+            case "datetime":
+            case "timestamp":
+                formatter = dateTimeFormatter;
+                break;
+            default:
+                return null;
+        }
+        DateTimeFormatter zoned = formatter.withZone(zoneId);
+        return value -> {
+            Long millis = toEpochMillis(value);
+            if (millis == null) {
+                return value;
+            }
+            return zoned.format(Instant.ofEpochMilli(millis));
+        };
+    }
+
+    // java.sql.Date and java.sql.Time do not support toInstant
+    //
+    private static Long toEpochMillis(Object value) {
+
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        } else if (value instanceof Long) {
+            return (Long) value;
+        } else if (value instanceof String) {
+            String strValue = (String) value;
+            if (strValue.length() > 10 && isDigits(strValue)) {
+                return Long.valueOf(strValue);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    private static class Field {
+
+        private final String key;
+
+        private final boolean rename;
+
+        private final Function<Object, Object> converter;
+
+        Field(String key, boolean rename, Function<Object, Object> converter) {
+            this.key = key;
+            this.rename = rename;
+            this.converter = converter;
+        }
+    }
+}
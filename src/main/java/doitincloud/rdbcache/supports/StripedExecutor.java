@@ -0,0 +1,79 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.supports;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+// fixed set of single threaded stripes, a task runs on the stripe its key hashes to
+//
+// tasks of the same key run one at a time in the order they are submitted, tasks of
+// different keys run in parallel. when a stripe queue is full the submitting thread
+// waits for room, running the task elsewhere would get it ahead of its key.
+//
+public class StripedExecutor {
+
+    private final String name;
+
+    private final BoundedExecutor[] stripes;
+
+    public StripedExecutor(String name, int count, int queueCapacity) {
+        this.name = name;
+        stripes = new BoundedExecutor[Math.max(count, 1)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new BoundedExecutor(name + "-" + i, 1, queueCapacity, "block");
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    public Future<?> submit(Object key, Runnable task) {
+        return stripeOf(key).submit(task);
+    }
+
+    public BoundedExecutor stripeOf(Object key) {
+        int hash = key == null ? 0 : key.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[(hash & 0x7fffffff) % stripes.length];
+    }
+
+    public void shutdown() {
+        for (BoundedExecutor stripe: stripes) {
+            stripe.shutdown();
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        int activeCount = 0, queueSize = 0, maxQueueSize = 0;
+        long completedCount = 0L, rejectedCount = 0L;
+        for (BoundedExecutor stripe: stripes) {
+            activeCount += stripe.getActiveCount();
+            int size = stripe.getQueueSize();
+            queueSize += size;
+            if (size > maxQueueSize) maxQueueSize = size;
+            completedCount += stripe.getCompletedTaskCount();
+            rejectedCount += stripe.getRejectedCount();
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("stripes", stripes.length);
+        map.put("activeCount", activeCount);
+        map.put("queueSize", queueSize);
+        map.put("maxStripeQueueSize", maxQueueSize);
+        map.put("stripeQueueCapacity", stripes[0].getQueueCapacity());
+        map.put("completedCount", completedCount);
+        map.put("rejectedCount", rejectedCount);
+        map.put("rejectionPolicy", stripes[0].getRejectionPolicy());
+        return map;
+    }
+}
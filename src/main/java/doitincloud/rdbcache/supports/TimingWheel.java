@@ -0,0 +1,136 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.supports;
+
+import java.util.*;
+
+// hierarchical timing wheel keyed by cache key
+//
+// 4 levels of 64 buckets, ticks of about 1 second, 1 minute, 70 minutes and 3 days.
+// a key is placed in the bucket of the lowest level that can hold its deadline,
+// when the wheel advances, the buckets passed over are drained: due keys are returned,
+// the others cascade down to a finer level. schedule, deschedule and expiring a key
+// are all O(1).
+//
+public class TimingWheel {
+
+    private static final int BUCKETS = 64;
+
+    private static final int[] SHIFTS = {10, 16, 22, 28};
+
+    private final List<Set<String>[]> wheel = new ArrayList<>();
+
+    private final Map<String, Timer> timers = new HashMap<>();
+
+    private long currentTime;
+
+    public TimingWheel(long currentTime) {
+        this.currentTime = currentTime;
+        for (int i = 0; i < SHIFTS.length; i++) {
+            Set<String>[] buckets = new Set[BUCKETS];
+            for (int j = 0; j < BUCKETS; j++) {
+                buckets[j] = new HashSet<>();
+            }
+            wheel.add(buckets);
+        }
+    }
+
+    public synchronized int size() {
+        return timers.size();
+    }
+
+    public synchronized void schedule(String key, long deadline) {
+        Timer timer = timers.get(key);
+        if (timer != null) {
+            timer.bucket.remove(key);
+        } else {
+            timer = new Timer();
+            timers.put(key, timer);
+        }
+        timer.deadline = deadline;
+        timer.bucket = findBucket(deadline);
+        timer.bucket.add(key);
+    }
+
+    public synchronized void deschedule(String key) {
+        Timer timer = timers.remove(key);
+        if (timer != null) {
+            timer.bucket.remove(key);
+        }
+    }
+
+    public synchronized void clear() {
+        for (Set<String>[] buckets: wheel) {
+            for (Set<String> bucket: buckets) {
+                bucket.clear();
+            }
+        }
+        timers.clear();
+    }
+
+    // moves the wheel to now, returns the keys with deadline reached
+    //
+    public synchronized List<String> advance(long now) {
+
+        long previousTime = currentTime;
+        if (now <= previousTime) {
+            return Collections.emptyList();
+        }
+        currentTime = now;
+
+        List<String> expired = new ArrayList<>();
+
+        for (int i = 0; i < SHIFTS.length; i++) {
+            long previousTicks = previousTime >>> SHIFTS[i];
+            long currentTicks = now >>> SHIFTS[i];
+            if (currentTicks == previousTicks) {
+                break;
+            }
+            long delta = Math.min(currentTicks - previousTicks, BUCKETS - 1);
+            Set<String>[] buckets = wheel.get(i);
+            for (long ticks = currentTicks - delta; ticks <= currentTicks; ticks++) {
+                int index = (int) (ticks & (BUCKETS - 1));
+                Set<String> bucket = buckets[index];
+                if (bucket.isEmpty()) continue;
+                buckets[index] = new HashSet<>();
+                for (String key: bucket) {
+                    Timer timer = timers.get(key);
+                    if (timer.deadline <= now) {
+                        timers.remove(key);
+                        expired.add(key);
+                    } else {
+                        timer.bucket = findBucket(timer.deadline);
+                        timer.bucket.add(key);
+                    }
+                }
+            }
+        }
+
+        return expired;
+    }
+
+    private Set<String> findBucket(long deadline) {
+        long duration = Math.max(deadline - currentTime, 0L);
+        for (int i = 0; i < SHIFTS.length; i++) {
+            if (duration < ((long) BUCKETS << SHIFTS[i])) {
+                long ticks = Math.max(deadline, currentTime) >>> SHIFTS[i];
+                return wheel.get(i)[(int) (ticks & (BUCKETS - 1))];
+            }
+        }
+        // beyond the top level, parks in the bucket before the current one and cascades from there
+        int last = SHIFTS.length - 1;
+        long ticks = (currentTime >>> SHIFTS[last]) - 1;
+        return wheel.get(last)[(int) (ticks & (BUCKETS - 1))];
+    }
+
+    class Timer {
+
+        long deadline;
+
+        Set<String> bucket;
+    }
+}
@@ -0,0 +1,303 @@
+/**
+ * @link http://rdbcache.com/
+ * @copyright Copyright (c) 2017-2018 Sam Wen
+ * @license http://rdbcache.com/license/
+ */
+
+package doitincloud.rdbcache.supports;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+// W-TinyLFU admission and eviction policy
+//
+// new keys enter a small LRU window (1% of maximum), keys leaving the window compete
+// with the LRU victim of the probation segment, the one with the higher estimated
+// frequency stays in the main space. keys accessed again in probation are promoted
+// to the protected segment (80% of main space).
+//
+// the cache is bounded by number of entries, and optionally by total weight,
+// the weight of an entry is given by the caller, usually its estimated size in bytes.
+//
+// all operations are O(1), the policy only tracks keys, the caller removes the
+// returned victims from its own storage.
+//
+// reads take no lock, they are recorded in striped lossy buffers and applied to
+// the sketch and the segments in batches under the lock. a read may be lost when
+// its buffer is overwritten before it is drained.
+//
+public class TinyLfuPolicy {
+
+    private static final int READ_STRIPES = 16;
+
+    private static final int READ_BUFFER_SIZE = 32;
+
+    private static final int READ_DRAIN_THRESHOLD = 16;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final ReadBuffer[] readBuffers = new ReadBuffer[READ_STRIPES];
+
+    private final FrequencySketch sketch;
+
+    private final LinkedHashMap<String, Long> window = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<String, Long> probation = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<String, Long> protect = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long maximum;
+
+    private long maximumWeight = 0L;
+
+    private long totalWeight = 0L;
+
+    private long windowMaximum;
+
+    private long protectMaximum;
+
+    private long evictionCount = 0L;
+
+    public TinyLfuPolicy(long maximum) {
+        sketch = new FrequencySketch(maximum);
+        for (int i = 0; i < READ_STRIPES; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+        setMaximum(maximum);
+    }
+
+    public void setMaximum(long maximum) {
+        lock.lock();
+        try {
+            this.maximum = Math.max(maximum, 1L);
+            windowMaximum = Math.max(this.maximum / 100, 1L);
+            protectMaximum = (this.maximum - windowMaximum) * 4 / 5;
+            sketch.ensureCapacity(this.maximum);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    // 0 or less means no limit on weight
+    //
+    public void setMaximumWeight(long maximumWeight) {
+        lock.lock();
+        try {
+            this.maximumWeight = maximumWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return window.size() + probation.size() + protect.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int frequency(String key) {
+        return sketch.frequency(key);
+    }
+
+    public List<String> onPut(String key) {
+        return onPut(key, 1L);
+    }
+
+    // records a write of key with its weight, returns the keys to evict
+    //
+    public List<String> onPut(String key, long weight) {
+        lock.lock();
+        try {
+            drainReadBuffers();
+            sketch.increment(key);
+            Long oldWeight = touch(key, weight);
+            if (oldWeight != null) {
+                totalWeight += weight - oldWeight;
+                if (weight <= oldWeight) {
+                    return Collections.emptyList();
+                }
+            } else {
+                window.put(key, weight);
+                totalWeight += weight;
+            }
+            return evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // records a read of key
+    //
+    // the buffer of the calling thread is drained once it has enough reads, if the
+    // lock is free, otherwise by a later read or put
+    //
+    public void onAccess(String key) {
+        ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (READ_STRIPES - 1)];
+        if (!buffer.offer(key) || !lock.tryLock()) {
+            return;
+        }
+        try {
+            drainReadBuffers();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onRemove(String key) {
+        lock.lock();
+        try {
+            Long weight = window.remove(key);
+            if (weight == null) weight = probation.remove(key);
+            if (weight == null) weight = protect.remove(key);
+            if (weight != null) totalWeight -= weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            window.clear();
+            probation.clear();
+            protect.clear();
+            totalWeight = 0L;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // moves key on access, sets its new weight if given, returns the previous weight,
+    // or null if key is not tracked
+    //
+    private Long touch(String key, Long weight) {
+        Long oldWeight = window.get(key);
+        if (oldWeight != null) {
+            if (weight != null) window.put(key, weight);
+            return oldWeight;
+        }
+        oldWeight = probation.remove(key);
+        if (oldWeight != null) {
+            protect.put(key, weight != null ? weight : oldWeight);
+            while (protect.size() > protectMaximum) {
+                String demoted = first(protect);
+                probation.put(demoted, protect.remove(demoted));
+            }
+            return oldWeight;
+        }
+        oldWeight = protect.get(key);
+        if (oldWeight != null && weight != null) {
+            protect.put(key, weight);
+        }
+        return oldWeight;
+    }
+
+    // with the lock held
+    //
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer: readBuffers) {
+            long tail = buffer.tail.get();
+            for (long i = Math.max(buffer.head, tail - READ_BUFFER_SIZE); i < tail; i++) {
+                String key = buffer.slots.getAndSet((int) (i & (READ_BUFFER_SIZE - 1)), null);
+                if (key != null) {
+                    sketch.increment(key);
+                    touch(key, null);
+                }
+            }
+            buffer.head = tail;
+        }
+    }
+
+    private boolean isOverflow() {
+        if (window.size() + probation.size() + protect.size() > maximum) {
+            return true;
+        }
+        return maximumWeight > 0L && totalWeight > maximumWeight;
+    }
+
+    private List<String> evict() {
+
+        String candidate = null;
+        while (window.size() > windowMaximum) {
+            candidate = first(window);
+            probation.put(candidate, window.remove(candidate));
+        }
+
+        List<String> victims = null;
+
+        while (isOverflow()) {
+
+            String victim = first(probation);
+            if (victim == null || victim.equals(candidate)) {
+                String protectVictim = first(protect);
+                if (protectVictim != null) victim = protectVictim;
+            }
+            if (victim == null) victim = first(window);
+            if (victim == null) break;
+
+            String evicted = victim;
+            if (candidate != null && !candidate.equals(victim) && probation.containsKey(candidate)) {
+                if (sketch.frequency(candidate) <= sketch.frequency(victim)) {
+                    evicted = candidate;
+                }
+                candidate = null;
+            }
+
+            onRemove(evicted);
+            evictionCount++;
+            if (victims == null) victims = new ArrayList<>();
+            victims.add(evicted);
+        }
+
+        if (victims == null) {
+            return Collections.emptyList();
+        }
+        return victims;
+    }
+
+    private static String first(LinkedHashMap<String, Long> map) {
+        if (map.isEmpty()) {
+            return null;
+        }
+        return map.keySet().iterator().next();
+    }
+
+    private static class ReadBuffer {
+
+        private final AtomicReferenceArray<String> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+
+        private final AtomicLong tail = new AtomicLong(0L);
+
+        // only changed with the lock held
+        private long head = 0L;
+
+        // returns true when the buffer is due to be drained
+        //
+        boolean offer(String key) {
+            long index = tail.getAndIncrement();
+            slots.lazySet((int) (index & (READ_BUFFER_SIZE - 1)), key);
+            return ((index + 1) & (READ_DRAIN_THRESHOLD - 1)) == 0;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+--- redis-cli --eval claim-expire-events.lua schedule_key inflight_key , now_millis limit lease_millis
+---
+--- moves up to limit events due by now_millis from the schedule sorted set to the
+--- in-flight sorted set and returns them. an in-flight event is scored by the end of
+--- its lease and is removed by its caller once written back. events whose lease has
+--- ended are claimed again first, so an event is not lost if its caller dies.
+---
+local now = tonumber(ARGV[1])
+local limit = tonumber(ARGV[2])
+local events = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', now, 'LIMIT', 0, limit)
+if #events < limit then
+    local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', now, 'LIMIT', 0, limit - #events)
+    if next(due) ~= nil then
+        redis.call('ZREM', KEYS[1], unpack(due))
+        for _, event in ipairs(due) do
+            events[#events + 1] = event
+        end
+    end
+end
+local deadline = now + tonumber(ARGV[3])
+for _, event in ipairs(events) do
+    redis.call('ZADD', KEYS[2], deadline, event)
+end
+return events
@@ -0,0 +1,18 @@
+--- redis-cli --eval expire-events-lock.lua lock_key1 ... lock_keyN index_key1 ... index_keyN , signature timeout trace_id1 ... trace_idN
+---
+--- locks each key with signature for timeout seconds, returns 1 for each key locked, 0 if
+--- it is locked by others, and -1 if its index key no longer holds its trace_id. such an
+--- event is a duplicate or older than the current event of its key, it is not locked.
+---
+local count = #KEYS / 2
+local results = {}
+for i = 1, count do
+    if redis.call("GET", KEYS[count + i]) ~= ARGV[2 + i] then
+        results[i] = -1
+    elseif redis.call("SET", KEYS[i], ARGV[1], "NX", "EX", ARGV[2]) then
+        results[i] = 1
+    else
+        results[i] = 0
+    end
+end
+return results
@@ -0,0 +1,11 @@
+--- redis-cli --eval expire-events-unlock.lua key1 key2 ... , signature
+---
+--- unlocks each key still locked with signature, returns the number of keys unlocked
+---
+local count = 0
+for i, key in ipairs(KEYS) do
+    if redis.call("GET", key) == ARGV[1] then
+        count = count + redis.call("DEL", key)
+    end
+end
+return count
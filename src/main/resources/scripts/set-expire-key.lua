@@ -1,12 +1,27 @@
---- redis-cli --eval set-expire-key.lua key , trace_id expire_string
+--- redis-cli --eval set-expire-key.lua key [schedule_key] , trace_id expire_string now_millis
 ---
-local res = redis.call('KEYS', KEYS[1] .. "::*")
+--- the event key is KEYS[1] .. "::" .. trace_id, KEYS[1] itself holds the trace_id
+--- of the current event, so it is found without scanning the keyspace. KEYS[1]
+--- outlives its event by a minute, its own expired event is ignored.
+---
+--- when schedule_key is given, the event key is also added to that sorted set,
+--- scored by its due time in milliseconds
+---
+local scheduleKey = KEYS[2]
+local traceId = redis.call('GET', KEYS[1])
 local expValue = tonumber(ARGV[2])
-if next(res) ~= nil then
-    if expValue > 0 and string.sub(ARGV[2], 1, 1) ~= '+' then
-        return 0
+if traceId then
+    local eventKey = KEYS[1] .. "::" .. traceId
+    if redis.call('EXISTS', eventKey) == 1 then
+        if expValue > 0 and string.sub(ARGV[2], 1, 1) ~= '+' then
+            return 0
+        end
+        redis.call('DEL', eventKey)
+    end
+    redis.call('DEL', KEYS[1])
+    if scheduleKey then
+        redis.call('ZREM', scheduleKey, eventKey)
     end
-    redis.call('DEL', unpack(res))
 end
 if expValue == 0 then
     return 0
@@ -15,4 +30,8 @@ if expValue < 0 then
     expValue = -expValue
 end
 redis.call('SETEX', KEYS[1] .. "::" .. ARGV[1], expValue, ARGV[2])
-return 1
\ No newline at end of file
+redis.call('SETEX', KEYS[1], expValue + 60, ARGV[1])
+if scheduleKey then
+    redis.call('ZADD', scheduleKey, tonumber(ARGV[3]) + expValue * 1000, KEYS[1] .. "::" .. ARGV[1])
+end
+return 1
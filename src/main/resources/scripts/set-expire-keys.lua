@@ -0,0 +1,46 @@
+--- redis-cli --eval set-expire-keys.lua key1 key2 ... [schedule_key] , trace_id now_millis expire_string1 expire_string2 ...
+---
+--- batch version of set-expire-key.lua, ARGV[i + 2] is the expire string of KEYS[i].
+--- when there is one more key than expire strings, the last key is the schedule key.
+--- returns the result of each key in order
+---
+local count = #ARGV - 2
+local scheduleKey = nil
+if #KEYS > count then
+    scheduleKey = KEYS[count + 1]
+end
+local results = {}
+for i = 1, count do
+    local key = KEYS[i]
+    local expire = ARGV[i + 2]
+    local expValue = tonumber(expire)
+    local result = 1
+    local traceId = redis.call('GET', key)
+    if traceId then
+        local eventKey = key .. "::" .. traceId
+        if redis.call('EXISTS', eventKey) == 1 and expValue > 0 and string.sub(expire, 1, 1) ~= '+' then
+            result = 0
+        else
+            redis.call('DEL', eventKey)
+            redis.call('DEL', key)
+            if scheduleKey then
+                redis.call('ZREM', scheduleKey, eventKey)
+            end
+        end
+    end
+    if result == 1 and expValue == 0 then
+        result = 0
+    end
+    if result == 1 then
+        if expValue < 0 then
+            expValue = -expValue
+        end
+        redis.call('SETEX', key .. "::" .. ARGV[1], expValue, expire)
+        redis.call('SETEX', key, expValue + 60, ARGV[1])
+        if scheduleKey then
+            redis.call('ZADD', scheduleKey, tonumber(ARGV[2]) + expValue * 1000, key .. "::" .. ARGV[1])
+        end
+    end
+    results[i] = result
+end
+return results
@@ -7,6 +7,16 @@ CREATE TABLE IF NOT EXISTS rdbcache_kv_pair (
   PRIMARY KEY (id, type)
 );
 
+CREATE TABLE IF NOT EXISTS rdbcache_trace (
+  id bigint not null auto_increment,
+  trace_id varchar(64) not null,
+  logged_at bigint,
+  message text,
+  trace varchar(1024),
+  KEY (trace_id),
+  PRIMARY KEY (id)
+);
+
 CREATE TABLE IF NOT EXISTS rdbcache_monitor (
   id bigint not null auto_increment,
   name varchar(255) not null,
@@ -48,6 +48,11 @@ public class Configurations implements ApplicationContextAware {
         return new MonitorRepoImpl();
     }
 
+    @Bean
+    public TraceRepo traceRepo() {
+        return new TraceRepoImpl();
+    }
+
     @Override
     public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
         AppCtx.setApplicationContext(applicationContext);
@@ -164,6 +169,36 @@ public class Configurations implements ApplicationContextAware {
         return new QueueOps();
     }
 
+    @Bean
+    public ScheduleOps scheduleOps() {
+        return new ScheduleOps();
+    }
+
+    @Bean
+    public LoadOps loadOps() {
+        return new LoadOps();
+    }
+
+    @Bean
+    public QueryCacheOps queryCacheOps() {
+        return new QueryCacheOps();
+    }
+
+    @Bean
+    public ExecutorOps executorOps() {
+        return new ExecutorOps();
+    }
+
+    @Bean
+    public WriteBehindOps writeBehindOps() {
+        return new WriteBehindOps();
+    }
+
+    @Bean
+    public MonitorOps monitorOps() {
+        return new MonitorOps();
+    }
+
     @Bean
     public KeyInfoRepo keyInfoRepo() {
         return new KeyInfoRepoImpl();
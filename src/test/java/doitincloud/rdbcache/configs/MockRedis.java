@@ -7,6 +7,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
 
@@ -49,17 +51,7 @@ public class MockRedis {
         //
         Mockito.doAnswer(invocation -> {
             Object[] args = invocation.getArguments();
-            String key = (String) args[0];
-            Map<String, Object> map = (Map<String, Object>) args[1];
-            LOGGER.trace("StringRedisTemplate HashOperations putAll " + key + " " + map.keySet());
-            Map<String, Object> wholeMap = (Map<String, Object>) data.get(key);
-            if (wholeMap == null) {
-                wholeMap = new LinkedHashMap<>();
-                data.put(key, wholeMap);
-            }
-            for (Map.Entry<String, Object> entry : map.entrySet()) {
-                wholeMap.put(entry.getKey(), entry.getValue());
-            }
+            hashPutAll((String) args[0], (Map<String, Object>) args[1]);
             return null;
         }).when(hashOps).putAll(anyString(), anyMap());
 
@@ -68,16 +60,45 @@ public class MockRedis {
         //
         Mockito.doAnswer(invocation -> {
             Object[] args = invocation.getArguments();
-            String key = (String) args[0];
-            LOGGER.trace("StringRedisTemplate HashOperations entries " + key);
-            Map<String, Object> map = (Map<String, Object>) data.get(key);
-            if (map == null) {
-                return null;
-            }
-            Map<String, Object> mapClone = new LinkedHashMap<>(map);
-            return mapClone;
+            return hashEntries((String) args[0]);
         }).when(hashOps).entries(anyString());
 
+        // mock StringRedisTemplate executePipelined
+        //
+        // commands issued in the session are applied right away, their results are
+        // collected and returned in order, the same as a real pipeline
+        //
+        Mockito.doAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            SessionCallback callback = (SessionCallback) args[0];
+            LOGGER.trace("StringRedisTemplate executePipelined");
+            List<Object> results = new ArrayList<>();
+
+            RedisOperations operations = mock(RedisOperations.class);
+            HashOperations pipelinedHashOps = mock(HashOperations.class);
+            Mockito.when(operations.opsForHash()).thenReturn(pipelinedHashOps);
+
+            Mockito.doAnswer(inv -> {
+                results.add(data.containsKey((String) inv.getArguments()[0]));
+                return null;
+            }).when(operations).hasKey(anyString());
+
+            Mockito.doAnswer(inv -> {
+                Object[] a = inv.getArguments();
+                hashPutAll((String) a[0], (Map<String, Object>) a[1]);
+                return null;
+            }).when(pipelinedHashOps).putAll(anyString(), anyMap());
+
+            Mockito.doAnswer(inv -> {
+                Map<String, Object> map = hashEntries((String) inv.getArguments()[0]);
+                results.add(map != null ? map : new LinkedHashMap<>());
+                return null;
+            }).when(pipelinedHashOps).entries(anyString());
+
+            callback.execute(operations);
+            return results;
+        }).when(template).executePipelined(any(SessionCallback.class));
+
         // opsForValue only use in ExpireOps for lua scripts, set it to null to bypass the real operations
         //
         ValueOperations valueOps =  mock(ValueOperations.class, Mockito.RETURNS_DEEP_STUBS);
@@ -107,6 +128,33 @@ public class MockRedis {
             return data.get(key);
         }).when(valueOps).get(anyString());
 
+        // mock ValueOperations increment
+        //
+        Mockito.doAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            String key = (String) args[0];
+            Long delta = (Long) args[1];
+            LOGGER.trace("StringRedisTemplate ValueOperations increment " + key + " " + delta);
+            Object value = data.get(key);
+            Long result = (value instanceof String ? Long.parseLong((String) value) : 0L) + delta;
+            data.put(key, result.toString());
+            return result;
+        }).when(valueOps).increment(anyString(), anyLong());
+
+        // mock ValueOperations multiGet
+        //
+        Mockito.doAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            Collection<String> keys = (Collection<String>) args[0];
+            LOGGER.trace("StringRedisTemplate ValueOperations multiGet " + keys);
+            List<Object> values = new ArrayList<>();
+            for (String key: keys) {
+                Object value = data.get(key);
+                values.add(value instanceof String ? value : null);
+            }
+            return values;
+        }).when(valueOps).multiGet(anyCollection());
+
         // mock (ListOperations leftPop
         //
         ListOperations listOps = mock(ListOperations.class, Mockito.RETURNS_DEEP_STUBS);
@@ -124,6 +172,27 @@ public class MockRedis {
         return template;
    }
 
+    private static void hashPutAll(String key, Map<String, Object> map) {
+        LOGGER.trace("StringRedisTemplate HashOperations putAll " + key + " " + map.keySet());
+        Map<String, Object> wholeMap = (Map<String, Object>) data.get(key);
+        if (wholeMap == null) {
+            wholeMap = new LinkedHashMap<>();
+            data.put(key, wholeMap);
+        }
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            wholeMap.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static Map<String, Object> hashEntries(String key) {
+        LOGGER.trace("StringRedisTemplate HashOperations entries " + key);
+        Map<String, Object> map = (Map<String, Object>) data.get(key);
+        if (map == null) {
+            return null;
+        }
+        return new LinkedHashMap<>(map);
+    }
+
    public static RedisKeyInfoTemplate mockKeyInfoRedisTemplate() {
 
        RedisKeyInfoTemplate template = mock(RedisKeyInfoTemplate.class, Mockito.RETURNS_DEEP_STUBS);
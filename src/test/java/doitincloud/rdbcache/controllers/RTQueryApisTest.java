@@ -4,6 +4,7 @@ import com.google.common.io.CharStreams;
 import doitincloud.rdbcache.configs.AppCtx;
 import doitincloud.commons.helpers.Utils;
 import doitincloud.rdbcache.services.CacheOps;
+import doitincloud.rdbcache.services.ExecutorOps;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -138,6 +139,9 @@ public class RTQueryApisTest {
     @Test
     public void retrieveLocalCacheConfig() throws Exception {
 
+        PowerMockito.mockStatic(AppCtx.class);
+        BDDMockito.when(AppCtx.getCacheOps()).thenReturn(cacheOps);
+
         RequestBuilder requestBuilder = MockMvcRequestBuilders.
                 get("/rtquery/v1/cache/config").
                 accept(MediaType.APPLICATION_JSON);
@@ -164,6 +168,44 @@ public class RTQueryApisTest {
 
     }
 
+    @Test
+    public void retrieveExecutors() throws Exception {
+
+        PowerMockito.mockStatic(AppCtx.class);
+        BDDMockito.when(AppCtx.getExecutorOps()).thenReturn(new ExecutorOps());
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.
+                get("/rtquery/v1/executors").
+                accept(MediaType.APPLICATION_JSON);
+
+        ResultActions actions = mockMvc.perform(requestBuilder);
+        MvcResult result = actions.andReturn();
+        MockHttpServletResponse response = result.getResponse();
+
+        assertEquals(200, response.getStatus());
+
+        String body = response.getContentAsString();
+
+        //System.out.println(body);
+
+        Map<String, Object> map = Utils.toMap(body);
+
+        assertTrue(map.containsKey("data"));
+
+        Map<String, Object> data = (Map<String, Object>) map.get("data");
+        assertTrue(data.containsKey("async"));
+        assertTrue(data.containsKey("redis"));
+        assertTrue(data.containsKey("dbase"));
+        assertTrue(data.containsKey("expire"));
+        assertTrue(data.containsKey("refresh"));
+        assertTrue(data.containsKey("trace"));
+        assertTrue(data.containsKey("write_behind"));
+
+        Map<String, Object> redis = (Map<String, Object>) data.get("redis");
+        assertTrue(redis.containsKey("queueSize"));
+        assertTrue(redis.containsKey("activeCount"));
+    }
+
     @MockBean
     private CacheOps cacheOps;
 
@@ -7,6 +7,7 @@ import doitincloud.rdbcache.models.KvIdType;
 import doitincloud.rdbcache.models.KvPair;
 import doitincloud.rdbcache.repositories.DbaseRepo;
 import doitincloud.rdbcache.services.CacheOps;
+import doitincloud.rdbcache.services.QueryCacheOps;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -1038,6 +1039,151 @@ public class RdbcacheApisTest {
         }
     }
 
+    @Test
+    public void select_get_cursor() {
+
+        try {
+
+            Set<Object> ids = new HashSet<>();
+            String cursor = "";
+            int pages = 0;
+
+            while (cursor != null) {
+
+                RequestBuilder requestBuilder = MockMvcRequestBuilders.
+                        get("/rdbcache/v1/select/user_table?limit=2&cursor=" + cursor).
+                        accept(MediaType.APPLICATION_JSON);
+
+                ResultActions actions = mockMvc.perform(requestBuilder);
+                MvcResult result = actions.andReturn();
+                MockHttpServletResponse response = result.getResponse();
+
+                assertEquals(200, response.getStatus());
+                String body = response.getContentAsString();
+                //System.out.println(body);
+
+                Map<String, Object> map = Utils.toMap(body);
+                Map<String, Object> data = (Map<String, Object>) map.get("data");
+                assertNotNull(data);
+                for (Object value: data.values()) {
+                    Object id = ((Map<String, Object>) value).get("id");
+                    assertTrue(ids.add(id));
+                }
+                cursor = (String) map.get("cursor");
+                pages++;
+                assertTrue(pages < 100);
+            }
+
+            // every row once, page by page
+            Integer count = jdbcTemplate.queryForObject("select count(*) from user_table", Integer.class);
+            assertEquals(count.intValue(), ids.size());
+            assertTrue(pages >= 2);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail("caught an exception");
+        }
+    }
+
+    @Test
+    public void select_get_cache() {
+
+        QueryCacheOps queryCacheOps = AppCtx.getQueryCacheOps();
+        Long cacheTTL = queryCacheOps.getCacheTTL();
+        queryCacheOps.setCacheTTL(60L);
+
+        try {
+
+            String url = "/rdbcache/v1/select/user_table/sync?id=3";
+
+            Map<String, Object> data1 = selectData(url);
+            assertEquals(1, data1.size());
+
+            // allow time to synchronize data
+            Thread.sleep(250);
+
+            long hitCount = queryCacheOps.getHitCount();
+            Map<String, Object> data2 = selectData(url);
+            assertEquals(hitCount + 1, queryCacheOps.getHitCount());
+            assertEquals(data1.keySet(), data2.keySet());
+
+            // a write to the table makes it stale
+            {
+                RequestBuilder requestBuilder = MockMvcRequestBuilders.
+                        post("/rdbcache/v1/put/*/user_table/sync?id=3").
+                        contentType(MediaType.APPLICATION_JSON).content("{\"name\":\"Cached\"}").
+                        accept(MediaType.APPLICATION_JSON);
+
+                MockHttpServletResponse response = mockMvc.perform(requestBuilder).andReturn().getResponse();
+                assertEquals(200, response.getStatus());
+            }
+
+            // the version is kept in redis for all nodes
+            assertNotNull(MockRedis.getData().get(PropCfg.getHdataPrefix() + "::select_version::user_table"));
+
+            // allow time to synchronize data
+            Thread.sleep(250);
+
+            long missCount = queryCacheOps.getMissCount();
+            Map<String, Object> data3 = selectData(url);
+            assertEquals(missCount + 1, queryCacheOps.getMissCount());
+            Map<String, Object> row = (Map<String, Object>) data3.values().iterator().next();
+            assertEquals("Cached", row.get("name"));
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail("caught an exception");
+        } finally {
+            queryCacheOps.setCacheTTL(cacheTTL);
+        }
+    }
+
+    private Map<String, Object> selectData(String url) throws Exception {
+
+        RequestBuilder requestBuilder = MockMvcRequestBuilders.get(url).accept(MediaType.APPLICATION_JSON);
+        MockHttpServletResponse response = mockMvc.perform(requestBuilder).andReturn().getResponse();
+
+        assertEquals(200, response.getStatus());
+        Map<String, Object> map = Utils.toMap(response.getContentAsString());
+        Map<String, Object> data = (Map<String, Object>) map.get("data");
+        assertNotNull(data);
+        return data;
+    }
+
+    @Test
+    public void stream_get1() {
+
+        try {
+
+            {
+                RequestBuilder requestBuilder = MockMvcRequestBuilders.
+                        get("/rdbcache/v1/stream/user_table?limit=3");
+
+                MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+                result.getAsyncResult();
+                MockHttpServletResponse response = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result)).
+                        andReturn().getResponse();
+
+                assertEquals(200, response.getStatus());
+                String body = response.getContentAsString();
+                //System.out.println(body);
+
+                // one row per line
+                String[] lines = body.split("\n");
+                assertEquals(3, lines.length);
+                for (String line: lines) {
+                    Map<String, Object> map = Utils.toMap(line);
+                    assertNotNull(map);
+                    assertTrue(map.containsKey("email"));
+                }
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail("caught an exception");
+        }
+    }
+
     @Test
     public void select_get2() {
 
@@ -1755,5 +1901,42 @@ public class RdbcacheApisTest {
             fail("caught an exception");
         }
     }
-}
 
+    @Test
+    public void trace_get2() {
+
+        try {
+
+            // queued messages are found without waiting for the background flush
+            //
+            String traceId = Utils.generateId();
+            for (int i = 0; i < 50; i++) {
+                AppCtx.getDbaseOps().logTraceMessage(traceId, "message " + i, Thread.currentThread().getStackTrace());
+            }
+
+            RequestBuilder requestBuilder = MockMvcRequestBuilders.
+                    get("/rdbcache/v1/trace/"+traceId).
+                    accept(MediaType.APPLICATION_JSON);
+
+            ResultActions actions = mockMvc.perform(requestBuilder);
+            MvcResult result = actions.andReturn();
+            MockHttpServletResponse response = result.getResponse();
+
+            assertEquals(200, response.getStatus());
+            String body = response.getContentAsString();
+            //System.out.println(body);
+
+            Map<String, Object> map = Utils.toMap(body);
+            Map<String, Object> data = (Map<String, Object>) map.get("data");
+            assertNotNull(data);
+            assertEquals(50, data.size());
+            assertEquals("message 0", ((Map<String, Object>) data.get("0")).get("message"));
+            assertEquals("message 49", ((Map<String, Object>) data.get("49")).get("message"));
+            assertEquals(0L, AppCtx.getDbaseOps().getDroppedTraceCount());
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail("caught an exception");
+        }
+    }
+}
@@ -29,4 +29,25 @@ public class QueryInfoTest {
         assertEquals(queryInfo1, queryInfo2);
         assertEquals(queryInfo1.getKey(), queryInfo2.getKey());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void pagesShareKey() {
+
+        Map<String, String[]> params1 = new LinkedHashMap<>();
+        params1.put("limit", new String[]{"2"});
+        params1.put("cursor", new String[]{""});
+
+        Map<String, String[]> params2 = new LinkedHashMap<>();
+        params2.put("limit", new String[]{"2"});
+        params2.put("cursor", new String[]{"WzJd"});
+
+        QueryInfo queryInfo1 = new QueryInfo("user_table", params1);
+        QueryInfo queryInfo2 = new QueryInfo("user_table", params2);
+
+        assertEquals(queryInfo1, queryInfo2);
+        assertEquals(queryInfo1.getKey(), queryInfo2.getKey());
+        assertEquals("", Parser.getCursor(params1));
+        assertEquals("WzJd", Parser.getCursor(params2));
+        assertNull(Parser.getCursor(new LinkedHashMap<>()));
+    }
+}
@@ -20,6 +20,7 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.*;
@@ -92,7 +93,7 @@ public class QueryTest {
 
             assertTrue(query.ifInsertOk());
 
-            assertTrue(query.executeInsert(false, false));
+            assertArrayEquals(new boolean[] {true}, query.executeInsert(false, false));
 
             //System.out.println(Utils.toJsonMap(pairs));
             Map<String, Object> map2 = pair.getData();
@@ -106,6 +107,172 @@ public class QueryTest {
         }
     }
 
+    @Test
+    public void insertBatchTest() {
+
+        try {
+            Context context = new Context();
+            KvPairs pairs = new KvPairs();
+            AnyKey anyKey = new AnyKey();
+
+            for (int i = 0; i < 3; i++) {
+                String json = "{\n" +
+                        "    \"email\" : \"batch" + i + "@example.com\",\n" +
+                        "    \"name\" : \"Batch " + i + "\",\n" +
+                        "    \"dob\" : \"1980-01-0" + (i + 1) + "\"\n" +
+                        "  }";
+                pairs.add(new KvPair("*", "data", Utils.toMap(json)));
+
+                KeyInfo keyInfo = new KeyInfo();
+                keyInfo.setExpire("100");
+                keyInfo.setTable("user_table2");
+                anyKey.add(keyInfo);
+            }
+
+            Query query = new Query(context, jdbcTemplate, pairs, anyKey);
+
+            assertTrue(query.ifInsertOk());
+
+            assertArrayEquals(new boolean[] {true, true, true}, query.executeInsert(false, false));
+
+            // generated keys map back to their pairs, in order
+            int id0 = Integer.valueOf((String) pairs.get(0).getData().get("id"));
+            for (int i = 0; i < 3; i++) {
+                Map<String, Object> map = pairs.get(i).getData();
+                assertEquals(String.valueOf(id0 + i), map.get("id"));
+                Map<String, Object> dbMap = jdbcTemplate.queryForMap("select * from user_table2 where id = ?", id0 + i);
+                assertEquals("batch" + i + "@example.com", dbMap.get("email"));
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail(e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void insertBatchPartialTest() {
+
+        try {
+            Context context = new Context();
+            context.setSync(false);
+            KvPairs pairs = new KvPairs();
+            AnyKey anyKey = new AnyKey();
+
+            // the second row has the unique email of the first one
+            for (String email: Arrays.asList("partial@example.com", "partial@example.com")) {
+                String json = "{\n" +
+                        "    \"email\" : \"" + email + "\",\n" +
+                        "    \"name\" : \"Partial\"\n" +
+                        "  }";
+                pairs.add(new KvPair("*", "data", Utils.toMap(json)));
+
+                KeyInfo keyInfo = new KeyInfo();
+                keyInfo.setExpire("100");
+                keyInfo.setTable("user_table2");
+                anyKey.add(keyInfo);
+            }
+
+            Query query = new Query(context, jdbcTemplate, pairs, anyKey);
+
+            assertTrue(query.ifInsertOk());
+
+            assertArrayEquals(new boolean[] {true, false}, query.executeInsert(false, false));
+
+            Integer count = jdbcTemplate.queryForObject("select count(*) from user_table2 where email = ?",
+                    Integer.class, "partial@example.com");
+            assertEquals(1, count.intValue());
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail(e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void upsertTest() {
+
+        try {
+            Context context = new Context();
+
+            for (String name: Arrays.asList("Upsert A", "Upsert B")) {
+
+                String json = "{\n" +
+                        "    \"id\" : 100,\n" +
+                        "    \"email\" : \"upsert@example.com\",\n" +
+                        "    \"name\" : \"" + name + "\"\n" +
+                        "  }";
+
+                KvPairs pairs = new KvPairs(new KvPair("100", "data", Utils.toMap(json)));
+
+                KeyInfo keyInfo = new KeyInfo();
+                keyInfo.setExpire("100");
+                keyInfo.setTable("user_table2");
+
+                Query query = new Query(context, jdbcTemplate, pairs, new AnyKey(keyInfo));
+
+                assertTrue(query.ifUpsertOk());
+
+                assertTrue(query.executeUpsert());
+
+                Map<String, Object> dbMap = jdbcTemplate.queryForMap("select * from user_table2 where id = 100");
+                assertEquals(name, dbMap.get("name"));
+                assertEquals("upsert@example.com", dbMap.get("email"));
+            }
+
+            // the primary key is required
+            Map<String, Object> map = Utils.toMap("{\"name\" : \"no key\"}");
+            KeyInfo keyInfo = new KeyInfo();
+            keyInfo.setTable("user_table2");
+            Query query = new Query(context, jdbcTemplate, new KvPairs(new KvPair("*", "data", map)), new AnyKey(keyInfo));
+            assertFalse(query.ifUpsertOk());
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail(e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void selectInTest() {
+
+        try {
+            Context context = new Context();
+            KvPairs pairs = new KvPairs();
+            AnyKey anyKey = new AnyKey();
+
+            List<String> emails = Arrays.asList("mike@example.com", "nobody@example.com", "david@example.com");
+            for (String email: emails) {
+                pairs.add(new KvPair(email));
+
+                KeyInfo keyInfo = new KeyInfo();
+                keyInfo.setExpire("100");
+                keyInfo.setTable("user_table");
+                keyInfo.setClause("email = ?");
+                keyInfo.setParams(Arrays.<Object>asList(email));
+                anyKey.add(keyInfo);
+            }
+
+            Query query = new Query(context, jdbcTemplate, pairs, anyKey);
+
+            assertTrue(query.ifSelectInOk());
+
+            // one key is missing
+            assertFalse(query.executeSelectIn());
+
+            for (int i = 0; i < emails.size(); i += 2) {
+                Map<String, Object> dbMap = jdbcTemplate.queryForMap("select * from user_table where email = ?", emails.get(i));
+                assertEquals(dbMap.get("name"), pairs.get(i).getData().get("name"));
+                assertEquals("user_table", pairs.get(i).getType());
+            }
+            assertFalse(pairs.get(1).hasContent());
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            fail(e.getCause().getMessage());
+        }
+    }
+
     @Test
     public void updateTest() {
         try {
@@ -0,0 +1,77 @@
+package doitincloud.rdbcache.queries;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SqlTemplatesTest {
+
+    @Test
+    public void templates() {
+
+        List<String> columns = Arrays.asList("email", "name");
+
+        assertEquals("insert into user_table (email, name) values (?, ?)",
+                SqlTemplates.insert("user_table", columns));
+        assertEquals("update user_table set email = ?, name = ? where id = ? limit 1",
+                SqlTemplates.update("user_table", columns, "id = ?"));
+        assertEquals("delete from user_table where id = ? limit 1",
+                SqlTemplates.delete("user_table", "id = ?"));
+        assertEquals("select * from user_table where id = ? limit 1",
+                SqlTemplates.select("user_table", "id = ?", 1));
+        assertEquals("select * from user_table where id in (?, ?, ?)",
+                SqlTemplates.selectIn("user_table", "id", 3));
+        assertEquals("merge into user_table (id, name) key (id) values (?, ?)",
+                SqlTemplates.upsert("h2", "user_table", Arrays.asList("id", "name"), Arrays.asList("id")));
+        assertEquals("insert into user_table (id, name) values (?, ?) on duplicate key update name = VALUES(name)",
+                SqlTemplates.upsert("mysql", "user_table", Arrays.asList("id", "name"), Arrays.asList("id")));
+
+        long hitCount = SqlTemplates.getHitCount();
+
+        // the same shape gets the same text, the column order is part of the shape
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("email", "one@example.com");
+        map.put("name", "one");
+        assertSame(SqlTemplates.insert("user_table", columns), SqlTemplates.insert("user_table", map.keySet()));
+        assertEquals("insert into user_table (name, email) values (?, ?)",
+                SqlTemplates.insert("user_table", Arrays.asList("name", "email")));
+        assertTrue(SqlTemplates.getHitCount() >= hitCount + 2L);
+    }
+
+    @Test
+    public void seek() {
+
+        List<String> keys = Arrays.asList("a", "b");
+
+        assertEquals("select * from user_table where (name = ?) order by a, b limit 2",
+                SqlTemplates.seekFirst("user_table", "name = ?", keys, 2));
+        assertEquals("select * from user_table where (name = ?) AND ((a > ?) OR (a = ? AND b > ?)) order by a, b limit 2",
+                SqlTemplates.seek("user_table", "name = ?", keys, 2));
+        assertEquals("select * from user_table where ((id > ?)) order by id limit 2",
+                SqlTemplates.seek("user_table", null, Arrays.asList("id"), 2));
+    }
+
+    @Test
+    public void evictSample() {
+
+        SqlTemplates.clear();
+        try {
+            for (int i = 1; i <= SqlTemplates.getMaxSize(); i++) {
+                SqlTemplates.select("user_table", "id = ?", i);
+            }
+            assertEquals(SqlTemplates.getMaxSize(), SqlTemplates.getSize());
+
+            // one more shape evicts a sample, not all of them
+            String sql = SqlTemplates.select("user_table", "id = ?", SqlTemplates.getMaxSize() + 1);
+            assertEquals(SqlTemplates.getMaxSize() + 1 - SqlTemplates.getEvictSize(), SqlTemplates.getSize());
+
+            long hitCount = SqlTemplates.getHitCount();
+            assertSame(sql, SqlTemplates.select("user_table", "id = ?", SqlTemplates.getMaxSize() + 1));
+            assertEquals(hitCount + 1, SqlTemplates.getHitCount());
+        } finally {
+            SqlTemplates.clear();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package doitincloud.rdbcache.repositories.impls;
+
+import doitincloud.rdbcache.configs.Configurations;
+import doitincloud.rdbcache.models.KvIdType;
+import doitincloud.rdbcache.models.KvPair;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {Configurations.class} )
+public class KvPairRepoImplTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void setOperations() {
+
+        KvPairRepoImpl kvPairRepo = new KvPairRepoImpl();
+        kvPairRepo.setJdbcTemplate(jdbcTemplate);
+
+        List<KvPair> pairs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", "name " + i);
+            pairs.add(new KvPair("set-op-" + i, "data", map));
+        }
+
+        assertTrue(kvPairRepo.saveAll(pairs));
+        assertEquals("h2", kvPairRepo.getDatabaseType());
+
+        // saves again with a changed value
+        pairs.get(1).getData().put("name", "changed");
+        assertTrue(kvPairRepo.saveAll(pairs));
+
+        List<KvIdType> idTypes = new ArrayList<>();
+        idTypes.add(new KvIdType("set-op-2", "data"));
+        idTypes.add(new KvIdType("set-op-missing", "data"));
+        idTypes.add(new KvIdType("set-op-1", "data"));
+        idTypes.add(new KvIdType("set-op-0", "info"));
+        idTypes.add(new KvIdType("set-op-2", "data"));
+
+        List<KvPair> found = new ArrayList<>();
+        kvPairRepo.findAllById(idTypes).forEach(found::add);
+
+        // in the order of idTypes, null if not found
+        assertEquals(5, found.size());
+        assertEquals("name 2", found.get(0).getData().get("name"));
+        assertNull(found.get(1));
+        assertEquals("changed", found.get(2).getData().get("name"));
+        assertNull(found.get(3));
+        assertEquals("name 2", found.get(4).getData().get("name"));
+
+        assertTrue(kvPairRepo.deleteAll(pairs));
+        assertNull(kvPairRepo.findById(new KvIdType("set-op-0", "data")));
+        assertFalse(kvPairRepo.deleteAll(pairs));
+    }
+}
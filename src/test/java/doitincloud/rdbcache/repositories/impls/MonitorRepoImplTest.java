@@ -0,0 +1,49 @@
+package doitincloud.rdbcache.repositories.impls;
+
+import doitincloud.rdbcache.configs.Configurations;
+import doitincloud.rdbcache.models.Monitor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {Configurations.class} )
+public class MonitorRepoImplTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void saveAll() {
+
+        MonitorRepoImpl monitorRepo = new MonitorRepoImpl();
+        monitorRepo.setJdbcTemplate(jdbcTemplate);
+
+        List<Monitor> monitors = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Monitor monitor = new Monitor("save-all-" + i, "test", "saveAll");
+            monitor.startStopWatch("dbase", "action " + i).stopNow();
+            monitor.stopNow();
+            monitors.add(monitor);
+        }
+
+        assertTrue(monitorRepo.saveAll(monitors));
+
+        for (Monitor monitor: monitors) {
+            assertNotNull(monitor.getId());
+            Map<String, Object> map = jdbcTemplate.queryForMap("select * from rdbcache_monitor where id = ?", monitor.getId());
+            assertEquals(monitor.getName(), map.get("name"));
+            Integer count = jdbcTemplate.queryForObject("select count(*) from rdbcache_stopwatch where monitor_id = ?",
+                    Integer.class, monitor.getId());
+            assertEquals(2, count.intValue());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package doitincloud.rdbcache.services;
+
+import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.configs.PropCfg;
+import doitincloud.rdbcache.models.KeyInfo;
+import doitincloud.rdbcache.models.KvPair;
+import doitincloud.rdbcache.supports.BoundedExecutor;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CacheOpsTest {
+
+    @Test
+    public void staleWhileRevalidate() throws Exception {
+
+        AppCtx.setExecutorOps(new ExecutorOps());
+
+        CacheOps cacheOps = new CacheOps();
+        cacheOps.handleEvent(null);
+        cacheOps.setStaleGraceSecs(60L);
+
+        AtomicInteger calls = new AtomicInteger(0);
+        cacheOps.put("tables_map", 50L, () -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("version", calls.incrementAndGet());
+            return map;
+        });
+        assertEquals(1, cacheOps.get("tables_map").get("version"));
+
+        Thread.sleep(100L);
+
+        // timed out, the stale value is served while refreshed in background
+        assertEquals(1, cacheOps.get("tables_map").get("version"));
+        assertTrue(cacheOps.getStaleHitCount() >= 1L);
+
+        for (int i = 0; i < 50 && calls.get() < 2; i++) {
+            Thread.sleep(20L);
+        }
+        Thread.sleep(20L);
+        assertEquals(2, calls.get());
+        assertEquals(2, cacheOps.get("tables_map").get("version"));
+    }
+
+    @Test
+    public void refreshRejected() throws Exception {
+
+        ExecutorOps executorOps = AppCtx.getExecutorOps();
+
+        // a shut down executor rejects every refresh
+        BoundedExecutor refreshExecutor = new BoundedExecutor("refresh", 1, 1, "abort");
+        refreshExecutor.shutdown();
+        ExecutorOps rejectingOps = mock(ExecutorOps.class);
+        when(rejectingOps.getRefreshExecutor()).thenReturn(refreshExecutor);
+        AppCtx.setExecutorOps(rejectingOps);
+
+        try {
+            CacheOps cacheOps = new CacheOps();
+            cacheOps.handleEvent(null);
+            cacheOps.setStaleGraceSecs(60L);
+
+            AtomicInteger calls = new AtomicInteger(0);
+            cacheOps.put("tables_map", 50L, () -> {
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put("version", calls.incrementAndGet());
+                return map;
+            });
+
+            Thread.sleep(100L);
+
+            // the stale value is served, and every get tries to refresh again
+            assertEquals(1, cacheOps.get("tables_map").get("version"));
+            assertEquals(1, cacheOps.get("tables_map").get("version"));
+            assertEquals(2L, refreshExecutor.getRejectedCount());
+        } finally {
+            AppCtx.setExecutorOps(executorOps);
+        }
+    }
+
+    @Test
+    public void staleExpired() throws Exception {
+
+        CacheOps cacheOps = new CacheOps();
+        cacheOps.handleEvent(null);
+        cacheOps.setStaleGraceSecs(0L);
+
+        cacheOps.put("tables_map", 10L, () -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("version", 1);
+            return map;
+        });
+
+        Thread.sleep(50L);
+
+        // past the grace period, the caller loads it again
+        assertNull(cacheOps.get("tables_map"));
+        assertFalse(cacheOps.containsKey("tables_map"));
+    }
+
+    @Test
+    public void offHeapFull() {
+
+        String dataStorage = PropCfg.getDataStorage();
+        Long offHeapBytes = PropCfg.getOffHeapBytes();
+        PropCfg propCfg = new PropCfg();
+        propCfg.setDataStorage("offheap");
+        propCfg.setOffHeapBytes(16L * 1024 * 1024);
+
+        try {
+            CacheOps cacheOps = new CacheOps();
+            cacheOps.handleEvent(null);
+
+            KeyInfo keyInfo = new KeyInfo();
+            KvPair pair = new KvPair("1", "user_table");
+            pair.getData().put("name", "old");
+            cacheOps.putData(pair, keyInfo);
+            assertEquals("old", cacheOps.getData(pair.getIdType()).get("name"));
+
+            // too large to store, the old data must not be served
+            char[] chars = new char[20 * 1024 * 1024];
+            Arrays.fill(chars, 'x');
+            pair.getData().put("name", new String(chars));
+            cacheOps.putData(pair, keyInfo);
+            assertNull(cacheOps.getData(pair.getIdType()));
+
+        } finally {
+            propCfg.setDataStorage(dataStorage);
+            propCfg.setOffHeapBytes(offHeapBytes);
+        }
+    }
+
+    @Test
+    public void offHeapTypes() {
+
+        String dataStorage = PropCfg.getDataStorage();
+        Long offHeapBytes = PropCfg.getOffHeapBytes();
+        PropCfg propCfg = new PropCfg();
+        propCfg.setDataStorage("offheap");
+        propCfg.setOffHeapBytes(16L * 1024 * 1024);
+
+        try {
+            CacheOps cacheOps = new CacheOps();
+            cacheOps.handleEvent(null);
+
+            KeyInfo keyInfo = new KeyInfo();
+
+            // decimals keep their type and precision
+            KvPair pair = new KvPair("1", "user_table");
+            pair.getData().put("amount", new BigDecimal("0.10"));
+            cacheOps.putData(pair, keyInfo);
+            assertEquals(new BigDecimal("0.10"), cacheOps.getData(pair.getIdType()).get("amount"));
+
+            // a value the codec can not keep is kept on heap as is
+            UUID uuid = UUID.randomUUID();
+            KvPair other = new KvPair("2", "user_table");
+            other.getData().put("uuid", uuid);
+            cacheOps.putData(other, keyInfo);
+            assertSame(uuid, cacheOps.getData(other.getIdType()).get("uuid"));
+
+            // an update that can not be stored removes the entry
+            KvPair update = new KvPair("1", "user_table");
+            update.getData().put("uuid", uuid);
+            cacheOps.updateData(update);
+            assertFalse(cacheOps.containsData(pair.getIdType()));
+            assertNull(cacheOps.getData(pair.getIdType()));
+
+        } finally {
+            propCfg.setDataStorage(dataStorage);
+            propCfg.setOffHeapBytes(offHeapBytes);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package doitincloud.rdbcache.services;
+
+import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.models.KeyInfo;
+import doitincloud.rdbcache.models.KvPair;
+import doitincloud.rdbcache.repositories.DbaseRepo;
+import doitincloud.rdbcache.repositories.KeyInfoRepo;
+import doitincloud.rdbcache.repositories.RedisRepo;
+import doitincloud.rdbcache.supports.AnyKey;
+import doitincloud.rdbcache.supports.Context;
+import doitincloud.rdbcache.supports.KvPairs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.script.ScriptExecutor;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ExpireOpsTest {
+
+    private DbaseRepo dbaseRepo;
+
+    private KeyInfoRepo keyInfoRepo;
+
+    private RedisRepo redisRepo;
+
+    private DbaseOps dbaseOps;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private DbaseRepo mockDbaseRepo;
+
+    private DbaseOps mockDbaseOps;
+
+    private ZSetOperations<String, String> zSetOps;
+
+    private LockScripts lockScripts;
+
+    // table of each key, keys not in it have no keyInfo
+    private Map<String, String> tables;
+
+    @Before
+    public void setup() {
+
+        dbaseRepo = AppCtx.getDbaseRepo();
+        keyInfoRepo = AppCtx.getKeyInfoRepo();
+        redisRepo = AppCtx.getRedisRepo();
+        dbaseOps = AppCtx.getDbaseOps();
+        stringRedisTemplate = AppCtx.getStringRedisTemplate();
+
+        tables = new HashMap<>();
+
+        KeyInfoRepo mockKeyInfoRepo = mock(KeyInfoRepo.class);
+        when(mockKeyInfoRepo.find(any(Context.class), any(KvPairs.class), any(AnyKey.class))).thenAnswer(invocation -> {
+            KvPairs pairs = invocation.getArgument(1);
+            AnyKey anyKey = invocation.getArgument(2);
+            for (KvPair pair: pairs) {
+                KeyInfo keyInfo = new KeyInfo();
+                String table = tables.get(pair.getId());
+                if (table == null) {
+                    keyInfo.setIsNew(true);
+                } else {
+                    keyInfo.setTable(table);
+                    keyInfo.setExpire("30");
+                }
+                anyKey.add(keyInfo);
+            }
+            return true;
+        });
+        AppCtx.setKeyInfoRepo(mockKeyInfoRepo);
+
+        RedisRepo mockRedisRepo = mock(RedisRepo.class);
+        when(mockRedisRepo.find(any(Context.class), any(KvPairs.class), any(AnyKey.class))).thenAnswer(invocation -> {
+            KvPairs pairs = invocation.getArgument(1);
+            for (KvPair pair: pairs) {
+                pair.getData().put("name", "name of " + pair.getId());
+            }
+            return true;
+        });
+        AppCtx.setRedisRepo(mockRedisRepo);
+
+        mockDbaseRepo = mock(DbaseRepo.class);
+        when(mockDbaseRepo.save(any(Context.class), any(KvPairs.class), any(AnyKey.class))).thenReturn(true);
+        AppCtx.setDbaseRepo(mockDbaseRepo);
+
+        mockDbaseOps = mock(DbaseOps.class);
+        AppCtx.setDbaseOps(mockDbaseOps);
+
+        zSetOps = mock(ZSetOperations.class);
+        StringRedisTemplate mockTemplate = mock(StringRedisTemplate.class);
+        when(mockTemplate.opsForZSet()).thenReturn(zSetOps);
+        AppCtx.setRedisTemplate(mockTemplate);
+
+        lockScripts = new LockScripts();
+    }
+
+    @After
+    public void teardown() {
+        AppCtx.setDbaseRepo(dbaseRepo);
+        AppCtx.setKeyInfoRepo(keyInfoRepo);
+        AppCtx.setRedisRepo(redisRepo);
+        AppCtx.setDbaseOps(dbaseOps);
+        AppCtx.setRedisTemplate(stringRedisTemplate);
+    }
+
+    private ExpireOps getExpireOps(String scheduler) {
+        ExpireOps expireOps = new ExpireOps();
+        expireOps.setEventPrefix("rdcevent");
+        expireOps.setEnableMonitor(false);
+        expireOps.setEventLockTimeout(10L);
+        expireOps.setExpireScheduler(scheduler);
+        expireOps.setScriptExecutor(lockScripts);
+        return expireOps;
+    }
+
+    @Test
+    public void batchByTable() {
+
+        tables.put("1", "user_table");
+        tables.put("2", "user_table");
+        tables.put("3", "tb1");
+
+        ExpireOps expireOps = getExpireOps("keyspace");
+        expireOps.onExpireEvents(Arrays.asList(
+                "rdcevent::data:1::t1",
+                "rdcevent::data:2::t1",
+                "rdcevent::data:3::t1",
+                "rdcevent::data:1"));
+
+        // one lock call for the type, the index key is skipped
+        assertEquals(1, lockScripts.lockCalls);
+        assertEquals(3, lockScripts.lockedKeys);
+        assertEquals(1, lockScripts.unlockCalls);
+
+        ArgumentCaptor<KvPairs> saved = ArgumentCaptor.forClass(KvPairs.class);
+        verify(mockDbaseRepo, times(2)).save(any(Context.class), saved.capture(), any(AnyKey.class));
+        assertEquals(Arrays.asList("1", "2"), saved.getAllValues().get(0).getKeys());
+        assertEquals(Arrays.asList("3"), saved.getAllValues().get(1).getKeys());
+
+        // no in-flight set in keyspace mode
+        verifyZeroInteractions(zSetOps);
+    }
+
+    @Test
+    public void traceByEvent() {
+
+        tables.put("1", "user_table");
+
+        ExpireOps expireOps = getExpireOps("keyspace");
+        expireOps.onExpireEvents(Arrays.asList(
+                "rdcevent::data:1::t1",
+                "rdcevent::data:2::t2"));
+
+        // the missing keyInfo is traced under the trace id of its event
+        verify(mockDbaseOps).logTraceMessage(eq("t2"), eq("keyInfo not found for 2"), any(StackTraceElement[].class));
+        verify(mockDbaseOps, never()).logTraceMessage(eq("t1"), anyString(), any(StackTraceElement[].class));
+
+        ArgumentCaptor<Context> context = ArgumentCaptor.forClass(Context.class);
+        verify(mockDbaseRepo).save(context.capture(), any(KvPairs.class), any(AnyKey.class));
+        assertEquals("t1", context.getValue().getTraceId());
+    }
+
+    @Test
+    public void ackSavedEvents() {
+
+        tables.put("1", "user_table");
+        tables.put("2", "tb1");
+
+        when(mockDbaseRepo.save(any(Context.class), any(KvPairs.class), any(AnyKey.class))).thenAnswer(invocation -> {
+            AnyKey anyKey = invocation.getArgument(2);
+            return !"tb1".equals(anyKey.getKeyInfo().getTable());
+        });
+
+        ExpireOps expireOps = getExpireOps("zset");
+        expireOps.onExpireEvents(Arrays.asList(
+                "rdcevent::data:1::t1",
+                "rdcevent::data:2::t1",
+                "rdcevent::data:3::t1",
+                "rdcevent::data::t1"));
+
+        // the failed save of tb1 is left for the next claim
+        verify(zSetOps).remove("{rdcevent::schedule}::inflight",
+                "rdcevent::data::t1", "rdcevent::data:3::t1", "rdcevent::data:1::t1");
+    }
+
+    @Test
+    public void ackStaleEvents() {
+
+        tables.put("1", "user_table");
+        tables.put("2", "user_table");
+
+        lockScripts.staleTraceIds.add("t0");
+
+        ExpireOps expireOps = getExpireOps("zset");
+        expireOps.onExpireEvents(Arrays.asList(
+                "rdcevent::data:1::t0",
+                "rdcevent::data:2::t1"));
+
+        // the stale event is not written back, but acked
+        ArgumentCaptor<KvPairs> saved = ArgumentCaptor.forClass(KvPairs.class);
+        verify(mockDbaseRepo).save(any(Context.class), saved.capture(), any(AnyKey.class));
+        assertEquals(Arrays.asList("2"), saved.getValue().getKeys());
+        verify(zSetOps).remove("{rdcevent::schedule}::inflight",
+                "rdcevent::data:1::t0", "rdcevent::data:2::t1");
+    }
+
+    // locks every key of a trace id not in staleTraceIds, the lock call has a
+    // signature, a timeout and trace ids, the unlock call a signature only
+    //
+    private static class LockScripts implements ScriptExecutor<String> {
+
+        Set<String> staleTraceIds = new HashSet<>();
+
+        int lockCalls = 0;
+
+        int lockedKeys = 0;
+
+        int unlockCalls = 0;
+
+        @Override
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            if (args.length > 1) {
+                lockCalls++;
+                // lock keys, then index keys
+                assertEquals(2 * (args.length - 2), keys.size());
+                List<Object> results = new ArrayList<>();
+                for (int i = 2; i < args.length; i++) {
+                    if (staleTraceIds.contains(args[i])) {
+                        results.add(-1L);
+                    } else {
+                        lockedKeys++;
+                        results.add(1L);
+                    }
+                }
+                return (T) results;
+            }
+            unlockCalls++;
+            return (T) Long.valueOf(keys.size());
+        }
+
+        @Override
+        public <T> T execute(RedisScript<T> script, RedisSerializer<?> argsSerializer,
+                             RedisSerializer<T> resultSerializer, List<String> keys, Object... args) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
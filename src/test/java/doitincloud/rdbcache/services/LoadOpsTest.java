@@ -0,0 +1,178 @@
+package doitincloud.rdbcache.services;
+
+import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.models.KeyInfo;
+import doitincloud.rdbcache.models.KvPair;
+import doitincloud.rdbcache.repositories.DbaseRepo;
+import doitincloud.rdbcache.supports.AnyKey;
+import doitincloud.rdbcache.supports.Context;
+import doitincloud.rdbcache.supports.KvPairs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class LoadOpsTest {
+
+    private static final int THREADS = 8;
+
+    private DbaseRepo dbaseRepo;
+
+    private AsyncOps asyncOps;
+
+    private DbaseOps dbaseOps;
+
+    private DbaseRepo mockRepo;
+
+    @Before
+    public void setup() {
+        dbaseRepo = AppCtx.getDbaseRepo();
+        asyncOps = AppCtx.getAsyncOps();
+        dbaseOps = AppCtx.getDbaseOps();
+        mockRepo = mock(DbaseRepo.class);
+        AppCtx.setDbaseRepo(mockRepo);
+        AppCtx.setAsyncOps(mock(AsyncOps.class));
+        AppCtx.setDbaseOps(mock(DbaseOps.class));
+    }
+
+    @After
+    public void teardown() {
+        AppCtx.setDbaseRepo(dbaseRepo);
+        AppCtx.setAsyncOps(asyncOps);
+        AppCtx.setDbaseOps(dbaseOps);
+    }
+
+    private static KeyInfo getKeyInfo() {
+        KeyInfo keyInfo = new KeyInfo();
+        keyInfo.setTable("user_table");
+        return keyInfo;
+    }
+
+    // the load finds all its pairs, once every other caller is waiting for it
+    //
+    private void stubFind(LoadOps loadOps, long waiting, AtomicInteger finds) {
+        when(mockRepo.find(any(Context.class), any(KvPairs.class), any(AnyKey.class))).thenAnswer(invocation -> {
+            finds.incrementAndGet();
+            for (int i = 0; i < 500 && loadOps.getCoalescedCount() < waiting; i++) {
+                Thread.sleep(10L);
+            }
+            KvPairs pairs = invocation.getArgument(1);
+            for (KvPair pair: pairs) {
+                pair.getData().put("name", "name of " + pair.getId());
+            }
+            return true;
+        });
+    }
+
+    private static void runAll(Runnable runnable) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    runnable.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread: threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void coalesceGet() throws Exception {
+
+        LoadOps loadOps = new LoadOps();
+        AtomicInteger finds = new AtomicInteger(0);
+        stubFind(loadOps, THREADS - 1, finds);
+
+        AtomicInteger found = new AtomicInteger(0);
+        runAll(() -> {
+            KvPair pair = new KvPair("1", "user_table");
+            if (loadOps.findAndSave(new Context(), pair, getKeyInfo()) &&
+                    "name of 1".equals(pair.getData().get("name"))) {
+                found.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, finds.get());
+        assertEquals(THREADS, found.get());
+        assertEquals(1L, loadOps.getLoadCount());
+        assertEquals(THREADS - 1, loadOps.getCoalescedCount());
+        assertEquals(0, loadOps.getInFlightSize());
+    }
+
+    @Test
+    public void coalescePull() throws Exception {
+
+        LoadOps loadOps = new LoadOps();
+        AtomicInteger finds = new AtomicInteger(0);
+        stubFind(loadOps, 2 * (THREADS - 1), finds);
+
+        AtomicInteger found = new AtomicInteger(0);
+        runAll(() -> {
+            KvPairs pairs = new KvPairs();
+            pairs.add(new KvPair("1", "user_table"));
+            pairs.add(new KvPair("2", "user_table"));
+            AnyKey anyKey = new AnyKey(getKeyInfo());
+            anyKey.add(getKeyInfo());
+            if (loadOps.findAndSave(new Context(), pairs, anyKey) &&
+                    "name of 2".equals(pairs.get(1).getData().get("name"))) {
+                found.incrementAndGet();
+            }
+        });
+
+        // both keys are loaded by one caller, in one find
+        assertEquals(1, finds.get());
+        assertEquals(THREADS, found.get());
+        assertEquals(2L, loadOps.getLoadCount());
+        assertEquals(2 * (THREADS - 1), loadOps.getCoalescedCount());
+        assertEquals(0, loadOps.getInFlightSize());
+    }
+
+    @Test
+    public void waitTimeout() throws Exception {
+
+        LoadOps loadOps = new LoadOps();
+        loadOps.setWaitTimeoutMillis(50L);
+
+        CountDownLatch hung = new CountDownLatch(1);
+        AtomicInteger finds = new AtomicInteger(0);
+        when(mockRepo.find(any(Context.class), any(KvPairs.class), any(AnyKey.class))).thenAnswer(invocation -> {
+            if (finds.incrementAndGet() == 1) {
+                hung.await();
+            }
+            KvPairs pairs = invocation.getArgument(1);
+            pairs.get(0).getData().put("name", "loaded");
+            return true;
+        });
+
+        Thread loader = new Thread(() -> loadOps.findAndSave(new Context(), new KvPair("1", "user_table"), getKeyInfo()));
+        loader.start();
+        for (int i = 0; i < 100 && loadOps.getInFlightSize() == 0; i++) {
+            Thread.sleep(10L);
+        }
+
+        // the waiter does not wait for the hung load
+        KvPair pair = new KvPair("1", "user_table");
+        assertTrue(loadOps.findAndSave(new Context(), pair, getKeyInfo()));
+        assertEquals("loaded", pair.getData().get("name"));
+        assertEquals(1L, loadOps.getTimeoutCount());
+        assertEquals(2, finds.get());
+
+        hung.countDown();
+        loader.join();
+    }
+}
@@ -0,0 +1,103 @@
+package doitincloud.rdbcache.services;
+
+import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.models.Monitor;
+import doitincloud.rdbcache.repositories.MonitorRepo;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class MonitorOpsTest {
+
+    @Test
+    public void sampleAndDrop() {
+
+        MonitorRepo monitorRepo = AppCtx.getMonitorRepo();
+        MonitorRepo mockRepo = mock(MonitorRepo.class);
+        when(mockRepo.saveAll(anyList())).thenReturn(true);
+        AppCtx.setMonitorRepo(mockRepo);
+
+        try {
+            MonitorOps monitorOps = new MonitorOps();
+            monitorOps.setBufferSize(3L);
+            monitorOps.setSampleRate(2L);
+            monitorOps.setMinDuration(1000L);
+
+            List<Monitor> queued = new ArrayList<>();
+
+            // 1 in 2 of the fast ones are sampled
+            for (int i = 0; i < 4; i++) {
+                Monitor monitor = newMonitor(1L);
+                if (monitorOps.offer(monitor)) {
+                    queued.add(monitor);
+                }
+            }
+            assertEquals(2, monitorOps.getQueuedSize());
+            assertEquals(2L, monitorOps.getSkippedCount());
+
+            // slow ones are always sampled, but the buffer is full after one
+            Monitor slow = newMonitor(2000L);
+            assertTrue(monitorOps.offer(slow));
+            queued.add(slow);
+            assertFalse(monitorOps.offer(newMonitor(2000L)));
+            assertEquals(1L, monitorOps.getDroppedCount());
+
+            monitorOps.flush();
+
+            assertEquals(0, monitorOps.getQueuedSize());
+            assertEquals(3L, monitorOps.getSavedCount());
+
+            // other monitor writers may share the repository
+            ArgumentCaptor<List> saved = ArgumentCaptor.forClass(List.class);
+            verify(mockRepo, atLeastOnce()).saveAll(saved.capture());
+            boolean found = false;
+            for (List list: saved.getAllValues()) {
+                if (list.equals(queued)) found = true;
+            }
+            assertTrue(found);
+
+        } finally {
+            AppCtx.setMonitorRepo(monitorRepo);
+        }
+    }
+
+    @Test
+    public void dropFailedSave() {
+
+        MonitorRepo monitorRepo = AppCtx.getMonitorRepo();
+        MonitorRepo mockRepo = mock(MonitorRepo.class);
+        when(mockRepo.saveAll(anyList())).thenReturn(false);
+        AppCtx.setMonitorRepo(mockRepo);
+
+        try {
+            MonitorOps monitorOps = new MonitorOps();
+            monitorOps.setBufferSize(3L);
+            monitorOps.setSampleRate(1L);
+
+            assertTrue(monitorOps.offer(newMonitor(1L)));
+            assertTrue(monitorOps.offer(newMonitor(1L)));
+
+            monitorOps.flush();
+
+            assertEquals(0, monitorOps.getQueuedSize());
+            assertEquals(0L, monitorOps.getSavedCount());
+            assertEquals(2L, monitorOps.getDroppedCount());
+
+        } finally {
+            AppCtx.setMonitorRepo(monitorRepo);
+        }
+    }
+
+    private Monitor newMonitor(long millis) {
+        Monitor monitor = new Monitor("test", "test", "offer");
+        monitor.stopNow();
+        monitor.setDuration(millis * 1000000L);
+        return monitor;
+    }
+}
@@ -0,0 +1,92 @@
+package doitincloud.rdbcache.services;
+
+import doitincloud.rdbcache.configs.AppCtx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class ScheduleOpsTest {
+
+    private ExpireOps expireOps;
+
+    private ExpireOps mockOps;
+
+    @Before
+    public void setup() {
+        expireOps = AppCtx.getExpireOps();
+        mockOps = mock(ExpireOps.class);
+        AppCtx.setExpireOps(mockOps);
+    }
+
+    @After
+    public void teardown() {
+        AppCtx.setExpireOps(expireOps);
+    }
+
+    private static void stop(ScheduleOps scheduleOps) throws Exception {
+        scheduleOps.interrupt();
+        scheduleOps.join(5000L);
+        assertFalse(scheduleOps.isAlive());
+    }
+
+    @Test
+    public void claimAndHandOver() throws Exception {
+
+        List<String> events = Arrays.asList("rdcevent::user_table:1::t1", "rdcevent::user_table:2::t2");
+        when(mockOps.claimDueEvents(anyLong())).thenReturn(events, Collections.emptyList());
+
+        ScheduleOps scheduleOps = new ScheduleOps();
+        scheduleOps.setExpireBatchSize(10L);
+        scheduleOps.start();
+        try {
+            verify(mockOps, timeout(5000L)).onExpireEvent("rdcevent::user_table:1::t1");
+            verify(mockOps, timeout(5000L)).onExpireEvent("rdcevent::user_table:2::t2");
+            verify(mockOps, timeout(5000L).atLeast(2)).claimDueEvents(10L);
+        } finally {
+            stop(scheduleOps);
+        }
+        assertEquals(2L, scheduleOps.getClaimedCount());
+        assertFalse(scheduleOps.isRunning());
+    }
+
+    @Test
+    public void waitWhileBackedUp() throws Exception {
+
+        when(mockOps.isEventQueueBackedUp()).thenReturn(true, true, false);
+        when(mockOps.claimDueEvents(anyLong())).thenReturn(Collections.emptyList());
+
+        ScheduleOps scheduleOps = new ScheduleOps();
+        scheduleOps.setExpireBatchSize(10L);
+        scheduleOps.start();
+        try {
+            verify(mockOps, timeout(5000L)).claimDueEvents(10L);
+            verify(mockOps, atLeast(3)).isEventQueueBackedUp();
+        } finally {
+            stop(scheduleOps);
+        }
+    }
+
+    @Test
+    public void keepPollingAfterFailure() throws Exception {
+
+        when(mockOps.claimDueEvents(anyLong()))
+                .thenThrow(new IllegalStateException("claim failed"))
+                .thenReturn(Collections.singletonList("rdcevent::user_table:3::t3"), Collections.emptyList());
+
+        ScheduleOps scheduleOps = new ScheduleOps();
+        scheduleOps.setExpireBatchSize(10L);
+        scheduleOps.start();
+        try {
+            verify(mockOps, timeout(5000L)).onExpireEvent("rdcevent::user_table:3::t3");
+        } finally {
+            stop(scheduleOps);
+        }
+        assertEquals(1L, scheduleOps.getClaimedCount());
+    }
+}
@@ -17,6 +17,10 @@ public class SimpleExpireOps extends ExpireOps {
     private String eventPrefix = "rdcevent";
 
     public void setExpireKey(Context context, KvPairs pairs, AnyKey anyKey) {
+
+        KvPairs newPairs = new KvPairs();
+        AnyKey newAnyKey = new AnyKey();
+
         for (int i = 0; i < pairs.size(); i++) {
 
             KvPair pair = pairs.get(i);
@@ -65,8 +69,13 @@ public class SimpleExpireOps extends ExpireOps {
             }
             if (keyInfo.getIsNew()) {
                 LOGGER.debug("save keyInfo: " + key + " expire: " + keyInfo.getExpire());
-                AppCtx.getKeyInfoRepo().save(context, new KvPairs(pair), new AnyKey(keyInfo));
+                newPairs.add(pair);
+                newAnyKey.add(keyInfo);
             }
         }
+
+        if (newPairs.size() > 0) {
+            AppCtx.getKeyInfoRepo().save(context, newPairs, newAnyKey);
+        }
    }
 }
\ No newline at end of file
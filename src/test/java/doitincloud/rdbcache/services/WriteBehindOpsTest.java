@@ -0,0 +1,214 @@
+package doitincloud.rdbcache.services;
+
+import doitincloud.rdbcache.configs.AppCtx;
+import doitincloud.rdbcache.models.KeyInfo;
+import doitincloud.rdbcache.models.KvPair;
+import doitincloud.rdbcache.repositories.DbaseRepo;
+import doitincloud.rdbcache.supports.AnyKey;
+import doitincloud.rdbcache.supports.Context;
+import doitincloud.rdbcache.supports.KvPairs;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+public class WriteBehindOpsTest {
+
+    @Test
+    public void coalesce() {
+
+        DbaseRepo dbaseRepo = AppCtx.getDbaseRepo();
+        DbaseRepo mockRepo = mock(DbaseRepo.class);
+        when(mockRepo.save(any(Context.class), any(KvPairs.class), any(AnyKey.class))).thenReturn(true);
+        when(mockRepo.update(any(Context.class), any(KvPairs.class), any(AnyKey.class))).thenReturn(true);
+        AppCtx.setDbaseRepo(mockRepo);
+
+        try {
+            WriteBehindOps writeBehindOps = new WriteBehindOps();
+            writeBehindOps.setWriteBehindMillis(1000L);
+
+            KeyInfo keyInfo = new KeyInfo();
+            keyInfo.setTable("user_table");
+            Context context = new Context();
+
+            for (int i = 0; i < 50; i++) {
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put("name", "name " + i);
+                writeBehindOps.save(context, new KvPairs(new KvPair("1", "data", map)), new AnyKey(keyInfo));
+            }
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("email", "one@example.com");
+            writeBehindOps.update(context, new KvPairs(new KvPair("1", "data", map)), new AnyKey(keyInfo));
+
+            map = new LinkedHashMap<>();
+            map.put("name", "two");
+            writeBehindOps.update(context, new KvPairs(new KvPair("2", "data", map)), new AnyKey(keyInfo));
+
+            assertEquals(2, writeBehindOps.getPendingSize());
+
+            writeBehindOps.flush();
+
+            assertEquals(0, writeBehindOps.getPendingSize());
+            assertEquals(52L, writeBehindOps.getWriteCount());
+            assertEquals(2L, writeBehindOps.getFlushCount());
+
+            // the last save wins, the update merges into it
+            ArgumentCaptor<KvPairs> saved = ArgumentCaptor.forClass(KvPairs.class);
+            verify(mockRepo, times(1)).save(any(Context.class), saved.capture(), any(AnyKey.class));
+            assertEquals(1, saved.getValue().size());
+            assertEquals("name 49", saved.getValue().get(0).getData().get("name"));
+            assertEquals("one@example.com", saved.getValue().get(0).getData().get("email"));
+
+            ArgumentCaptor<KvPairs> updated = ArgumentCaptor.forClass(KvPairs.class);
+            verify(mockRepo, times(1)).update(any(Context.class), updated.capture(), any(AnyKey.class));
+            assertEquals("2", updated.getValue().get(0).getId());
+
+        } finally {
+            AppCtx.setDbaseRepo(dbaseRepo);
+        }
+    }
+
+    private static KvPairs getPairs(String id, String field, String value) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(field, value);
+        return new KvPairs(new KvPair(id, "data", map));
+    }
+
+    @Test
+    public void removePending() {
+
+        DbaseRepo dbaseRepo = AppCtx.getDbaseRepo();
+        DbaseRepo mockRepo = mock(DbaseRepo.class);
+        when(mockRepo.save(any(Context.class), any(KvPairs.class), any(AnyKey.class))).thenReturn(true);
+        AppCtx.setDbaseRepo(mockRepo);
+
+        try {
+            WriteBehindOps writeBehindOps = new WriteBehindOps();
+            writeBehindOps.setWriteBehindMillis(1000L);
+
+            KeyInfo keyInfo = new KeyInfo();
+            keyInfo.setTable("user_table");
+            Context context = new Context();
+
+            writeBehindOps.save(context, getPairs("1", "name", "one"), new AnyKey(keyInfo));
+            writeBehindOps.save(context, getPairs("2", "name", "two"), new AnyKey(keyInfo));
+
+            // the deleted key is not written
+            writeBehindOps.remove(new KvPair("1", "data").getIdType());
+            writeBehindOps.flush();
+
+            ArgumentCaptor<KvPairs> saved = ArgumentCaptor.forClass(KvPairs.class);
+            verify(mockRepo, times(1)).save(any(Context.class), saved.capture(), any(AnyKey.class));
+            assertEquals(Arrays.asList("2"), saved.getValue().getKeys());
+
+        } finally {
+            AppCtx.setDbaseRepo(dbaseRepo);
+        }
+    }
+
+    @Test
+    public void removeDuringFlush() throws Exception {
+
+        DbaseRepo dbaseRepo = AppCtx.getDbaseRepo();
+        DbaseRepo mockRepo = mock(DbaseRepo.class);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        when(mockRepo.save(any(Context.class), any(KvPairs.class), any(AnyKey.class))).thenAnswer(invocation -> {
+            writing.countDown();
+            written.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+        AppCtx.setDbaseRepo(mockRepo);
+
+        try {
+            WriteBehindOps writeBehindOps = new WriteBehindOps();
+            writeBehindOps.setWriteBehindMillis(1000L);
+
+            KeyInfo keyInfo = new KeyInfo();
+            keyInfo.setTable("user_table");
+            Context context = new Context();
+
+            writeBehindOps.save(context, getPairs("1", "name", "one"), new AnyKey(keyInfo));
+            Thread flusher = new Thread(writeBehindOps::flush);
+            flusher.start();
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+            // a key not being written is removed while the flush writes
+            writeBehindOps.save(context, getPairs("2", "name", "two"), new AnyKey(keyInfo));
+            writeBehindOps.remove(new KvPair("2", "data").getIdType());
+            assertEquals(0, writeBehindOps.getPendingSize());
+
+            // the key being written waits for its flush
+            Thread remover = new Thread(() -> writeBehindOps.remove(new KvPair("1", "data").getIdType()));
+            remover.start();
+            remover.join(200L);
+            assertTrue(remover.isAlive());
+
+            written.countDown();
+            remover.join(5000L);
+            assertFalse(remover.isAlive());
+            flusher.join(5000L);
+            assertEquals(1L, writeBehindOps.getFlushCount());
+
+        } finally {
+            written.countDown();
+            AppCtx.setDbaseRepo(dbaseRepo);
+        }
+    }
+
+    @Test
+    public void retryFailedFlush() {
+
+        DbaseRepo dbaseRepo = AppCtx.getDbaseRepo();
+        DbaseOps dbaseOps = AppCtx.getDbaseOps();
+        DbaseRepo mockRepo = mock(DbaseRepo.class);
+        DbaseOps mockOps = mock(DbaseOps.class);
+        AppCtx.setDbaseRepo(mockRepo);
+        AppCtx.setDbaseOps(mockOps);
+
+        try {
+            WriteBehindOps writeBehindOps = new WriteBehindOps();
+            writeBehindOps.setWriteBehindMillis(1000L);
+
+            KeyInfo keyInfo = new KeyInfo();
+            keyInfo.setTable("user_table");
+            Context context = new Context();
+
+            when(mockRepo.save(any(Context.class), any(KvPairs.class), any(AnyKey.class)))
+                    .thenThrow(new IllegalStateException("connection lost"));
+
+            writeBehindOps.save(context, getPairs("1", "name", "one"), new AnyKey(keyInfo));
+            writeBehindOps.flush();
+
+            // offered again, a newer update merges into the failed save
+            assertEquals(1, writeBehindOps.getPendingSize());
+            writeBehindOps.update(context, getPairs("1", "email", "one@example.com"), new AnyKey(keyInfo));
+            writeBehindOps.flush();
+            assertEquals(1, writeBehindOps.getPendingSize());
+
+            ArgumentCaptor<KvPairs> saved = ArgumentCaptor.forClass(KvPairs.class);
+            verify(mockRepo, times(2)).save(any(Context.class), saved.capture(), any(AnyKey.class));
+            assertEquals("one", saved.getValue().get(0).getData().get("name"));
+            assertEquals("one@example.com", saved.getValue().get(0).getData().get("email"));
+
+            // dropped after the last attempt
+            writeBehindOps.flush();
+            assertEquals(0, writeBehindOps.getPendingSize());
+            assertEquals(1L, writeBehindOps.getDroppedCount());
+            assertEquals(0L, writeBehindOps.getFlushCount());
+            verify(mockOps, times(1)).logTraceMessage(anyString(), contains("write-behind dropped"), any(StackTraceElement[].class));
+
+        } finally {
+            AppCtx.setDbaseRepo(dbaseRepo);
+            AppCtx.setDbaseOps(dbaseOps);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package doitincloud.rdbcache.supports;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BoundedExecutorTest {
+
+    @Test
+    public void callerRuns() throws Exception {
+
+        BoundedExecutor executor = new BoundedExecutor("test", 1, 1, "caller_runs");
+        CountDownLatch latch = new CountDownLatch(1);
+
+        executor.submit(() -> { latch.await(); return null; });
+        executor.submit(() -> {});
+
+        // queue is full, runs on this thread
+        Thread[] runner = new Thread[1];
+        executor.submit(() -> { runner[0] = Thread.currentThread(); });
+        assertEquals(Thread.currentThread(), runner[0]);
+        assertEquals(1L, executor.getRejectedCount());
+        assertEquals(1, executor.getQueueSize());
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void abort() throws Exception {
+
+        BoundedExecutor executor = new BoundedExecutor("test", 1, 1, "abort");
+        CountDownLatch latch = new CountDownLatch(1);
+
+        executor.submit(() -> { latch.await(); return null; });
+        executor.submit(() -> {});
+        try {
+            executor.submit(() -> {});
+            fail("expected RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+        }
+        assertEquals(1L, executor.getRejectedCount());
+        assertEquals(1, executor.getMetrics().get("queueSize"));
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void block() throws Exception {
+
+        BoundedExecutor executor = new BoundedExecutor("test", 1, 1, "block");
+        CountDownLatch latch = new CountDownLatch(1);
+
+        executor.submit(() -> { latch.await(); return null; });
+        executor.submit(() -> {});
+
+        // queue is full, the producer waits until the first task is done
+        Thread[] runner = new Thread[1];
+        Thread producer = new Thread(() -> executor.submit(() -> { runner[0] = Thread.currentThread(); }));
+        producer.start();
+        producer.join(200L);
+        assertTrue(producer.isAlive());
+
+        latch.countDown();
+        producer.join(5000L);
+        assertFalse(producer.isAlive());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(runner[0].getName().startsWith("test-"));
+        assertEquals(1L, executor.getRejectedCount());
+    }
+}
@@ -0,0 +1,97 @@
+package doitincloud.rdbcache.supports;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class OffHeapStoreTest {
+
+    @Test
+    public void codec() {
+
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("x", 1);
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", 12345678901L);
+        map.put("count", -3);
+        map.put("name", "Mike A. é中");
+        map.put("price", 12.5);
+        map.put("active", true);
+        map.put("deleted", false);
+        map.put("note", null);
+        map.put("nested", nested);
+        map.put("list", Arrays.asList("a", 2, null));
+        map.put("amount", new BigDecimal("12345678901234567890.0100"));
+        map.put("big", new BigInteger("-123456789012345678901234567890"));
+        map.put("ratio", 0.25f);
+        map.put("small", (short) -2);
+        map.put("tiny", (byte) 7);
+
+        Map<String, Object> decoded = CompactCodec.decode(CompactCodec.encode(map));
+        assertEquals(map, decoded);
+        assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(decoded.keySet()));
+
+        // bytes come back as bytes, not a base64 string
+        byte[] bytes = {0, 1, -1};
+        Object value = CompactCodec.decode(CompactCodec.encode(Collections.singletonMap("blob", bytes))).get("blob");
+        assertArrayEquals(bytes, (byte[]) value);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void codecRejects() {
+        CompactCodec.encode(Collections.singletonMap("uuid", UUID.randomUUID()));
+    }
+
+    @Test
+    public void writeReadFree() {
+
+        OffHeapStore store = new OffHeapStore(16 * 1024 * 1024);
+
+        byte[] small = "small".getBytes();
+        byte[] large = new byte[10000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+
+        int a = store.write(small);
+        int b = store.write(large);
+        assertTrue(a >= 0 && b >= 0);
+        assertArrayEquals(small, store.read(a));
+        assertArrayEquals(large, store.read(b));
+
+        long used = store.getUsedBytes();
+        store.free(b);
+        assertTrue(store.getUsedBytes() < used);
+
+        // freed blocks are reused
+        long allocated = store.getAllocatedBytes();
+        int c = store.write(large);
+        assertArrayEquals(large, store.read(c));
+        assertEquals(allocated, store.getAllocatedBytes());
+        assertArrayEquals(small, store.read(a));
+    }
+
+    @Test
+    public void full() {
+
+        OffHeapStore store = new OffHeapStore(16 * 1024 * 1024);
+
+        byte[] data = new byte[1024 * 1024];
+        List<Integer> addresses = new ArrayList<>();
+        int address;
+        while ((address = store.write(data)) != -1) {
+            addresses.add(address);
+        }
+        assertTrue(addresses.size() >= 15);
+
+        long used = store.getUsedBytes();
+        store.free(addresses.get(0));
+        assertTrue(store.getUsedBytes() < used);
+        assertTrue(store.write(data) != -1);
+    }
+}
@@ -0,0 +1,79 @@
+package doitincloud.rdbcache.supports;
+
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RowCodecTest {
+
+    private static Map<String, Object> column(String type) {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("type", type);
+        return attributes;
+    }
+
+    private static Map<String, Object> getColumns() {
+        Map<String, Object> columns = new LinkedHashMap<>();
+        columns.put("id", column("int"));
+        columns.put("name", column("varchar(255)"));
+        columns.put("created_at", column("timestamp"));
+        columns.put("birth_date", column("date"));
+        columns.put("start_time", column("time"));
+        return columns;
+    }
+
+    @Test
+    public void convertH2Row() {
+
+        TimeZone timeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        try {
+            RowCodec codec = new RowCodec(getColumns(), "h2");
+
+            Map<String, Object> dbMap = new LinkedHashMap<>();
+            dbMap.put("ID", 1);
+            dbMap.put("NAME", "mike");
+            dbMap.put("CREATED_AT", new Timestamp(1525147200000L));
+            dbMap.put("BIRTH_DATE", new java.sql.Date(1525147200000L));
+            dbMap.put("OTHER", "x");
+
+            codec.convert(dbMap);
+
+            assertEquals(Arrays.asList("OTHER", "id", "name", "created_at", "birth_date"), new ArrayList<>(dbMap.keySet()));
+            assertEquals(1, dbMap.get("id"));
+            assertEquals("mike", dbMap.get("name"));
+            assertEquals("2018-05-01T04:00:00", dbMap.get("created_at"));
+            assertEquals("2018-05-01", dbMap.get("birth_date"));
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+    }
+
+    @Test
+    public void convertMysqlRow() {
+
+        TimeZone timeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        try {
+            RowCodec codec = new RowCodec(getColumns(), "mysql");
+
+            Map<String, Object> dbMap = new LinkedHashMap<>();
+            dbMap.put("id", 1);
+            dbMap.put("created_at", "1525147200000");
+            dbMap.put("birth_date", 1525147200000L);
+            dbMap.put("start_time", "10:30:00");
+
+            codec.convert(dbMap);
+
+            assertEquals(Arrays.asList("id", "created_at", "birth_date", "start_time"), new ArrayList<>(dbMap.keySet()));
+            assertEquals("2018-05-01T04:00:00", dbMap.get("created_at"));
+            assertEquals("2018-05-01", dbMap.get("birth_date"));
+            assertEquals("10:30:00", dbMap.get("start_time"));
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package doitincloud.rdbcache.supports;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class StripedExecutorTest {
+
+    @Test
+    public void orderPerKey() throws Exception {
+
+        StripedExecutor executor = new StripedExecutor("test", 4, 10000);
+
+        Map<String, List<Integer>> results = new HashMap<>();
+        for (int k = 0; k < 8; k++) {
+            results.put("key" + k, Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            for (int k = 0; k < 8; k++) {
+                String key = "key" + k;
+                int value = i;
+                futures.add(executor.submit(key, () -> results.get(key).add(value)));
+            }
+        }
+        for (Future<?> future: futures) {
+            future.get();
+        }
+
+        for (List<Integer> list: results.values()) {
+            assertEquals(1000, list.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, list.get(i).intValue());
+            }
+        }
+
+        assertSame(executor.stripeOf("key1"), executor.stripeOf("key1"));
+        assertEquals(4, executor.getMetrics().get("stripes"));
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void orderWhenFull() throws Exception {
+
+        // queues fill up, tasks wait for room instead of running out of order
+        StripedExecutor executor = new StripedExecutor("test", 2, 2);
+
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int value = i;
+            futures.add(executor.submit("key", () -> results.add(value)));
+        }
+        for (Future<?> future: futures) {
+            future.get();
+        }
+
+        assertEquals(200, results.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, results.get(i).intValue());
+        }
+        assertEquals("block", executor.getMetrics().get("rejectionPolicy"));
+
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,69 @@
+package doitincloud.rdbcache.supports;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+
+    @Test
+    public void expireNearDeadline() {
+
+        long now = 1000000L;
+        TimingWheel wheel = new TimingWheel(now);
+
+        wheel.schedule("a", now + 30000L);
+        wheel.schedule("b", now + 180000L);
+        wheel.schedule("c", now + 3600000L);
+        wheel.schedule("d", now + 10L * 24 * 3600000L);
+        assertEquals(4, wheel.size());
+
+        Map<String, Long> expiredAt = new HashMap<>();
+        for (long time = now; time <= now + 11L * 24 * 3600000L; time += 1000L) {
+            for (String key: wheel.advance(time)) {
+                assertFalse(expiredAt.containsKey(key));
+                expiredAt.put(key, time);
+            }
+        }
+
+        assertEquals(0, wheel.size());
+        assertEquals(4, expiredAt.size());
+
+        // no earlier than the deadline, and within about 2 ticks after it
+        assertTrue(expiredAt.get("a") >= now + 30000L && expiredAt.get("a") <= now + 32048L);
+        assertTrue(expiredAt.get("b") >= now + 180000L && expiredAt.get("b") <= now + 182048L);
+        assertTrue(expiredAt.get("c") >= now + 3600000L && expiredAt.get("c") <= now + 3602048L);
+        long deadline = now + 10L * 24 * 3600000L;
+        assertTrue(expiredAt.get("d") >= deadline && expiredAt.get("d") <= deadline + 2048L);
+    }
+
+    @Test
+    public void rescheduleAndDeschedule() {
+
+        long now = 0L;
+        TimingWheel wheel = new TimingWheel(now);
+
+        wheel.schedule("a", 5000L);
+        wheel.schedule("b", 5000L);
+        wheel.schedule("a", 20000L);
+        wheel.deschedule("b");
+
+        assertTrue(wheel.advance(10000L).isEmpty());
+        assertEquals(Arrays.asList("a"), wheel.advance(21000L));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void largeJump() {
+
+        TimingWheel wheel = new TimingWheel(0L);
+        for (int i = 0; i < 1000; i++) {
+            wheel.schedule("key" + i, i * 7919L);
+        }
+        List<String> expired = wheel.advance(1000L * 7919L);
+        assertEquals(1000, expired.size());
+        assertEquals(0, wheel.size());
+    }
+}
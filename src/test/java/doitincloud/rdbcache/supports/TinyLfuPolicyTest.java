@@ -0,0 +1,168 @@
+package doitincloud.rdbcache.supports;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TinyLfuPolicyTest {
+
+    @Test
+    public void boundOnEveryPut() {
+
+        TinyLfuPolicy policy = new TinyLfuPolicy(100);
+
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = "key" + i;
+            keys.add(key);
+            keys.removeAll(policy.onPut(key));
+            assertTrue(keys.size() <= 100);
+        }
+        assertEquals(100, keys.size());
+        assertEquals(100, policy.size());
+        assertEquals(900L, policy.getEvictionCount());
+    }
+
+    @Test
+    public void hotKeysSurviveScan() {
+
+        TinyLfuPolicy policy = new TinyLfuPolicy(100);
+
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            String key = "hot" + i;
+            keys.add(key);
+            keys.removeAll(policy.onPut(key));
+        }
+        for (int n = 0; n < 5; n++) {
+            for (int i = 0; i < 50; i++) {
+                policy.onAccess("hot" + i);
+            }
+        }
+
+        // a scan of one-hit keys, while the hot keys keep being read
+        for (int i = 0; i < 10000; i++) {
+            String key = "scan" + i;
+            keys.add(key);
+            keys.removeAll(policy.onPut(key));
+            if (i % 100 == 0) {
+                for (int j = 0; j < 50; j++) {
+                    policy.onAccess("hot" + j);
+                }
+            }
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(keys.contains("hot" + i));
+        }
+        assertEquals(100, keys.size());
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+
+        TinyLfuPolicy policy = new TinyLfuPolicy(100);
+        for (int i = 0; i < 100; i++) {
+            policy.onPut("key" + i);
+        }
+
+        // reads from many threads take no lock and are applied in batches
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int n = 0; n < 10000; n++) {
+                    policy.onAccess("key" + (n % 10));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+
+        // drained by the next put
+        policy.onPut("new");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(15, policy.frequency("key" + i));
+        }
+        assertEquals(100, policy.size());
+    }
+
+    @Test
+    public void boundByWeight() {
+
+        TinyLfuPolicy policy = new TinyLfuPolicy(1000);
+        policy.setMaximumWeight(10000L);
+
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = "key" + i;
+            keys.add(key);
+            keys.removeAll(policy.onPut(key, 100L + i % 400));
+            assertTrue(policy.getTotalWeight() <= 10000L);
+        }
+        assertTrue(keys.size() < 100);
+        assertEquals(keys.size(), policy.size());
+
+        // weight grows on update
+        String key = keys.iterator().next();
+        List<String> victims = policy.onPut(key, 5000L);
+        assertFalse(victims.isEmpty());
+        assertTrue(policy.getTotalWeight() <= 10000L);
+
+        policy.clear();
+        assertEquals(0L, policy.getTotalWeight());
+    }
+
+    @Test
+    public void weigh() {
+
+        Map<String, Object> narrow = new LinkedHashMap<>();
+        narrow.put("_DEFAULT_", "value");
+
+        Map<String, Object> wide = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            wide.put("column" + i, "some value of column " + i);
+        }
+
+        long narrowWeight = MemoryWeigher.weigh("data::1", narrow);
+        long wideWeight = MemoryWeigher.weigh("data::2", wide);
+        assertTrue(narrowWeight > 0L);
+        assertTrue(wideWeight > 20 * narrowWeight / 2);
+    }
+
+    @Test
+    public void removeAndClear() {
+
+        TinyLfuPolicy policy = new TinyLfuPolicy(10);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(policy.onPut("key" + i).isEmpty());
+        }
+        policy.onRemove("key0");
+        assertEquals(9, policy.size());
+        assertTrue(policy.onPut("key0").isEmpty());
+        assertTrue(policy.onPut("key1").isEmpty());
+
+        policy.clear();
+        assertEquals(0, policy.size());
+    }
+
+    @Test
+    public void frequency() {
+
+        FrequencySketch sketch = new FrequencySketch(64);
+
+        assertEquals(0, sketch.frequency("a"));
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("a");
+        }
+        assertTrue(sketch.frequency("a") >= 5);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("a");
+        }
+        assertEquals(15, sketch.frequency("a"));
+    }
+}
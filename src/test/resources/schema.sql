@@ -7,6 +7,18 @@ CREATE TABLE IF NOT EXISTS rdbcache_kv_pair (
   PRIMARY KEY (id, type)
 );
 
+DROP TABLE IF EXISTS rdbcache_trace;
+
+CREATE TABLE IF NOT EXISTS rdbcache_trace (
+  id int not null auto_increment,
+  trace_id varchar(64) not null,
+  logged_at bigint,
+  message text,
+  trace varchar(1024),
+  KEY (trace_id),
+  PRIMARY KEY (id)
+);
+
 DROP TABLE IF EXISTS rdbcache_monitor;
 
 CREATE TABLE IF NOT EXISTS rdbcache_monitor (